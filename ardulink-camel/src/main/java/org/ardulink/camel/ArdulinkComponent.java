@@ -31,6 +31,7 @@ import java.util.StringTokenizer;
 import org.apache.camel.Endpoint;
 import org.apache.camel.spi.UriEndpoint;
 import org.apache.camel.support.DefaultComponent;
+import org.ardulink.camel.BatchingArdulinkConsumer.OverflowPolicy;
 import org.ardulink.core.Pin;
 
 /**
@@ -47,7 +48,15 @@ public class ArdulinkComponent extends DefaultComponent {
 	@Override
 	protected Endpoint createEndpoint(String uri, String remaining, Map<String, Object> parameters) throws Exception {
 		EndpointConfig config = new EndpointConfig().type(remaining)
-				.listenTo(parsePins(getOptional(parameters, "listenTo").orElse(""))).linkParams(parameters);
+				.listenTo(parsePins(getOptional(parameters, "listenTo").orElse("")));
+		getOptional(parameters, "batchSize").map(Integer::parseInt).ifPresent(config::batchSize);
+		getOptional(parameters, "batchTimeoutMillis").map(Long::parseLong).ifPresent(config::batchTimeoutMillis);
+		getOptional(parameters, "batchQueueSize").map(Integer::parseInt).ifPresent(config::batchQueueSize);
+		getOptional(parameters, "batchOverflowPolicy").map(String::toUpperCase).map(OverflowPolicy::valueOf)
+				.ifPresent(config::batchOverflowPolicy);
+		getOptional(parameters, "awaitReply").map(Boolean::parseBoolean).ifPresent(config::awaitReply);
+		getOptional(parameters, "replyTimeoutMillis").map(Long::parseLong).ifPresent(config::replyTimeoutMillis);
+		config.linkParams(parameters);
 		parameters.clear();
 		ArdulinkEndpoint endpoint = new ArdulinkEndpoint(uri, this, config);
 		setProperties(endpoint, parameters);
@@ -1,7 +1,6 @@
 package org.ardulink.camel;
 
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
+import static org.ardulink.camel.PinValue.pinValue;
 
 import java.io.IOException;
 
@@ -15,7 +14,6 @@ import org.ardulink.core.Link;
 import org.ardulink.core.events.AnalogPinValueChangedEvent;
 import org.ardulink.core.events.DigitalPinValueChangedEvent;
 import org.ardulink.core.events.EventListener;
-import org.ardulink.core.proto.impl.ALProtoBuilder;
 
 public class ArdulinkConsumer extends DefaultConsumer {
 
@@ -52,36 +50,39 @@ public class ArdulinkConsumer extends DefaultConsumer {
 
 			@Override
 			public void stateChanged(DigitalPinValueChangedEvent event) {
-				String body = ALProtoBuilder.alpProtocolMessage(DIGITAL_PIN_READ).forPin(event.getPin().pinNum())
-						.withState(event.getValue().booleanValue());
-				process(exchangeWithBody(body));
+				received(pinValue(event.getPin(), event.getValue()));
 			}
 
 			@Override
 			public void stateChanged(AnalogPinValueChangedEvent event) {
-				String body = ALProtoBuilder.alpProtocolMessage(ANALOG_PIN_READ).forPin(event.getPin().pinNum())
-						.withValue(event.getValue());
-				process(exchangeWithBody(body));
+				received(pinValue(event.getPin(), event.getValue()));
 			}
 
-			private Exchange exchangeWithBody(String body) {
-				Exchange exchange = getEndpoint().createExchange();
-				Message message = new DefaultMessage(exchange.getContext());
-				message.setBody(body);
-				exchange.setMessage(message);
-				return exchange;
-			}
+		};
 
-			private void process(Exchange exchange) {
-				try {
-					getAsyncProcessor().process(exchange);
-				} catch (Exception e) {
-					getExceptionHandler().handleException("Failed to process notification", e);
-				}
-			}
+	}
 
-		};
+	/**
+	 * Called on the link's thread for each pin state change.
+	 */
+	protected void received(PinValue pinValue) {
+		process(exchangeWithBody(pinValue));
+	}
+
+	protected Exchange exchangeWithBody(Object body) {
+		Exchange exchange = getEndpoint().createExchange();
+		Message message = new DefaultMessage(exchange.getContext());
+		message.setBody(body);
+		exchange.setMessage(message);
+		return exchange;
+	}
 
+	protected void process(Exchange exchange) {
+		try {
+			getAsyncProcessor().process(exchange);
+		} catch (Exception e) {
+			getExceptionHandler().handleException("Failed to process notification", e);
+		}
 	}
 
 }
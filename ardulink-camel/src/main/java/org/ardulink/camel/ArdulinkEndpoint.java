@@ -46,7 +46,7 @@ public class ArdulinkEndpoint extends DefaultEndpoint implements MultipleConsume
 
 	@Override
 	public Producer createProducer() throws Exception {
-		return new ArdulinkProducer(this, this.link);
+		return new ArdulinkProducer(this, this.link, this.config);
 	}
 
 	private static String appendParams(String base, Map<String, Object> typeParams) {
@@ -55,7 +55,9 @@ public class ArdulinkEndpoint extends DefaultEndpoint implements MultipleConsume
 
 	@Override
 	public Consumer createConsumer(Processor processor) throws Exception {
-		return new ArdulinkConsumer(this, processor, link);
+		return config.isBatching() //
+				? new BatchingArdulinkConsumer(this, processor, link, config) //
+				: new ArdulinkConsumer(this, processor, link);
 	}
 
 	@Override
@@ -16,90 +16,231 @@ limitations under the License.
 
 package org.ardulink.camel;
 
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.camel.ArdulinkTypeConverters.fromAlp;
+import static org.ardulink.camel.ArdulinkTypeConverters.toAlp;
 import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.core.Pin.Type.ANALOG;
-import static org.ardulink.core.Pin.Type.DIGITAL;
-import static org.ardulink.core.messages.api.FromDeviceChangeListeningState.Mode.START;
-import static org.ardulink.core.messages.api.FromDeviceChangeListeningState.Mode.STOP;
-import static org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessors.parse;
-import static org.ardulink.util.Iterables.getFirst;
+import static org.ardulink.core.proto.api.MessageIdHolders.NO_ID;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
 
 import java.io.IOException;
-
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.camel.AsyncCallback;
 import org.apache.camel.Endpoint;
 import org.apache.camel.Exchange;
-import org.apache.camel.Message;
-import org.apache.camel.support.DefaultProducer;
+import org.apache.camel.support.DefaultAsyncProducer;
 import org.ardulink.core.Link;
 import org.ardulink.core.Pin;
-import org.ardulink.core.messages.api.FromDeviceChangeListeningState;
-import org.ardulink.core.messages.api.FromDeviceMessage;
-import org.ardulink.core.messages.api.FromDeviceMessagePinStateChanged;
-import org.ardulink.core.proto.impl.ArdulinkProtocol2.ALPByteStreamProcessor;
+import org.ardulink.core.events.RplyEvent;
+import org.ardulink.core.events.RplyListener;
 
 /**
  * [ardulinktitle] [ardulinkversion]
- *
+ * 
+ * Accepts {@link PinValue}s and {@link ListeningState}s as body. Any other body
+ * is taken as ALP string (which is NOT the protocol of the link but the
+ * expected payload of camel's message). The response is the ALP string
+ * followed by "=OK".
+ * 
+ * With <code>awaitReply</code> enabled the exchange is completed when the
+ * device replied to the message ("=OK" or "=NOK") or failed with a
+ * {@link TimeoutException} after <code>replyTimeoutMillis</code>. No thread is
+ * blocked while waiting. Links not supporting message ids complete at once.
+ * 
  * project Ardulink http://www.ardulink.org/
- *
+ * 
  * [adsense]
  *
  */
-public class ArdulinkProducer extends DefaultProducer {
+public class ArdulinkProducer extends DefaultAsyncProducer {
 
-	private final Link link;
+	private static final class PendingReply {
 
-	/**
-	 * This is NOT the protocol of the link but the expected payload of camel's
-	 * {@link Message}.
-	 */
-	private final ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
+		private final Exchange exchange;
+		private final AsyncCallback callback;
+		private final String alp;
+		private ScheduledFuture<?> timeout;
+
+		private PendingReply(Exchange exchange, AsyncCallback callback, String alp) {
+			this.exchange = exchange;
+			this.callback = callback;
+			this.alp = alp;
+		}
+
+	}
+
+	private final Link link;
+	private final boolean awaitReply;
+	private final long replyTimeoutMillis;
+	private final Map<Long, PendingReply> pendingReplies = new ConcurrentHashMap<>();
+	// replies received during a send, i.e. before the id of their message is known
+	private final Map<Long, RplyEvent> earlyReplies = new HashMap<>();
+	private int sending;
+	private final RplyListener rplyListener = this::rplyReceived;
+	private ScheduledExecutorService timeouts;
 
 	public ArdulinkProducer(Endpoint endpoint, Link link) {
+		this(endpoint, link, new EndpointConfig());
+	}
+
+	public ArdulinkProducer(Endpoint endpoint, Link link, EndpointConfig config) {
 		super(endpoint);
 		this.link = link;
+		this.awaitReply = config.isAwaitReply();
+		this.replyTimeoutMillis = config.getReplyTimeoutMillis();
 	}
 
 	@Override
-	public void process(Exchange exchange) throws Exception {
-		String body = exchange.getIn().getBody(String.class);
-		FromDeviceMessage fromDevice = getFirst(parse(byteStreamProcessor, byteStreamProcessor.toBytes(body)))
-				.orElseThrow(() -> new IllegalStateException("Could not extract message from body " + body));
-		if (fromDevice instanceof FromDeviceMessagePinStateChanged) {
-			handlePinStateChange((FromDeviceMessagePinStateChanged) fromDevice);
-			setResponse(exchange, body, "OK");
-		} else if (fromDevice instanceof FromDeviceChangeListeningState) {
-			handleListeningStateChange((FromDeviceChangeListeningState) fromDevice);
-			setResponse(exchange, body, "OK");
+	protected void doStart() throws Exception {
+		super.doStart();
+		if (awaitReply) {
+			timeouts = newSingleThreadScheduledExecutor(newThreadFactory("ardulink-camel-replytimeouts"));
+			link.addRplyListener(rplyListener);
 		}
 	}
 
-	private void setResponse(Exchange exchange, String bodyIn, String rc) {
-		exchange.getMessage().setBody(bodyIn + "=" + rc);
+	@Override
+	public boolean process(Exchange exchange, AsyncCallback callback) {
+		try {
+			Object body = exchange.getIn().getBody();
+			Object command = command(exchange);
+			String alp = body instanceof String ? (String) body : alp(command);
+			if (!awaitReply) {
+				send(command);
+				setResponse(exchange, alp, "OK");
+			} else if (!sendAwaitingReply(command, new PendingReply(exchange, callback, alp))) {
+				return false;
+			}
+		} catch (Exception e) {
+			exchange.setException(e);
+		}
+		callback.done(true);
+		return true;
+	}
+
+	private static Object command(Exchange exchange) {
+		Object body = exchange.getIn().getBody();
+		if (body instanceof PinValue || body instanceof ListeningState) {
+			return body;
+		}
+		Object command = fromAlp(exchange.getIn().getBody(String.class));
+		if (command == null) {
+			throw new IllegalStateException("Could not extract message from body " + body);
+		}
+		return command;
 	}
 
-	private void handlePinStateChange(FromDeviceMessagePinStateChanged event) throws IOException {
-		Pin pin = event.getPin();
-		if (pin.is(ANALOG)) {
-			link.switchAnalogPin(analogPin(pin.pinNum()), Integer.parseInt(String.valueOf(event.getValue())));
-		} else if (pin.is(DIGITAL)) {
-			link.switchDigitalPin(digitalPin(pin.pinNum()), Boolean.parseBoolean(String.valueOf(event.getValue())));
+	private static String alp(Object command) {
+		return command instanceof PinValue //
+				? toAlp((PinValue) command) //
+				: toAlp((ListeningState) command);
+	}
+
+	/**
+	 * Sends the command without holding the lock, so replies can be received
+	 * meanwhile (even synchronously on the sending thread). They are kept until
+	 * the id of the message is known.
+	 * 
+	 * @return <code>true</code> if the exchange has been completed already,
+	 *         <code>false</code> if it waits for the reply
+	 */
+	private boolean sendAwaitingReply(Object command, PendingReply pendingReply) throws IOException {
+		synchronized (pendingReplies) {
+			sending++;
+		}
+		long id;
+		try {
+			id = send(command);
+		} catch (IOException | RuntimeException e) {
+			sent(NO_ID.getId(), pendingReply);
+			throw e;
+		}
+		RplyEvent reply = sent(id, pendingReply);
+		if (id != NO_ID.getId() && reply == null) {
+			return false;
+		}
+		setResponse(pendingReply.exchange, pendingReply.alp, reply == null || reply.isOk() ? "OK" : "NOK");
+		return true;
+	}
+
+	private RplyEvent sent(long id, PendingReply pendingReply) {
+		synchronized (pendingReplies) {
+			RplyEvent reply = earlyReplies.remove(id);
+			if (reply == null && id != NO_ID.getId()) {
+				pendingReplies.put(id, pendingReply);
+				pendingReply.timeout = timeouts.schedule(() -> timeout(id), replyTimeoutMillis, MILLISECONDS);
+			}
+			if (--sending == 0) {
+				earlyReplies.clear();
+			}
+			return reply;
+		}
+	}
+
+	private long send(Object command) throws IOException {
+		if (command instanceof PinValue) {
+			PinValue pinValue = (PinValue) command;
+			Pin pin = pinValue.getPin();
+			return pin.is(ANALOG) //
+					? link.switchAnalogPin(analogPin(pin.pinNum()), (Integer) pinValue.getValue()) //
+					: link.switchDigitalPin(digitalPin(pin.pinNum()), (Boolean) pinValue.getValue());
 		}
+		ListeningState listeningState = (ListeningState) command;
+		return listeningState.isListening() //
+				? link.startListening(listeningState.getPin()) //
+				: link.stopListening(listeningState.getPin());
 	}
 
-	private void handleListeningStateChange(FromDeviceChangeListeningState event) throws IOException {
-		Pin pin = event.getPin();
-		if (event.getMode() == START) {
-			link.startListening(pin);
-		} else if (event.getMode() == STOP) {
-			link.stopListening(pin);
+	private void rplyReceived(RplyEvent event) {
+		PendingReply pendingReply;
+		synchronized (pendingReplies) {
+			pendingReply = pendingReplies.remove(event.getId());
+			if (pendingReply == null && sending > 0) {
+				earlyReplies.put(event.getId(), event);
+			}
+		}
+		if (pendingReply != null) {
+			pendingReply.timeout.cancel(false);
+			setResponse(pendingReply.exchange, pendingReply.alp, event.isOk() ? "OK" : "NOK");
+			pendingReply.callback.done(false);
 		}
 	}
 
+	private void timeout(long id) {
+		failed(pendingReplies.remove(id),
+				new TimeoutException("No reply for message " + id + " within " + replyTimeoutMillis + "ms"));
+	}
+
+	private static void failed(PendingReply pendingReply, Exception exception) {
+		if (pendingReply != null) {
+			pendingReply.exchange.setException(exception);
+			pendingReply.callback.done(false);
+		}
+	}
+
+	private static void setResponse(Exchange exchange, String bodyIn, String rc) {
+		exchange.getMessage().setBody(bodyIn + "=" + rc);
+	}
+
 	@Override
 	public void stop() {
 		try {
+			if (awaitReply) {
+				link.removeRplyListener(rplyListener);
+				timeouts.shutdownNow();
+				for (Long id : pendingReplies.keySet()) {
+					failed(pendingReplies.remove(id), new IllegalStateException("Producer stopped"));
+				}
+			}
 			this.link.close();
 		} catch (IOException e) {
 			fail(e);
@@ -0,0 +1,109 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.camel;
+
+import static org.ardulink.camel.ListeningState.listeningState;
+import static org.ardulink.camel.PinValue.pinValue;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.messages.api.FromDeviceChangeListeningState.Mode.START;
+import static org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessors.parse;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_DIGITAL;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_DIGITAL;
+import static org.ardulink.util.Iterables.getFirst;
+
+import org.apache.camel.TypeConverterLoaderException;
+import org.apache.camel.spi.TypeConverterLoader;
+import org.apache.camel.spi.TypeConverterRegistry;
+import org.apache.camel.support.SimpleTypeConverter;
+import org.ardulink.core.Pin;
+import org.ardulink.core.messages.api.FromDeviceChangeListeningState;
+import org.ardulink.core.messages.api.FromDeviceMessage;
+import org.ardulink.core.messages.api.FromDeviceMessagePinStateChanged;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2.ALPByteStreamProcessor;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Converts {@link PinValue}s and {@link ListeningState}s from/to ALP strings
+ * ("alp://ared/1/42", "alp://srla/1", ...) so routes still exchanging strings
+ * keep working. Loaded by camel via
+ * META-INF/services/org/apache/camel/TypeConverterLoader.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class ArdulinkTypeConverters implements TypeConverterLoader {
+
+	@Override
+	public void load(TypeConverterRegistry registry) throws TypeConverterLoaderException {
+		registry.addTypeConverter(String.class, PinValue.class,
+				new SimpleTypeConverter(false, (type, exchange, value) -> toAlp((PinValue) value)));
+		registry.addTypeConverter(String.class, ListeningState.class,
+				new SimpleTypeConverter(false, (type, exchange, value) -> toAlp((ListeningState) value)));
+		registry.addTypeConverter(PinValue.class, String.class,
+				new SimpleTypeConverter(false, (type, exchange, value) -> as(PinValue.class, fromAlp((String) value))));
+		registry.addTypeConverter(ListeningState.class, String.class, new SimpleTypeConverter(false,
+				(type, exchange, value) -> as(ListeningState.class, fromAlp((String) value))));
+	}
+
+	private static <T> T as(Class<T> type, Object object) {
+		return type.isInstance(object) ? type.cast(object) : null;
+	}
+
+	public static String toAlp(PinValue pinValue) {
+		Pin pin = pinValue.getPin();
+		return pin.is(ANALOG) //
+				? alpProtocolMessage(ANALOG_PIN_READ).forPin(pin.pinNum()).withValue(pinValue.getValue()) //
+				: alpProtocolMessage(DIGITAL_PIN_READ).forPin(pin.pinNum()).withState((Boolean) pinValue.getValue());
+	}
+
+	public static String toAlp(ListeningState listeningState) {
+		boolean analog = listeningState.getPin().is(ANALOG);
+		return alpProtocolMessage(listeningState.isListening() //
+				? analog ? START_LISTENING_ANALOG : START_LISTENING_DIGITAL //
+				: analog ? STOP_LISTENING_ANALOG : STOP_LISTENING_DIGITAL) //
+				.forPin(listeningState.getPin().pinNum()).withoutValue();
+	}
+
+	/**
+	 * Parses an ALP string to a {@link PinValue} or a {@link ListeningState}.
+	 * 
+	 * @return the typed message or <code>null</code> if the string is neither a
+	 *         pin state nor a listening state message
+	 */
+	public static Object fromAlp(String alp) {
+		ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
+		FromDeviceMessage message = getFirst(parse(byteStreamProcessor, byteStreamProcessor.toBytes(alp)))
+				.orElse(null);
+		if (message instanceof FromDeviceMessagePinStateChanged) {
+			FromDeviceMessagePinStateChanged changed = (FromDeviceMessagePinStateChanged) message;
+			return pinValue(changed.getPin(), changed.getValue());
+		} else if (message instanceof FromDeviceChangeListeningState) {
+			FromDeviceChangeListeningState changed = (FromDeviceChangeListeningState) message;
+			return listeningState(changed.getPin(), changed.getMode() == START);
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.camel;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newThread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.Endpoint;
+import org.apache.camel.Processor;
+import org.ardulink.core.Link;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Consumer collecting the {@link PinValue}s of the link in a bounded queue and
+ * emitting them as one exchange with a {@link List} body as soon as
+ * <code>batchSize</code> values are collected or <code>batchTimeoutMillis</code>
+ * passed since the first value of the batch. Exchanges are processed on the
+ * consumer's own thread, so the link's thread only enqueues.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public class BatchingArdulinkConsumer extends ArdulinkConsumer {
+
+	private static final Logger logger = LoggerFactory.getLogger(BatchingArdulinkConsumer.class);
+
+	/**
+	 * What to do if the queue is full because the route does not keep up.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * block the link's thread until there is space in the queue
+		 */
+		BLOCK,
+		/**
+		 * discard the value just received
+		 */
+		DROP_NEWEST,
+		/**
+		 * discard the oldest value in the queue
+		 */
+		DROP_OLDEST;
+	}
+
+	private final int batchSize;
+	private final long batchTimeoutNanos;
+	private final OverflowPolicy overflowPolicy;
+	private final BlockingQueue<PinValue> queue;
+	private final AtomicLong dropped = new AtomicLong();
+	private Thread batcher;
+
+	public BatchingArdulinkConsumer(Endpoint endpoint, Processor processor, Link link, EndpointConfig config)
+			throws IOException {
+		super(endpoint, processor, link);
+		checkArgument(config.getBatchSize() > 0, "batchSize must be greater than 0 but was %s",
+				config.getBatchSize());
+		checkArgument(config.getBatchTimeoutMillis() > 0, "batchTimeoutMillis must be greater than 0 but was %s",
+				config.getBatchTimeoutMillis());
+		checkArgument(config.getBatchQueueSize() > 0, "batchQueueSize must be greater than 0 but was %s",
+				config.getBatchQueueSize());
+		this.batchSize = config.getBatchSize();
+		this.batchTimeoutNanos = MILLISECONDS.toNanos(config.getBatchTimeoutMillis());
+		this.overflowPolicy = checkNotNull(config.getBatchOverflowPolicy(), "overflowPolicy must not be null");
+		this.queue = new ArrayBlockingQueue<>(config.getBatchQueueSize());
+	}
+
+	@Override
+	public void start() {
+		batcher = newThread("ardulink-camel-batcher", this::batch);
+		batcher.start();
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		batcher.interrupt();
+		try {
+			batcher.join(SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return number of values discarded due to the {@link OverflowPolicy}
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	protected void received(PinValue pinValue) {
+		switch (overflowPolicy) {
+		case BLOCK:
+			try {
+				queue.put(pinValue);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			break;
+		case DROP_NEWEST:
+			if (!queue.offer(pinValue)) {
+				dropped();
+			}
+			break;
+		case DROP_OLDEST:
+			while (!queue.offer(pinValue)) {
+				if (queue.poll() != null) {
+					dropped();
+				}
+			}
+			break;
+		default:
+			throw new IllegalStateException("Cannot handle " + overflowPolicy);
+		}
+	}
+
+	private void dropped() {
+		if (dropped.incrementAndGet() == 1) {
+			logger.warn("Queue of {} full, discarding values ({})", getEndpoint(), overflowPolicy);
+		}
+	}
+
+	private void batch() {
+		List<PinValue> batch = new ArrayList<>(batchSize);
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				batch.add(queue.take());
+				fill(batch, System.nanoTime() + batchTimeoutNanos);
+				emit(batch);
+				batch = new ArrayList<>(batchSize);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		queue.drainTo(batch);
+		if (!batch.isEmpty()) {
+			emit(batch);
+		}
+	}
+
+	private void fill(List<PinValue> batch, long deadline) throws InterruptedException {
+		while (batch.size() < batchSize) {
+			queue.drainTo(batch, batchSize - batch.size());
+			long remaining = deadline - System.nanoTime();
+			if (batch.size() == batchSize || remaining <= 0) {
+				return;
+			}
+			PinValue next = queue.poll(remaining, NANOSECONDS);
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void emit(List<PinValue> batch) {
+		process(exchangeWithBody(batch));
+	}
+
+}
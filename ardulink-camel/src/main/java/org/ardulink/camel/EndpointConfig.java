@@ -9,6 +9,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.ardulink.camel.BatchingArdulinkConsumer.OverflowPolicy;
 import org.ardulink.core.Pin;
 import org.ardulink.util.Lists;
 
@@ -17,6 +18,12 @@ public class EndpointConfig {
 	private String type;
 	private Map<String, Object> typeParams = emptyMap();
 	private List<Pin> pins = emptyList();
+	private int batchSize;
+	private long batchTimeoutMillis = 1000;
+	private int batchQueueSize = 10_000;
+	private OverflowPolicy batchOverflowPolicy = OverflowPolicy.BLOCK;
+	private boolean awaitReply;
+	private long replyTimeoutMillis = 5000;
 
 	public EndpointConfig type(String type) {
 		this.type = type;
@@ -33,6 +40,36 @@ public class EndpointConfig {
 		return this;
 	}
 
+	public EndpointConfig batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	public EndpointConfig batchTimeoutMillis(long batchTimeoutMillis) {
+		this.batchTimeoutMillis = batchTimeoutMillis;
+		return this;
+	}
+
+	public EndpointConfig batchQueueSize(int batchQueueSize) {
+		this.batchQueueSize = batchQueueSize;
+		return this;
+	}
+
+	public EndpointConfig batchOverflowPolicy(OverflowPolicy batchOverflowPolicy) {
+		this.batchOverflowPolicy = batchOverflowPolicy;
+		return this;
+	}
+
+	public EndpointConfig awaitReply(boolean awaitReply) {
+		this.awaitReply = awaitReply;
+		return this;
+	}
+
+	public EndpointConfig replyTimeoutMillis(long replyTimeoutMillis) {
+		this.replyTimeoutMillis = replyTimeoutMillis;
+		return this;
+	}
+
 	public String getType() {
 		return type;
 	}
@@ -45,4 +82,32 @@ public class EndpointConfig {
 		return pins;
 	}
 
-}
\ No newline at end of file
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public boolean isBatching() {
+		return batchSize > 0;
+	}
+
+	public long getBatchTimeoutMillis() {
+		return batchTimeoutMillis;
+	}
+
+	public int getBatchQueueSize() {
+		return batchQueueSize;
+	}
+
+	public OverflowPolicy getBatchOverflowPolicy() {
+		return batchOverflowPolicy;
+	}
+
+	public boolean isAwaitReply() {
+		return awaitReply;
+	}
+
+	public long getReplyTimeoutMillis() {
+		return replyTimeoutMillis;
+	}
+
+}
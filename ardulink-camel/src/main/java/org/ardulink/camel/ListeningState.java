@@ -0,0 +1,85 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.camel;
+
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.util.Objects;
+
+import org.ardulink.core.Pin;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Typed body of camel messages to start or stop listening on a pin of the link.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public final class ListeningState {
+
+	private final Pin pin;
+	private final boolean listening;
+
+	public static ListeningState startListening(Pin pin) {
+		return new ListeningState(pin, true);
+	}
+
+	public static ListeningState stopListening(Pin pin) {
+		return new ListeningState(pin, false);
+	}
+
+	public static ListeningState listeningState(Pin pin, boolean listening) {
+		return new ListeningState(pin, listening);
+	}
+
+	private ListeningState(Pin pin, boolean listening) {
+		this.pin = checkNotNull(pin, "pin must not be null");
+		this.listening = listening;
+	}
+
+	public Pin getPin() {
+		return pin;
+	}
+
+	public boolean isListening() {
+		return listening;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(pin, listening);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		ListeningState other = (ListeningState) obj;
+		return pin.equals(other.pin) && listening == other.listening;
+	}
+
+	@Override
+	public String toString() {
+		return "ListeningState [pin=" + pin + ", listening=" + listening + "]";
+	}
+
+}
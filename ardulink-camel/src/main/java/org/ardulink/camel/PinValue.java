@@ -0,0 +1,94 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.camel;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.util.Objects;
+
+import org.ardulink.core.Pin;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ * 
+ * Typed body of camel messages: the state of a pin received from the link or
+ * the state a pin should be switched to. Analog pins have {@link Integer}
+ * values, digital pins {@link Boolean} values. Converters from/to ALP strings
+ * are registered by {@link ArdulinkTypeConverters}.
+ * 
+ * project Ardulink http://www.ardulink.org/
+ * 
+ * [adsense]
+ *
+ */
+public final class PinValue {
+
+	private final Pin pin;
+	private final Object value;
+
+	public static PinValue analogPinValue(int pin, int value) {
+		return new PinValue(analogPin(pin), value);
+	}
+
+	public static PinValue digitalPinValue(int pin, boolean value) {
+		return new PinValue(digitalPin(pin), value);
+	}
+
+	public static PinValue pinValue(Pin pin, Object value) {
+		return new PinValue(pin, value);
+	}
+
+	private PinValue(Pin pin, Object value) {
+		this.pin = checkNotNull(pin, "pin must not be null");
+		this.value = checkNotNull(value, "value must not be null");
+		checkArgument(pin.is(ANALOG) ? value instanceof Integer : value instanceof Boolean,
+				"value %s does not match pin %s", value, pin);
+	}
+
+	public Pin getPin() {
+		return pin;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(pin, value);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		PinValue other = (PinValue) obj;
+		return pin.equals(other.pin) && value.equals(other.value);
+	}
+
+	@Override
+	public String toString() {
+		return "PinValue [pin=" + pin + ", value=" + value + "]";
+	}
+
+}
@@ -4,6 +4,9 @@ import static java.lang.String.format;
 import static java.util.UUID.randomUUID;
 import static java.util.concurrent.TimeUnit.HOURS;
 import static org.apache.camel.ShutdownRunningTask.CompleteAllTasks;
+import static org.ardulink.camel.ListeningState.startListening;
+import static org.ardulink.camel.PinValue.analogPinValue;
+import static org.ardulink.camel.PinValue.digitalPinValue;
 import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.core.linkmanager.providers.DynamicLinkFactoriesProvider.withRegistered;
@@ -124,6 +127,19 @@ class ArdulinkComponentTest {
 		verifyNoMoreInteractions(mock);
 	}
 
+	@Test
+	void acceptsTypedBodies() throws Exception {
+		Object response = context.createProducerTemplate().requestBody(mockUri, analogPinValue(3, 42));
+		send(digitalPinValue(4, true));
+		send(startListening(analogPin(5)));
+		Link mock = getMock(link);
+		verify(mock).switchAnalogPin(analogPin(3), 42);
+		verify(mock).switchDigitalPin(digitalPin(4), true);
+		verify(mock).startListening(analogPin(5));
+		verifyNoMoreInteractions(mock);
+		assertThat(response).isEqualTo(alpProtocolMessage(ANALOG_PIN_READ).forPin(3).withValue(42) + "=OK");
+	}
+
 	private void testDigital(DigitalPin pin, boolean state) throws Exception {
 		send(alpProtocolMessage(DIGITAL_PIN_READ).forPin(pin.pinNum()).withState(state));
 		Link mock = getMock(link);
@@ -150,7 +166,7 @@ class ArdulinkComponentTest {
 		return context;
 	}
 
-	private void send(String message) {
+	private void send(Object message) {
 		context.createProducerTemplate().sendBody(mockUri, message);
 	}
 
@@ -1,5 +1,6 @@
 package org.ardulink.camel.test;
 
+import static org.ardulink.camel.PinValue.analogPinValue;
 import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
@@ -46,6 +47,16 @@ class ArdulinkConsumerIntegrationTest {
 		}
 	}
 
+	@Test
+	void bodiesAreTypedPinValues(@MockUri String mockUri) throws Exception {
+		try (Link link = Links.getLink(mockUri); CamelContext context = camelContext(mockUri)) {
+			fireEvent(link, analogPinValueChanged(analogPin(2), 42));
+			MockEndpoint out = getMockEndpoint(context);
+			out.expectedBodiesReceived(analogPinValue(2, 42));
+			out.assertIsSatisfied();
+		}
+	}
+
 	private CamelContext camelContext(String from) throws Exception {
 		CamelContext context = new DefaultCamelContext();
 		context.addRoutes(new RouteBuilder() {
@@ -0,0 +1,142 @@
+package org.ardulink.camel.test;
+
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.rangeClosed;
+import static org.apache.camel.ShutdownRunningTask.CompleteAllTasks;
+import static org.ardulink.camel.PinValue.analogPinValue;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
+import static org.ardulink.testsupport.mock.TestSupport.getMock;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ardulink.core.AbstractListenerLink;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.core.events.DefaultRplyEvent;
+import org.ardulink.testsupport.mock.junit5.MockUri;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ArdulinkProducerReplyTest {
+
+	String in = "direct:in";
+
+	Link link;
+	CamelContext context;
+	ProducerTemplate producerTemplate;
+
+	@BeforeEach
+	void setup(@MockUri String mockUri) throws Exception {
+		this.link = Links.getLink(mockUri);
+		this.context = camelContext(in, mockUri + "&awaitReply=true&replyTimeoutMillis=500");
+		this.producerTemplate = context.createProducerTemplate();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		this.link.close();
+		this.context.stop();
+	}
+
+	@Test
+	void completesWhenDeviceReplied() throws Exception {
+		doReturn(7L).when(getMock(link)).switchAnalogPin(analogPin(3), 42);
+		Future<Object> response = producerTemplate.asyncRequestBody(in, analogPinValue(3, 42));
+		verify(getMock(link), timeout(5_000)).switchAnalogPin(analogPin(3), 42);
+		assertThat(response).isNotDone();
+
+		reply(true, 7);
+		assertThat(response.get()).isEqualTo(alp(3, 42) + "=OK");
+	}
+
+	@Test
+	void nokIfDeviceRepliedWithError() throws Exception {
+		doReturn(7L).when(getMock(link)).switchAnalogPin(analogPin(3), 42);
+		Future<Object> response = producerTemplate.asyncRequestBody(in, alp(3, 42));
+		verify(getMock(link), timeout(5_000)).switchAnalogPin(analogPin(3), 42);
+		reply(false, 7);
+		assertThat(response.get()).isEqualTo(alp(3, 42) + "=NOK");
+	}
+
+	@Test
+	void completesIfDeviceRepliedBeforeTheLinkReturnedTheId() throws Exception {
+		doAnswer(i -> {
+			reply(true, 7);
+			return 7L;
+		}).when(getMock(link)).switchAnalogPin(analogPin(3), 42);
+		assertThat(producerTemplate.requestBody(in, analogPinValue(3, 42))).isEqualTo(alp(3, 42) + "=OK");
+	}
+
+	@Test
+	void failsIfDeviceDoesNotReply() throws Exception {
+		doReturn(7L).when(getMock(link)).switchAnalogPin(analogPin(3), 42);
+		Future<Object> response = producerTemplate.asyncRequestBody(in, analogPinValue(3, 42));
+		assertThatThrownBy(response::get).isInstanceOf(ExecutionException.class)
+				.hasRootCauseInstanceOf(TimeoutException.class);
+	}
+
+	@Test
+	void completesAtOnceIfLinkDoesNotSupportMessageIds() throws Exception {
+		doReturn(-1L).when(getMock(link)).switchAnalogPin(analogPin(3), 42);
+		assertThat(producerTemplate.requestBody(in, analogPinValue(3, 42))).isEqualTo(alp(3, 42) + "=OK");
+	}
+
+	@Test
+	void manyCommandsCanBeInFlight() throws Exception {
+		AtomicLong ids = new AtomicLong();
+		doAnswer(i -> ids.incrementAndGet()).when(getMock(link)).switchAnalogPin(any(), anyInt());
+		int commands = 100;
+		List<Future<Object>> responses = rangeClosed(1, commands)
+				.mapToObj(v -> producerTemplate.asyncRequestBody(in, analogPinValue(1, v))).collect(toList());
+		while (ids.get() < commands) {
+			Thread.yield();
+		}
+		for (long id = commands; id > 0; id--) {
+			reply(true, id);
+		}
+		for (int v = 1; v <= commands; v++) {
+			assertThat(responses.get(v - 1).get()).isEqualTo(alp(1, v) + "=OK");
+		}
+	}
+
+	private void reply(boolean ok, long id) {
+		((AbstractListenerLink) getMock(link)).fireReplyReceived(new DefaultRplyEvent(ok, id, emptyMap()));
+	}
+
+	private static String alp(int pin, int value) {
+		return alpProtocolMessage(ANALOG_PIN_READ).forPin(pin).withValue(value);
+	}
+
+	private CamelContext camelContext(String in, String to) throws Exception {
+		CamelContext context = new DefaultCamelContext();
+		context.addRoutes(new RouteBuilder() {
+			@Override
+			public void configure() {
+				from(in).to(to).shutdownRunningTask(CompleteAllTasks);
+			}
+		});
+		context.start();
+		return context;
+	}
+
+}
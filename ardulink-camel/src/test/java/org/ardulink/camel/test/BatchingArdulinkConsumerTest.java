@@ -0,0 +1,103 @@
+package org.ardulink.camel.test;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.camel.PinValue.analogPinValue;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
+import static org.ardulink.testsupport.mock.TestSupport.fireEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.ardulink.camel.PinValue;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.testsupport.mock.junit5.MockUri;
+import org.junit.jupiter.api.Test;
+
+class BatchingArdulinkConsumerTest {
+
+	String camelMockOut = "mock:result";
+
+	@Test
+	void emitsBatchesOfBatchSize(@MockUri String mockUri) throws Exception {
+		try (Link link = Links.getLink(mockUri);
+				CamelContext context = camelContext(mockUri + "&batchSize=3&batchTimeoutMillis=60000", e -> {
+				})) {
+			MockEndpoint out = getMockEndpoint(context);
+			out.expectedBodiesReceived(asList( //
+					batch(analogPinValue(1, 1), analogPinValue(1, 2), analogPinValue(1, 3)), //
+					batch(analogPinValue(1, 4), analogPinValue(1, 5), analogPinValue(1, 6))));
+			for (int i = 1; i <= 6; i++) {
+				fireEvent(link, analogPinValueChanged(analogPin(1), i));
+			}
+			out.assertIsSatisfied();
+		}
+	}
+
+	@Test
+	void emitsIncompleteBatchAfterTimeout(@MockUri String mockUri) throws Exception {
+		try (Link link = Links.getLink(mockUri);
+				CamelContext context = camelContext(mockUri + "&batchSize=100&batchTimeoutMillis=50", e -> {
+				})) {
+			MockEndpoint out = getMockEndpoint(context);
+			out.expectedBodiesReceived(asList(batch(analogPinValue(1, 1), analogPinValue(2, 2))));
+			fireEvent(link, analogPinValueChanged(analogPin(1), 1));
+			fireEvent(link, analogPinValueChanged(analogPin(2), 2));
+			out.assertIsSatisfied();
+		}
+	}
+
+	@Test
+	void dropsOldestValuesIfRouteDoesNotKeepUp(@MockUri String mockUri) throws Exception {
+		Semaphore routeEntered = new Semaphore(0);
+		CountDownLatch release = new CountDownLatch(1);
+		try (Link link = Links.getLink(mockUri); CamelContext context = camelContext(
+				mockUri + "&batchSize=1&batchQueueSize=2&batchOverflowPolicy=drop_oldest", e -> {
+					routeEntered.release();
+					release.await(5, SECONDS);
+				})) {
+			MockEndpoint out = getMockEndpoint(context);
+			out.expectedBodiesReceived(asList( //
+					batch(analogPinValue(1, 1)), //
+					batch(analogPinValue(1, 4)), //
+					batch(analogPinValue(1, 5))));
+			fireEvent(link, analogPinValueChanged(analogPin(1), 1));
+			routeEntered.acquire();
+			for (int i = 2; i <= 5; i++) {
+				fireEvent(link, analogPinValueChanged(analogPin(1), i));
+			}
+			release.countDown();
+			out.assertIsSatisfied();
+		}
+	}
+
+	private static List<PinValue> batch(PinValue... pinValues) {
+		return new ArrayList<>(asList(pinValues));
+	}
+
+	private CamelContext camelContext(String from, Processor processor) throws Exception {
+		CamelContext context = new DefaultCamelContext();
+		context.addRoutes(new RouteBuilder() {
+			@Override
+			public void configure() throws Exception {
+				from(from).process(processor).to(camelMockOut);
+			}
+		});
+		context.start();
+		return context;
+	}
+
+	private MockEndpoint getMockEndpoint(CamelContext context) {
+		return context.getEndpoint(camelMockOut, MockEndpoint.class);
+	}
+
+}
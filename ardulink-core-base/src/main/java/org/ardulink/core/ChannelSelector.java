@@ -0,0 +1,211 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.ThreadFactories.newThread;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * One thread serving many non-blocking channels using a {@link Selector}. All
+ * handlers get called on the selector thread so they must not block. Since
+ * there is only one thread, the handlers can share the direct
+ * {@link #readBuffer()} of the selector.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class ChannelSelector implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChannelSelector.class);
+
+	public interface Handler {
+		void ready(SelectionKey key) throws IOException;
+	}
+
+	private static class SharedInstanceHolder {
+		private static final ChannelSelector INSTANCE = newSharedInstance();
+
+		private static ChannelSelector newSharedInstance() {
+			try {
+				return new ChannelSelector(Integer.getInteger("ardulink.channelselector.readbuffersize", 64 * 1024));
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot open selector", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the JVM wide instance. The size of the read buffer can be
+	 * configured using the system property
+	 * <code>ardulink.channelselector.readbuffersize</code> (default 65536, so
+	 * a buffer can take any UDP datagram).
+	 *
+	 * @return the shared ChannelSelector
+	 */
+	public static ChannelSelector sharedInstance() {
+		return SharedInstanceHolder.INSTANCE;
+	}
+
+	private final Selector selector;
+	private final ByteBuffer readBuffer;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final Thread thread;
+	private volatile boolean closed;
+
+	public ChannelSelector(int readBufferSize) throws IOException {
+		checkArgument(readBufferSize > 0, "readBufferSize must be greater 0 but was %s", readBufferSize);
+		this.selector = Selector.open();
+		this.readBuffer = ByteBuffer.allocateDirect(readBufferSize);
+		this.thread = newThread("ardulink-channelselector", this::run);
+		this.thread.start();
+	}
+
+	/**
+	 * Registers the channel. The channel gets switched to non-blocking mode.
+	 *
+	 * @param channel the channel to register
+	 * @param ops     the interest set
+	 * @param handler the handler to call if the channel is ready for any of the
+	 *                operations of the interest set
+	 * @return the SelectionKey (completes as soon as the selector thread did
+	 *         register the channel)
+	 */
+	public CompletableFuture<SelectionKey> register(SelectableChannel channel, int ops, Handler handler) {
+		checkState(!closed, "ChannelSelector already closed");
+		checkNotNull(channel, "channel must not be null");
+		checkNotNull(handler, "handler must not be null");
+		CompletableFuture<SelectionKey> future = new CompletableFuture<>();
+		execute(() -> {
+			try {
+				channel.configureBlocking(false);
+				future.complete(channel.register(selector, ops, handler));
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Runs the task on the selector thread. Use this to modify the interest set
+	 * of a key from other threads.
+	 *
+	 * @param task the task to run
+	 */
+	public void execute(Runnable task) {
+		if (isSelectorThread()) {
+			task.run();
+		} else {
+			tasks.add(task);
+			selector.wakeup();
+		}
+	}
+
+	public boolean isSelectorThread() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Returns the direct buffer handlers can use to read from their channels. The
+	 * buffer must only be used by handlers (on the selector thread) and its
+	 * content is no longer valid when the handler returns.
+	 *
+	 * @return the selector's read buffer
+	 */
+	public ByteBuffer readBuffer() {
+		checkState(isSelectorThread(), "readBuffer can only be used on the selector thread");
+		return readBuffer;
+	}
+
+	private void run() {
+		try {
+			while (!closed) {
+				runTasks();
+				selector.select();
+				for (SelectionKey key : selector.selectedKeys()) {
+					handle(key);
+				}
+				selector.selectedKeys().clear();
+			}
+		} catch (IOException e) {
+			logger.error("Selector failure", e);
+		} finally {
+			closeSelector();
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				logger.error("Error running task {}", task, e);
+			}
+		}
+	}
+
+	private void handle(SelectionKey key) {
+		try {
+			if (key.isValid()) {
+				((Handler) key.attachment()).ready(key);
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.error("Error handling {}, channel gets closed", key.channel(), e);
+			key.cancel();
+			try {
+				key.channel().close();
+			} catch (IOException e2) {
+				logger.error("Error closing {}", key.channel(), e2);
+			}
+		}
+	}
+
+	private void closeSelector() {
+		try {
+			selector.close();
+		} catch (IOException e) {
+			logger.error("Error closing selector", e);
+		}
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		selector.wakeup();
+	}
+
+}
@@ -0,0 +1,148 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.lang.Math.min;
+import static org.ardulink.core.FramedOutputStream.MAX_FRAME_SIZE;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * InputStream reading the frames written by a {@link FramedOutputStream} and
+ * providing the (inflated) payloads as one continuous stream of bytes.
+ * {@link #available()} decodes a completely received frame, so the stream can
+ * be read by a {@link StreamPoller}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class FramedInputStream extends InputStream {
+
+	private final DataInputStream inputStream;
+	private final Inflater inflater;
+	private final byte[] inflateBuffer;
+	private byte[] payload = new byte[0];
+	private int position;
+
+	/**
+	 * Creates a FramedInputStream.
+	 *
+	 * @param inputStream the stream to read the frames from
+	 * @param inflate     whether the payloads are compressed
+	 */
+	public FramedInputStream(InputStream inputStream, boolean inflate) {
+		checkNotNull(inputStream, "inputStream must not be null");
+		this.inputStream = new DataInputStream(
+				inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream));
+		this.inflater = inflate ? new Inflater() : null;
+		this.inflateBuffer = inflate ? new byte[MAX_FRAME_SIZE] : null;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return nextPayload() ? payload[position++] & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!nextPayload()) {
+			return -1;
+		}
+		int count = min(len, payload.length - position);
+		System.arraycopy(payload, position, b, off, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (position == payload.length && inputStream.available() >= Integer.BYTES) {
+			inputStream.mark(Integer.BYTES);
+			int length = inputStream.readInt();
+			if (inputStream.available() >= length) {
+				readFrame(length);
+			} else {
+				inputStream.reset();
+			}
+		}
+		return payload.length - position;
+	}
+
+	private boolean nextPayload() throws IOException {
+		while (position == payload.length) {
+			int length;
+			try {
+				length = inputStream.readInt();
+			} catch (EOFException e) {
+				return false;
+			}
+			readFrame(length);
+		}
+		return true;
+	}
+
+	private void readFrame(int length) throws IOException {
+		if (length < 0 || length > MAX_FRAME_SIZE) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		byte[] frame = new byte[length];
+		inputStream.readFully(frame);
+		payload = inflater == null ? frame : inflate(frame);
+		position = 0;
+	}
+
+	private byte[] inflate(byte[] bytes) throws IOException {
+		inflater.setInput(bytes);
+		ByteArrayOutputStream inflated = new ByteArrayOutputStream(bytes.length * 4);
+		try {
+			int length;
+			while ((length = inflater.inflate(inflateBuffer)) > 0) {
+				if (inflated.size() + length > MAX_FRAME_SIZE) {
+					throw new IOException("Inflated frame exceeds " + MAX_FRAME_SIZE + " bytes");
+				}
+				inflated.write(inflateBuffer, 0, length);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed frame", e);
+		}
+		return inflated.toByteArray();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (inflater != null) {
+			inflater.end();
+		}
+		inputStream.close();
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.zip.Deflater.SYNC_FLUSH;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.zip.Deflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * OutputStream that collects the bytes written and sends them as
+ * length-prefixed frames (a 4 byte big endian length followed by the payload).
+ * A frame gets sent on {@link #flush()} or if the pending data reaches the
+ * maximum frame size, larger writes are split into several frames, so no frame
+ * exceeds {@link #MAX_FRAME_SIZE} (neither compressed nor inflated). If a coalescing window is set, {@link #flush()} does not
+ * send the frame at once but waits up to this window so data of many flushes
+ * is sent as one frame. If deflate is enabled, the payloads are compressed
+ * using one deflate stream for the whole connection so later frames benefit
+ * from the data of the previous ones. This is the counterpart of
+ * {@link FramedInputStream}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class FramedOutputStream extends OutputStream {
+
+	private static final Logger logger = LoggerFactory.getLogger(FramedOutputStream.class);
+
+	public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+	// deflate may expand incompressible data slightly (block headers, sync flush)
+	private static final int DEFLATE_RESERVE = 1024;
+
+	private static class SchedulerHolder {
+		private static final ScheduledExecutorService scheduler = newSingleThreadScheduledExecutor(
+				newThreadFactory("ardulink-framecoalescer"));
+	}
+
+	private final DataOutputStream outputStream;
+	private final long coalesceMillis;
+	private final Deflater deflater;
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private final byte[] deflateBuffer;
+	private final int maxPayloadSize;
+	private ScheduledFuture<?> scheduledFlush;
+	private boolean closed;
+
+	/**
+	 * Creates a FramedOutputStream.
+	 *
+	 * @param outputStream   the stream to write the frames to
+	 * @param deflate        whether the payloads should be compressed
+	 * @param coalesceMillis how long to wait on {@link #flush()} for further data
+	 *                       before sending the frame, 0 to send at once
+	 */
+	public FramedOutputStream(OutputStream outputStream, boolean deflate, long coalesceMillis) {
+		checkArgument(coalesceMillis >= 0, "coalesceMillis must not be negative but was %s", coalesceMillis);
+		this.outputStream = new DataOutputStream(checkNotNull(outputStream, "outputStream must not be null"));
+		this.coalesceMillis = coalesceMillis;
+		this.deflater = deflate ? new Deflater() : null;
+		this.deflateBuffer = deflate ? new byte[MAX_FRAME_SIZE] : null;
+		this.maxPayloadSize = deflate ? MAX_FRAME_SIZE - DEFLATE_RESERVE : MAX_FRAME_SIZE;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		checkOpen();
+		while (len > 0) {
+			int count = Math.min(len, maxPayloadSize - pending.size());
+			pending.write(b, off, count);
+			off += count;
+			len -= count;
+			if (pending.size() == maxPayloadSize) {
+				sendFrame();
+			}
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		checkOpen();
+		if (coalesceMillis == 0) {
+			sendFrame();
+		} else if (scheduledFlush == null && pending.size() > 0) {
+			scheduledFlush = SchedulerHolder.scheduler.schedule(this::scheduledFlush, coalesceMillis, MILLISECONDS);
+		}
+	}
+
+	private synchronized void scheduledFlush() {
+		scheduledFlush = null;
+		if (!closed) {
+			try {
+				sendFrame();
+			} catch (IOException e) {
+				logger.error("Error sending frame", e);
+			}
+		}
+	}
+
+	private void sendFrame() throws IOException {
+		if (scheduledFlush != null) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (pending.size() > 0) {
+			byte[] payload = deflater == null ? pending.toByteArray() : deflate(pending.toByteArray());
+			pending.reset();
+			if (payload.length > MAX_FRAME_SIZE) {
+				throw new IOException("Frame of " + payload.length + " bytes exceeds " + MAX_FRAME_SIZE);
+			}
+			outputStream.writeInt(payload.length);
+			outputStream.write(payload);
+			outputStream.flush();
+		}
+	}
+
+	private byte[] deflate(byte[] bytes) {
+		deflater.setInput(bytes);
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream(bytes.length);
+		int length;
+		do {
+			length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, SYNC_FLUSH);
+			deflated.write(deflateBuffer, 0, length);
+		} while (length == deflateBuffer.length);
+		return deflated.toByteArray();
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			try {
+				sendFrame();
+			} finally {
+				closed = true;
+				if (deflater != null) {
+					deflater.end();
+				}
+				outputStream.close();
+			}
+		}
+	}
+
+}
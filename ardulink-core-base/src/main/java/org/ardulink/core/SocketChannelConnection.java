@@ -0,0 +1,286 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.net.StandardSocketOptions.SO_RCVBUF;
+import static java.net.StandardSocketOptions.SO_SNDBUF;
+import static java.net.StandardSocketOptions.TCP_NODELAY;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Throwables.propagate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Connection using a non-blocking {@link SocketChannel} instead of the
+ * blocking streams of a socket. There is no reader thread per connection: The
+ * channel gets registered at a (shared) {@link ChannelSelector} which reads
+ * all data available into its direct buffer and passes it in one chunk to the
+ * listeners and the {@link ByteStreamProcessor}. Writes go to the channel
+ * directly; only if the socket's send buffer is full the remaining bytes are
+ * queued and written by the selector thread using gathering writes. Writers
+ * get blocked while more than {@value #MAX_PENDING_BYTES} bytes are queued
+ * (like writers to a blocking socket are), on the selector thread itself such a
+ * write fails since it would never get unblocked.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class SocketChannelConnection extends AbstractConnection implements ByteStreamProcessorProvider {
+
+	private static final Logger logger = LoggerFactory.getLogger(SocketChannelConnection.class);
+
+	public static final int MAX_PENDING_BYTES = 64 * 1024;
+
+	/**
+	 * Socket options to apply on the channel. Sizes of 0 mean "use the default
+	 * of the operating system".
+	 */
+	public static class SocketOptions {
+
+		private boolean tcpNoDelay = true;
+		private int receiveBufferSize;
+		private int sendBufferSize;
+
+		public static SocketOptions socketOptions() {
+			return new SocketOptions();
+		}
+
+		public SocketOptions tcpNoDelay(boolean tcpNoDelay) {
+			this.tcpNoDelay = tcpNoDelay;
+			return this;
+		}
+
+		public SocketOptions receiveBufferSize(int receiveBufferSize) {
+			checkArgument(receiveBufferSize >= 0, "receiveBufferSize must not be negative but was %s",
+					receiveBufferSize);
+			this.receiveBufferSize = receiveBufferSize;
+			return this;
+		}
+
+		public SocketOptions sendBufferSize(int sendBufferSize) {
+			checkArgument(sendBufferSize >= 0, "sendBufferSize must not be negative but was %s", sendBufferSize);
+			this.sendBufferSize = sendBufferSize;
+			return this;
+		}
+
+		public SocketChannel applyTo(SocketChannel channel) throws IOException {
+			channel.setOption(TCP_NODELAY, tcpNoDelay);
+			if (receiveBufferSize > 0) {
+				channel.setOption(SO_RCVBUF, receiveBufferSize);
+			}
+			if (sendBufferSize > 0) {
+				channel.setOption(SO_SNDBUF, sendBufferSize);
+			}
+			return channel;
+		}
+
+	}
+
+	private final SocketChannel channel;
+	private final ByteStreamProcessor byteStreamProcessor;
+	private final ChannelSelector selector;
+	private final SelectionKey key;
+	private final Deque<ByteBuffer> pending = new ArrayDeque<>();
+	private long pendingBytes;
+
+	/**
+	 * Opens a connection to the passed address using the shared
+	 * {@link ChannelSelector}.
+	 *
+	 * @param address             the address to connect to
+	 * @param socketOptions       the socket options to apply
+	 * @param byteStreamProcessor the processor to pass the bytes received to
+	 * @return the connection
+	 * @throws IOException if the connection cannot be established
+	 */
+	public static SocketChannelConnection open(SocketAddress address, SocketOptions socketOptions,
+			ByteStreamProcessor byteStreamProcessor) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		try {
+			socketOptions.applyTo(channel).connect(address);
+			return new SocketChannelConnection(channel, byteStreamProcessor, ChannelSelector.sharedInstance());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a connection for the passed (connected) channel. The channel gets
+	 * switched to non-blocking mode and registered at the passed selector.
+	 */
+	public SocketChannelConnection(SocketChannel channel, ByteStreamProcessor byteStreamProcessor,
+			ChannelSelector selector) throws IOException {
+		this.channel = checkNotNull(channel, "channel must not be null");
+		this.byteStreamProcessor = checkNotNull(byteStreamProcessor, "byteStreamProcessor must not be null");
+		this.selector = checkNotNull(selector, "selector must not be null");
+		this.key = registerAt(selector);
+	}
+
+	private SelectionKey registerAt(ChannelSelector selector) throws IOException {
+		try {
+			return selector.register(channel, OP_READ, this::ready).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while registering " + channel, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw propagate(cause);
+		}
+	}
+
+	private void ready(SelectionKey key) throws IOException {
+		if (key.isReadable()) {
+			read();
+		}
+		if (key.isValid() && key.isWritable()) {
+			writePending();
+		}
+	}
+
+	private void read() throws IOException {
+		ByteBuffer buffer = selector.readBuffer();
+		buffer.clear();
+		int read = channel.read(buffer);
+		if (read < 0) {
+			logger.info("{} closed by peer", channel);
+			close();
+		} else if (read > 0) {
+			buffer.flip();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			fireReceived(bytes);
+			byteStreamProcessor.process(bytes);
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes) throws IOException {
+		write(new byte[][] { checkNotNull(bytes, "bytes must not be null") });
+	}
+
+	/**
+	 * Writes many messages using one gathering write.
+	 *
+	 * @param messages the messages to write
+	 * @throws IOException on write errors
+	 */
+	public void write(byte[]... messages) throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[messages.length];
+		for (int i = 0; i < messages.length; i++) {
+			buffers[i] = ByteBuffer.wrap(messages[i]);
+		}
+		synchronized (pending) {
+			awaitPendingBytesBelowMaximum();
+			if (pending.isEmpty()) {
+				channel.write(buffers);
+			}
+			boolean queued = false;
+			for (ByteBuffer buffer : buffers) {
+				if (buffer.hasRemaining()) {
+					pending.add(buffer);
+					pendingBytes += buffer.remaining();
+					queued = true;
+				}
+			}
+			if (queued) {
+				selector.execute(() -> interestOps(OP_READ | OP_WRITE));
+			}
+		}
+		for (byte[] message : messages) {
+			fireSent(message);
+		}
+	}
+
+	private void awaitPendingBytesBelowMaximum() throws IOException {
+		if (pendingBytes > MAX_PENDING_BYTES && selector.isSelectorThread()) {
+			throw new IOException(pendingBytes + " bytes pending, the peer of " + channel + " does not consume its data");
+		}
+		try {
+			while (pendingBytes > MAX_PENDING_BYTES) {
+				if (!channel.isOpen()) {
+					throw new ClosedChannelException();
+				}
+				pending.wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + channel + " to be writable");
+		}
+	}
+
+	private void writePending() throws IOException {
+		synchronized (pending) {
+			pendingBytes -= channel.write(pending.toArray(new ByteBuffer[pending.size()]));
+			while (!pending.isEmpty() && !pending.peekFirst().hasRemaining()) {
+				pending.removeFirst();
+			}
+			pending.notifyAll();
+			if (pending.isEmpty()) {
+				interestOps(OP_READ);
+			}
+		}
+	}
+
+	private void interestOps(int ops) {
+		if (key.isValid()) {
+			key.interestOps(ops);
+		}
+	}
+
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	@Override
+	public void close() throws IOException {
+		key.cancel();
+		channel.close();
+		synchronized (pending) {
+			pending.notifyAll();
+		}
+	}
+
+	@Override
+	public ByteStreamProcessor getByteStreamProcessor() {
+		return byteStreamProcessor;
+	}
+
+}
@@ -18,10 +18,12 @@ package org.ardulink.core;
 
 import static org.ardulink.util.Preconditions.checkNotNull;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.ardulink.core.StreamPoller.Registration;
 import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,15 +40,17 @@ public class StreamConnection extends AbstractConnection implements ByteStreamPr
 
 	private static final Logger logger = LoggerFactory.getLogger(StreamConnection.class);
 
-	private final StreamReader streamReader;
+	private final Closeable streamReader;
 	private final OutputStream outputStream;
 	private final ByteStreamProcessor byteStreamProcessor;
+	private volatile Runnable endOfStreamHandler = () -> {
+	};
 
 	public StreamConnection(InputStream inputStream, OutputStream outputStream,
 			ByteStreamProcessor byteStreamProcessor) {
 		this.outputStream = outputStream;
 		this.byteStreamProcessor = byteStreamProcessor;
-		this.streamReader = new StreamReader(inputStream) {
+		StreamReader streamReader = new StreamReader(inputStream) {
 			@Override
 			protected void received(byte[] bytes) throws Exception {
 				fireReceived(bytes);
@@ -55,6 +59,49 @@ public class StreamConnection extends AbstractConnection implements ByteStreamPr
 		if (inputStream != null) {
 			streamReader.runReaderThread(byteStreamProcessor);
 		}
+		this.streamReader = streamReader;
+	}
+
+	/**
+	 * Creates a StreamConnection that does not start an own reader thread but
+	 * registers the InputStream at the passed {@link StreamPoller}.
+	 */
+	public StreamConnection(InputStream inputStream, OutputStream outputStream,
+			ByteStreamProcessor byteStreamProcessor, StreamPoller streamPoller) {
+		this.outputStream = outputStream;
+		this.byteStreamProcessor = byteStreamProcessor;
+		Registration registration = streamPoller.register(inputStream, new StreamPoller.Receiver() {
+
+			@Override
+			public void received(byte[] bytes) {
+				StreamConnection.this.received(bytes);
+			}
+
+			@Override
+			public void endOfStream() {
+				endOfStreamHandler.run();
+			}
+
+		});
+		this.streamReader = () -> {
+			registration.close();
+			inputStream.close();
+		};
+	}
+
+	/**
+	 * Sets the handler to call when the {@link StreamPoller} detected the end of
+	 * the InputStream, e.g. because the peer closed the connection.
+	 *
+	 * @param endOfStreamHandler the handler to call
+	 */
+	public void onEndOfStream(Runnable endOfStreamHandler) {
+		this.endOfStreamHandler = checkNotNull(endOfStreamHandler, "endOfStreamHandler must not be null");
+	}
+
+	private void received(byte[] bytes) {
+		fireReceived(bytes);
+		byteStreamProcessor.process(bytes);
 	}
 
 	@Override
@@ -0,0 +1,219 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.lang.Math.floorMod;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Reads many {@link InputStream}s using a small, fixed number of threads
+ * instead of one blocked reader thread per stream. Streams are assigned
+ * round-robin to the poller threads. Each poller thread checks its streams via
+ * {@link InputStream#available()} and reads at most one buffer per stream and
+ * pass so that a busy stream cannot starve the others. If none of its streams
+ * had data the thread parks for the configured idle time.
+ *
+ * Streams registered here must support {@link InputStream#available()}. A
+ * stream reaching its end (or failing) gets deregistered and its receiver
+ * notified. Since many streams (e.g. those of sockets) report no data available
+ * at their end instead of signaling it, their available() should throw an
+ * {@link EOFException} as soon as the end is detected.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class StreamPoller implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamPoller.class);
+
+	public interface Receiver {
+
+		void received(byte[] bytes) throws Exception;
+
+		/**
+		 * Called once the stream reached its end or failed, the stream has been
+		 * deregistered already.
+		 */
+		default void endOfStream() {
+			// nothing to do by default
+		}
+
+	}
+
+	private static class SharedInstanceHolder {
+		private static final StreamPoller INSTANCE = new StreamPoller(
+				Integer.getInteger("ardulink.streampoller.threads", 2),
+				Long.getLong("ardulink.streampoller.idlemillis", 5));
+	}
+
+	/**
+	 * Returns the JVM wide instance. The number of threads and the idle time can
+	 * be configured using the system properties
+	 * <code>ardulink.streampoller.threads</code> (default 2) and
+	 * <code>ardulink.streampoller.idlemillis</code> (default 5).
+	 *
+	 * @return the shared StreamPoller
+	 */
+	public static StreamPoller sharedInstance() {
+		return SharedInstanceHolder.INSTANCE;
+	}
+
+	private final Worker[] workers;
+	private final AtomicInteger next = new AtomicInteger();
+	private final long idleNanos;
+	private volatile boolean closed;
+
+	public StreamPoller(int threads, long idleMillis) {
+		checkArgument(threads > 0, "threads must be greater 0 but was %s", threads);
+		checkArgument(idleMillis > 0, "idleMillis must be greater 0 but was %s", idleMillis);
+		this.idleNanos = MILLISECONDS.toNanos(idleMillis);
+		this.workers = new Worker[threads];
+		ThreadFactory threadFactory = newThreadFactory("ardulink-streampoller");
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker();
+			threadFactory.newThread(workers[i]).start();
+		}
+	}
+
+	public class Registration implements Closeable {
+
+		private final InputStream inputStream;
+		private final Receiver receiver;
+		private final Worker worker;
+
+		private Registration(InputStream inputStream, Receiver receiver, Worker worker) {
+			this.inputStream = inputStream;
+			this.receiver = receiver;
+			this.worker = worker;
+		}
+
+		@Override
+		public void close() {
+			worker.registrations.remove(this);
+		}
+
+	}
+
+	/**
+	 * Registers the passed stream. From now on all bytes read from the stream get
+	 * passed in chunks to the receiver.
+	 *
+	 * @param inputStream the stream to read
+	 * @param receiver    the receiver to pass the bytes read to
+	 * @return registration that has to be closed to stop reading the stream
+	 */
+	public Registration register(InputStream inputStream, Receiver receiver) {
+		checkState(!closed, "StreamPoller already closed");
+		Worker worker = workers[floorMod(next.getAndIncrement(), workers.length)];
+		Registration registration = new Registration(checkNotNull(inputStream, "InputStream must not be null"),
+				checkNotNull(receiver, "Receiver must not be null"), worker);
+		worker.registrations.add(registration);
+		return registration;
+	}
+
+	private class Worker implements Runnable {
+
+		private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+		private final byte[] buffer = new byte[1024];
+
+		@Override
+		public void run() {
+			while (!closed) {
+				boolean anyRead = false;
+				for (Registration registration : registrations) {
+					anyRead |= poll(registration);
+				}
+				if (!anyRead) {
+					LockSupport.parkNanos(idleNanos);
+				}
+			}
+		}
+
+		private boolean poll(Registration registration) {
+			int read;
+			try {
+				int available = registration.inputStream.available();
+				if (available <= 0) {
+					return false;
+				}
+				read = registration.inputStream.read(buffer, 0, min(available, buffer.length));
+			} catch (EOFException e) {
+				logger.info("End of stream reached, stream gets deregistered: {}", e.getMessage());
+				endOfStream(registration);
+				return false;
+			} catch (IOException e) {
+				logger.error("Error while reading, stream gets deregistered", e);
+				endOfStream(registration);
+				return false;
+			}
+			if (read < 0) {
+				endOfStream(registration);
+				return false;
+			}
+			if (read > 0) {
+				try {
+					registration.receiver.received(Arrays.copyOf(buffer, read));
+				} catch (Exception e) {
+					logger.error("Error while retrieving data", e);
+				}
+			}
+			return read > 0;
+		}
+
+		private void endOfStream(Registration registration) {
+			registration.close();
+			try {
+				registration.receiver.endOfStream();
+			} catch (RuntimeException e) {
+				logger.error("Error while signaling end of stream", e);
+			}
+		}
+
+	}
+
+	@Override
+	public void close() {
+		this.closed = true;
+		for (Worker worker : workers) {
+			worker.registrations.clear();
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ limitations under the License.
 package org.ardulink.core;
 
 import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newPlatformThread;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -39,6 +40,8 @@ public abstract class StreamReader implements Closeable {
 
 	private static final Logger logger = LoggerFactory.getLogger(StreamReader.class);
 
+	private static final String THREAD_NAME = "ardulink-streamreader";
+
 	private final InputStream inputStream;
 
 	private Thread thread;
@@ -48,14 +51,12 @@ public abstract class StreamReader implements Closeable {
 	}
 
 	public void runReaderThread(ByteStreamProcessor byteStreamProcessor) {
-		this.thread = new Thread(() -> readUntilClosed(byteStreamProcessor));
-		this.thread.setDaemon(true);
+		this.thread = newPlatformThread(THREAD_NAME, () -> readUntilClosed(byteStreamProcessor));
 		this.thread.start();
 	}
 
 	public void runReaderThread() {
-		this.thread = new Thread(() -> readUntilClosed());
-		this.thread.setDaemon(true);
+		this.thread = newPlatformThread(THREAD_NAME, () -> readUntilClosed());
 		this.thread.start();
 	}
 
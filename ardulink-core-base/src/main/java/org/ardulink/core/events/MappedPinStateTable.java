@@ -0,0 +1,320 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.Throwables.propagate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.Pin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Mirrors the latest analog and digital pin values of one {@link Link} into a
+ * memory-mapped file so other processes on the same machine can read them with
+ * plain memory loads (no broker, no sockets). Put the file on a RAM backed file
+ * system (e.g. /dev/shm) to avoid disk writes.
+ *
+ * The layout is fixed and little-endian:
+ *
+ * <pre>
+ * header (64 bytes)
+ *   0  int32  magic 0x53504c41 (the bytes "ALPS"), written last
+ *   4  int32  layout version (1)
+ *   8  int32  number of analog slots (A)
+ *  12  int32  number of digital slots (D)
+ *  16  int32  slot size in bytes (32)
+ *  20  int32  header size in bytes (64)
+ *  24  int64  total number of updates of all slots
+ *  32  ..63   reserved
+ * slots (32 bytes each): A analog slots for pins 0..A-1, then D digital slots
+ *   0  int64  sequence, odd while the slot is written, sequence / 2 is the
+ *             number of updates of the pin (0 = never received)
+ *   8  int64  value (analog value, 0 or 1 for digital pins)
+ *  16  int64  timestamp of the update, milliseconds since the epoch
+ *  24  int64  reserved
+ * </pre>
+ *
+ * Slots are protected by a seqlock: readers read the sequence, the value and
+ * the timestamp and then the sequence again and retry if it changed or was odd.
+ * There is only one writer per file. Events of pins outside the table are
+ * ignored.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class MappedPinStateTable extends EventListenerAdapter implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedPinStateTable.class);
+
+	public static final int MAGIC = 0x53504c41;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+	public static final int SLOT_SIZE = 32;
+	public static final int DEFAULT_SLOTS = 64;
+
+	private static final int OFFSET_VERSION = 4;
+	private static final int OFFSET_ANALOG_SLOTS = 8;
+	private static final int OFFSET_DIGITAL_SLOTS = 12;
+	private static final int OFFSET_SLOT_SIZE = 16;
+	private static final int OFFSET_HEADER_SIZE = 20;
+	private static final int OFFSET_UPDATES = 24;
+
+	private static final int SLOT_SEQUENCE = 0;
+	private static final int SLOT_VALUE = 8;
+	private static final int SLOT_TIMESTAMP = 16;
+
+	/**
+	 * The buffer is accessed with plain loads and stores, so the seqlock needs
+	 * explicit fences: a release fence between the stores of the writer and an
+	 * acquire fence between the loads of a reader. These are
+	 * <code>VarHandle.releaseFence()</code> and
+	 * <code>VarHandle.acquireFence()</code> (Java 9 and later), resolved
+	 * reflectively since Ardulink still runs on Java 8 where
+	 * <code>sun.misc.Unsafe.storeFence()</code> and
+	 * <code>sun.misc.Unsafe.loadFence()</code> are used instead.
+	 */
+	private static final MethodHandle STORE_FENCE = fence("releaseFence", "storeFence");
+	private static final MethodHandle LOAD_FENCE = fence("acquireFence", "loadFence");
+
+	private final Link link;
+	private final ByteBuffer buffer;
+	private final int analogSlots;
+	private final int digitalSlots;
+
+	/**
+	 * Creates (or truncates) the file and mirrors the pin values of the passed
+	 * link into it until {@link #close()} is called.
+	 */
+	public static MappedPinStateTable exportTo(Path file, Link link) throws IOException {
+		return exportTo(file, link, DEFAULT_SLOTS, DEFAULT_SLOTS);
+	}
+
+	public static MappedPinStateTable exportTo(Path file, Link link, int analogSlots, int digitalSlots)
+			throws IOException {
+		MappedPinStateTable table = new MappedPinStateTable(file, link, analogSlots, digitalSlots);
+		link.addListener(table);
+		return table;
+	}
+
+	private MappedPinStateTable(Path file, Link link, int analogSlots, int digitalSlots) throws IOException {
+		checkArgument(analogSlots >= 0, "analogSlots must not be negative but was %s", analogSlots);
+		checkArgument(digitalSlots >= 0, "digitalSlots must not be negative but was %s", digitalSlots);
+		this.link = checkNotNull(link, "link must not be null");
+		this.analogSlots = analogSlots;
+		this.digitalSlots = digitalSlots;
+		int size = HEADER_SIZE + (analogSlots + digitalSlots) * SLOT_SIZE;
+		try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+			channel.truncate(0);
+			MappedByteBuffer mapped = channel.map(READ_WRITE, 0, size);
+			this.buffer = mapped.order(LITTLE_ENDIAN);
+		}
+		buffer.putInt(OFFSET_VERSION, VERSION);
+		buffer.putInt(OFFSET_ANALOG_SLOTS, analogSlots);
+		buffer.putInt(OFFSET_DIGITAL_SLOTS, digitalSlots);
+		buffer.putInt(OFFSET_SLOT_SIZE, SLOT_SIZE);
+		buffer.putInt(OFFSET_HEADER_SIZE, HEADER_SIZE);
+		storeFence();
+		buffer.putInt(0, MAGIC);
+		logger.info("Exporting pin states of {} to {}", link, file);
+	}
+
+	@Override
+	public void stateChanged(AnalogPinValueChangedEvent event) {
+		update(event.getPin(), event.getValue());
+	}
+
+	@Override
+	public void stateChanged(DigitalPinValueChangedEvent event) {
+		update(event.getPin(), event.getValue() ? 1 : 0);
+	}
+
+	private synchronized void update(Pin pin, long value) {
+		int offset = offset(pin);
+		if (offset < 0) {
+			return;
+		}
+		long sequence = buffer.getLong(offset + SLOT_SEQUENCE);
+		buffer.putLong(offset + SLOT_SEQUENCE, sequence + 1);
+		storeFence();
+		buffer.putLong(offset + SLOT_VALUE, value);
+		buffer.putLong(offset + SLOT_TIMESTAMP, System.currentTimeMillis());
+		storeFence();
+		buffer.putLong(offset + SLOT_SEQUENCE, sequence + 2);
+		buffer.putLong(OFFSET_UPDATES, buffer.getLong(OFFSET_UPDATES) + 1);
+	}
+
+	private int offset(Pin pin) {
+		return slotOffset(pin, analogSlots, digitalSlots);
+	}
+
+	private static int slotOffset(Pin pin, int analogSlots, int digitalSlots) {
+		int pinNum = pin.pinNum();
+		if (pin.is(ANALOG)) {
+			return pinNum >= 0 && pinNum < analogSlots ? HEADER_SIZE + pinNum * SLOT_SIZE : -1;
+		}
+		return pinNum >= 0 && pinNum < digitalSlots ? HEADER_SIZE + (analogSlots + pinNum) * SLOT_SIZE : -1;
+	}
+
+	private static MethodHandle fence(String varHandleMethod, String unsafeMethod) {
+		MethodType type = MethodType.methodType(void.class);
+		try {
+			return MethodHandles.publicLookup().findStatic(Class.forName("java.lang.invoke.VarHandle"),
+					varHandleMethod, type);
+		} catch (ReflectiveOperationException e) {
+			logger.debug("VarHandle.{} not available, using Unsafe.{}", varHandleMethod, unsafeMethod);
+		}
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			return MethodHandles.publicLookup().findVirtual(unsafeClass, unsafeMethod, type)
+					.bindTo(field.get(null));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalStateException("Neither VarHandle." + varHandleMethod + " nor Unsafe." + unsafeMethod
+					+ " is available", e);
+		}
+	}
+
+	private static void storeFence() {
+		invoke(STORE_FENCE);
+	}
+
+	private static void loadFence() {
+		invoke(LOAD_FENCE);
+	}
+
+	private static void invoke(MethodHandle fence) {
+		try {
+			fence.invokeExact();
+		} catch (Throwable e) {
+			throw propagate(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		link.removeListener(this);
+	}
+
+	/**
+	 * Reads a file written by a {@link MappedPinStateTable}, e.g. of another
+	 * JVM.
+	 */
+	public static class Reader {
+
+		private final ByteBuffer buffer;
+		private final int analogSlots;
+		private final int digitalSlots;
+
+		public Reader(Path file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file, READ)) {
+				this.buffer = channel.map(READ_ONLY, 0, channel.size()).order(LITTLE_ENDIAN);
+			}
+			checkState(buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC, "%s is no pin state table",
+					file);
+			checkState(buffer.getInt(OFFSET_VERSION) == VERSION, "Unsupported layout version %s",
+					buffer.getInt(OFFSET_VERSION));
+			this.analogSlots = buffer.getInt(OFFSET_ANALOG_SLOTS);
+			this.digitalSlots = buffer.getInt(OFFSET_DIGITAL_SLOTS);
+		}
+
+		public long updates() {
+			return buffer.getLong(OFFSET_UPDATES);
+		}
+
+		/**
+		 * Returns a consistent snapshot of the pin's slot or <code>null</code> if
+		 * the pin is not part of the table or no value has been received yet.
+		 */
+		public PinState read(Pin pin) {
+			int offset = slotOffset(pin, analogSlots, digitalSlots);
+			if (offset < 0) {
+				return null;
+			}
+			while (true) {
+				long sequence = buffer.getLong(offset + SLOT_SEQUENCE);
+				loadFence();
+				long value = buffer.getLong(offset + SLOT_VALUE);
+				long timestamp = buffer.getLong(offset + SLOT_TIMESTAMP);
+				loadFence();
+				if ((sequence & 1) == 0 && sequence == buffer.getLong(offset + SLOT_SEQUENCE)) {
+					return sequence == 0 ? null : new PinState(value, timestamp, sequence / 2);
+				}
+				Thread.yield();
+			}
+		}
+
+	}
+
+	public static class PinState {
+
+		private final long value;
+		private final long timestamp;
+		private final long updates;
+
+		private PinState(long value, long timestamp, long updates) {
+			this.value = value;
+			this.timestamp = timestamp;
+			this.updates = updates;
+		}
+
+		public long getValue() {
+			return value;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public long getUpdates() {
+			return updates;
+		}
+
+		@Override
+		public String toString() {
+			return "PinState [value=" + value + ", timestamp=" + timestamp + ", updates=" + updates + "]";
+		}
+
+	}
+
+}
@@ -521,7 +521,14 @@ public abstract class LinkManager {
 
 		@Override
 		public ConfigAttribute getAttribute(String key) {
-			return cache.computeIfAbsent(key, k -> new ConfigAttributeAdapter<>(linkConfig, beanProperties, k));
+			// no computeIfAbsent: creating an attribute resolves the attributes it
+			// depends on which modifies the cache as well
+			ConfigAttributeAdapter<T> attribute = cache.get(key);
+			if (attribute == null) {
+				attribute = new ConfigAttributeAdapter<>(linkConfig, beanProperties, key);
+				cache.put(key, attribute);
+			}
+			return attribute;
 
 		}
 
@@ -0,0 +1,219 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.topic;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.Type;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Resolves topics of the form <code>{prefix}{pin number}{suffix}</code> (e.g.
+ * "home/devices/ardulink/A3/value/set") to the action, pin type and pin number
+ * registered for the prefix/suffix. The routes are kept in a character trie, so
+ * resolving a topic walks it once without regex matching and without creating
+ * substrings. Pin numbers are decimal digits, so suffixes must not start with a
+ * digit.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public final class TopicRouter<T> {
+
+	public static class Builder<T> {
+
+		private Node<T> root = new Node<>();
+
+		/**
+		 * Routes topics <code>{prefix}{pin number}{suffix}</code> to the passed
+		 * action for pins of the passed type.
+		 */
+		public Builder<T> route(String prefix, Type type, String suffix, T action) {
+			checkState(root != null, "Router already built");
+			checkNotNull(prefix, "prefix must not be null");
+			checkNotNull(suffix, "suffix must not be null");
+			checkArgument(suffix.isEmpty() || !isDigit(suffix.charAt(0)), "suffix %s must not start with a digit",
+					suffix);
+			Node<T> node = root.literal(prefix).pinNumber().literal(suffix);
+			checkState(node.route == null, "Duplicate route %s{pin}%s", prefix, suffix);
+			node.route = new Route<>(checkNotNull(type, "type must not be null"),
+					checkNotNull(action, "action must not be null"));
+			return this;
+		}
+
+		public TopicRouter<T> build() {
+			checkState(root != null, "Router already built");
+			TopicRouter<T> router = new TopicRouter<>(root);
+			root = null;
+			return router;
+		}
+
+	}
+
+	public static final class Match<T> {
+
+		private final T action;
+		private final Type type;
+		private final int pinNumber;
+
+		private Match(T action, Type type, int pinNumber) {
+			this.action = action;
+			this.type = type;
+			this.pinNumber = pinNumber;
+		}
+
+		public T getAction() {
+			return action;
+		}
+
+		public Type getType() {
+			return type;
+		}
+
+		public int getPinNumber() {
+			return pinNumber;
+		}
+
+		public Pin getPin() {
+			return type == ANALOG ? analogPin(pinNumber) : digitalPin(pinNumber);
+		}
+
+		@Override
+		public String toString() {
+			return "Match [action=" + action + ", type=" + type + ", pinNumber=" + pinNumber + "]";
+		}
+
+	}
+
+	private static final class Route<T> {
+
+		private final Type type;
+		private final T action;
+
+		private Route(Type type, T action) {
+			this.type = type;
+			this.action = action;
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private static final class Node<T> {
+
+		private char[] keys = new char[0];
+		private Node<T>[] children = new Node[0];
+		private Node<T> pinNumber;
+		private Route<T> route;
+
+		private Node<T> child(char c) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] == c) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		private Node<T> literal(String literal) {
+			Node<T> node = this;
+			for (int i = 0; i < literal.length(); i++) {
+				node = node.childOrNew(literal.charAt(i));
+			}
+			return node;
+		}
+
+		private Node<T> childOrNew(char c) {
+			Node<T> child = child(c);
+			if (child == null) {
+				child = new Node<>();
+				keys = Arrays.copyOf(keys, keys.length + 1);
+				children = Arrays.copyOf(children, children.length + 1);
+				keys[keys.length - 1] = c;
+				children[children.length - 1] = child;
+			}
+			return child;
+		}
+
+		private Node<T> pinNumber() {
+			if (pinNumber == null) {
+				pinNumber = new Node<>();
+			}
+			return pinNumber;
+		}
+
+	}
+
+	private static final int MAX_PIN_DIGITS = 9;
+
+	private final Node<T> root;
+
+	public static <T> Builder<T> builder() {
+		return new Builder<>();
+	}
+
+	private TopicRouter(Node<T> root) {
+		this.root = root;
+	}
+
+	public Optional<Match<T>> resolve(CharSequence topic) {
+		return Optional.ofNullable(resolve(root, topic, 0, -1));
+	}
+
+	private static <T> Match<T> resolve(Node<T> node, CharSequence topic, int index, int pinNumber) {
+		if (index == topic.length()) {
+			Route<T> route = node.route;
+			return route == null ? null : new Match<>(route.action, route.type, pinNumber);
+		}
+		char c = topic.charAt(index);
+		Node<T> child = node.child(c);
+		if (child != null) {
+			Match<T> match = resolve(child, topic, index + 1, pinNumber);
+			if (match != null) {
+				return match;
+			}
+		}
+		if (node.pinNumber != null && isDigit(c)) {
+			int value = 0;
+			int end = index;
+			while (end < topic.length() && isDigit(topic.charAt(end))) {
+				if (end - index == MAX_PIN_DIGITS) {
+					return null;
+				}
+				value = value * 10 + topic.charAt(end++) - '0';
+			}
+			return resolve(node.pinNumber, topic, end, value);
+		}
+		return null;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.FramedOutputStream.MAX_FRAME_SIZE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 10, unit = SECONDS)
+class FramedStreamsTest {
+
+	private static final String MESSAGE = "alp://ared/3/42\n";
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void whatIsWrittenCanBeReadBack(boolean deflate) throws IOException {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		try (FramedOutputStream out = new FramedOutputStream(wire, deflate, 0)) {
+			for (int i = 0; i < 100; i++) {
+				out.write(MESSAGE.getBytes());
+				out.flush();
+			}
+		}
+		assertThat(readAll(new FramedInputStream(new ByteArrayInputStream(wire.toByteArray()), deflate)))
+				.isEqualTo(repeat(MESSAGE, 100));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = { false, true })
+	void largeWritesAreSplitIntoFramesNotExceedingTheMaximumSize(boolean deflate) throws IOException {
+		byte[] data = new byte[3 * MAX_FRAME_SIZE];
+		// incompressible
+		new Random(0).nextBytes(data);
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		try (FramedOutputStream out = new FramedOutputStream(wire, deflate, 0)) {
+			out.write(data);
+		}
+		DataInputStream frames = new DataInputStream(new ByteArrayInputStream(wire.toByteArray()));
+		while (frames.available() > 0) {
+			int length = frames.readInt();
+			assertThat(length).isLessThanOrEqualTo(MAX_FRAME_SIZE);
+			frames.skipBytes(length);
+		}
+		byte[] read = new byte[data.length];
+		new DataInputStream(new FramedInputStream(new ByteArrayInputStream(wire.toByteArray()), deflate))
+				.readFully(read);
+		assertThat(read).isEqualTo(data);
+	}
+
+	@Test
+	void framesExceedingTheMaximumSizeAreRejected() throws IOException {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		new DataOutputStream(wire).writeInt(MAX_FRAME_SIZE + 1);
+		FramedInputStream in = new FramedInputStream(new ByteArrayInputStream(wire.toByteArray()), false);
+		assertThatThrownBy(in::read).isInstanceOf(IOException.class).hasMessageContaining("frame length");
+	}
+
+	@Test
+	void inflatedFramesExceedingTheMaximumSizeAreRejected() throws IOException {
+		Deflater deflater = new Deflater();
+		deflater.setInput(new byte[2 * MAX_FRAME_SIZE]);
+		deflater.finish();
+		byte[] deflated = new byte[MAX_FRAME_SIZE];
+		int length = deflater.deflate(deflated);
+		deflater.end();
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(wire);
+		out.writeInt(length);
+		out.write(deflated, 0, length);
+		FramedInputStream in = new FramedInputStream(new ByteArrayInputStream(wire.toByteArray()), true);
+		assertThatThrownBy(in::read).isInstanceOf(IOException.class).hasMessageContaining("Inflated frame");
+	}
+
+	@Test
+	void eachFlushSendsOneFrameIfNotCoalescing() throws IOException {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		FramedOutputStream out = new FramedOutputStream(wire, false, 0);
+		out.write(MESSAGE.getBytes());
+		out.flush();
+		out.write(MESSAGE.getBytes());
+		out.flush();
+		assertThat(frames(wire)).isEqualTo(2);
+	}
+
+	@Test
+	void flushesWithinCoalescingWindowAreSentAsOneFrame() throws IOException {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		FramedOutputStream out = new FramedOutputStream(wire, false, 200);
+		for (int i = 0; i < 10; i++) {
+			out.write(MESSAGE.getBytes());
+			out.flush();
+		}
+		assertThat(wire.size()).isZero();
+		await().until(() -> wire.size() > 0);
+		assertThat(frames(wire)).isEqualTo(1);
+		assertThat(readAll(new FramedInputStream(new ByteArrayInputStream(wire.toByteArray()), false)))
+				.isEqualTo(repeat(MESSAGE, 10));
+	}
+
+	@Test
+	void availableReportsCompletelyReceivedFramesOnly() throws IOException {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		try (FramedOutputStream out = new FramedOutputStream(wire, true, 0)) {
+			out.write(MESSAGE.getBytes());
+		}
+		byte[] frame = wire.toByteArray();
+		PipedOutputStream sender = new PipedOutputStream();
+		FramedInputStream in = new FramedInputStream(new PipedInputStream(sender), true);
+		assertThat(in.available()).isZero();
+		sender.write(frame, 0, frame.length - 1);
+		assertThat(in.available()).isZero();
+		sender.write(frame, frame.length - 1, 1);
+		assertThat(in.available()).isEqualTo(MESSAGE.length());
+		assertThat(readAll(in, MESSAGE.length())).isEqualTo(MESSAGE);
+	}
+
+	@Test
+	void deflateShrinksBulkData() throws IOException {
+		ByteArrayOutputStream wire = new ByteArrayOutputStream();
+		try (FramedOutputStream out = new FramedOutputStream(wire, true, 0)) {
+			for (int i = 0; i < 100; i++) {
+				out.write(MESSAGE.getBytes());
+			}
+		}
+		assertThat(wire.size()).isLessThan(repeat(MESSAGE, 100).length() / 2);
+	}
+
+	private static int frames(ByteArrayOutputStream wire) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(wire.toByteArray()));
+		int frames = 0;
+		while (in.available() > 0) {
+			in.skipBytes(in.readInt());
+			frames++;
+		}
+		return frames;
+	}
+
+	private static String readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7];
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			result.write(buffer, 0, read);
+		}
+		return result.toString();
+	}
+
+	private static String readAll(InputStream inputStream, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		new DataInputStream(inputStream).readFully(bytes);
+		return new String(bytes);
+	}
+
+	private static String repeat(String string, int times) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			sb.append(string);
+		}
+		return sb.toString();
+	}
+
+}
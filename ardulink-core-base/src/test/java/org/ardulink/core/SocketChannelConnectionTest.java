@@ -0,0 +1,159 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.net.InetAddress.getLoopbackAddress;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.SocketChannelConnection.SocketOptions.socketOptions;
+import static org.ardulink.core.proto.api.Protocols.protoByName;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 10, unit = SECONDS)
+class SocketChannelConnectionTest {
+
+	ServerSocket serverSocket;
+	Socket deviceSide;
+	ConnectionBasedLink link;
+
+	@BeforeEach
+	void setup() throws IOException {
+		serverSocket = new ServerSocket(0, 1, getLoopbackAddress());
+		SocketChannelConnection connection = SocketChannelConnection.open(
+				new InetSocketAddress(getLoopbackAddress(), serverSocket.getLocalPort()),
+				socketOptions().tcpNoDelay(true).receiveBufferSize(16 * 1024),
+				protoByName(ArdulinkProtocol2.NAME).newByteStreamProcessor());
+		deviceSide = serverSocket.accept();
+		link = new ConnectionBasedLink(connection);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		link.close();
+		deviceSide.close();
+		serverSocket.close();
+	}
+
+	@Test
+	void messagesWrittenArriveAtDevice() throws IOException {
+		link.switchAnalogPin(analogPin(1), 2);
+		((SocketChannelConnection) link.getConnection()).write("alp://ppin/3/4\n".getBytes(),
+				"alp://ppin/5/6\n".getBytes());
+		String expected = "alp://ppin/1/2\nalp://ppin/3/4\nalp://ppin/5/6\n";
+		assertThat(read(deviceSide.getInputStream(), expected.length())).isEqualTo(expected);
+	}
+
+	@Test
+	void messagesSentByDeviceArePassedToTheLink() throws IOException {
+		List<AnalogPinValueChangedEvent> events = new CopyOnWriteArrayList<>();
+		link.addListener(new EventListenerAdapter() {
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				events.add(event);
+			}
+		});
+		deviceSide.getOutputStream().write("alp://ared/3/42\nalp://ared/4/43\n".getBytes());
+		await().until(() -> events.size() == 2);
+		assertThat(events).extracting(e -> e.getValue()).containsExactly(42, 43);
+	}
+
+	@Test
+	void largeWritesGetQueuedAndWrittenCompletely() throws IOException {
+		byte[] payload = new byte[4 * 1024 * 1024];
+		for (int i = 0; i < payload.length; i++) {
+			payload[i] = (byte) ('a' + i % 26);
+		}
+		link.getConnection().write(payload);
+		assertThat(read(deviceSide.getInputStream(), payload.length)).isEqualTo(new String(payload));
+	}
+
+	@Test
+	void writersGetBlockedWhileTheDeviceDoesNotRead() throws Exception {
+		byte[] message = new byte[1024];
+		for (int i = 0; i < message.length; i++) {
+			message[i] = (byte) ('a' + i % 26);
+		}
+		int messages = 10 * SocketChannelConnection.MAX_PENDING_BYTES / message.length;
+		try (ServerSocket serverSocket = new ServerSocket()) {
+			serverSocket.setReceiveBufferSize(16 * 1024);
+			serverSocket.bind(new InetSocketAddress(getLoopbackAddress(), 0));
+			try (SocketChannelConnection connection = SocketChannelConnection.open(
+					new InetSocketAddress(getLoopbackAddress(), serverSocket.getLocalPort()),
+					socketOptions().sendBufferSize(16 * 1024),
+					protoByName(ArdulinkProtocol2.NAME).newByteStreamProcessor());
+					Socket deviceSide = serverSocket.accept()) {
+				CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+					try {
+						for (int i = 0; i < messages; i++) {
+							connection.write(message);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+				await().during(500, MILLISECONDS).atMost(1, SECONDS).until(() -> !writer.isDone());
+
+				String received = read(deviceSide.getInputStream(), messages * message.length);
+				writer.get(5, SECONDS);
+				assertThat(received).hasSize(messages * message.length);
+			}
+		}
+	}
+
+	private static String read(InputStream inputStream, int length) throws IOException {
+		ByteArrayOutputStream received = new ByteArrayOutputStream(length);
+		byte[] buffer = new byte[8192];
+		while (received.size() < length) {
+			int read = inputStream.read(buffer, 0, Math.min(buffer.length, length - received.size()));
+			if (read < 0) {
+				break;
+			}
+			received.write(buffer, 0, read);
+		}
+		return received.toString();
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ardulink.core.messages.api.FromDeviceMessage;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 10, unit = SECONDS)
+class StreamPollerTest {
+
+	StreamPoller sut = new StreamPoller(1, 1);
+
+	@AfterEach
+	void tearDown() {
+		sut.close();
+	}
+
+	@Test
+	void oneThreadCanServeManyStreams() {
+		ByteArrayOutputStream received1 = new ByteArrayOutputStream();
+		ByteArrayOutputStream received2 = new ByteArrayOutputStream();
+		sut.register(new ByteArrayInputStream("first".getBytes()), received1::write);
+		sut.register(new ByteArrayInputStream("second".getBytes()), received2::write);
+
+		await().untilAsserted(() -> {
+			assertThat(received1.toString()).isEqualTo("first");
+			assertThat(received2.toString()).isEqualTo("second");
+		});
+	}
+
+	@Test
+	void streamConnectionCanUsePoller() throws IOException {
+		PipedOutputStream arduino = new PipedOutputStream();
+		List<FromDeviceMessage> messages = new CopyOnWriteArrayList<>();
+		try (StreamConnection connection = new StreamConnection(new PipedInputStream(arduino),
+				new ByteArrayOutputStream(), new ArdulinkProtocol2().newByteStreamProcessor(), sut)) {
+			connection.getByteStreamProcessor().addListener(messages::add);
+			arduino.write("alp://ared/1/42\nalp://dred/2/1\n".getBytes());
+			await().untilAsserted(() -> assertThat(messages).hasSize(2));
+		}
+	}
+
+}
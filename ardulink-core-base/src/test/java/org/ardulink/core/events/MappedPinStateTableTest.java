@@ -0,0 +1,134 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.events;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
+import static org.ardulink.core.events.DefaultDigitalPinValueChangedEvent.digitalPinValueChanged;
+import static org.ardulink.testsupport.mock.TestSupport.fireEvent;
+import static org.ardulink.testsupport.mock.TestSupport.uniqueMockUri;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.core.events.MappedPinStateTable.PinState;
+import org.ardulink.core.events.MappedPinStateTable.Reader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 10, unit = SECONDS)
+class MappedPinStateTableTest {
+
+	@TempDir
+	Path tempDir;
+
+	Link link;
+	Path file;
+
+	@BeforeEach
+	void setup() throws IOException {
+		link = Links.getLink(uniqueMockUri());
+		file = tempDir.resolve("pins");
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		link.close();
+	}
+
+	@Test
+	void mirrorsLatestPinValues() throws IOException {
+		try (MappedPinStateTable table = MappedPinStateTable.exportTo(file, link, 6, 14)) {
+			long before = System.currentTimeMillis();
+			fireEvent(link, analogPinValueChanged(analogPin(3), 41));
+			fireEvent(link, analogPinValueChanged(analogPin(3), 42));
+			fireEvent(link, digitalPinValueChanged(digitalPin(13), true));
+			fireEvent(link, digitalPinValueChanged(digitalPin(14), true));
+
+			Reader reader = new Reader(file);
+			PinState analog = reader.read(analogPin(3));
+			assertThat(analog.getValue()).isEqualTo(42);
+			assertThat(analog.getUpdates()).isEqualTo(2);
+			assertThat(analog.getTimestamp()).isBetween(before, System.currentTimeMillis());
+			assertThat(reader.read(digitalPin(13)).getValue()).isEqualTo(1);
+			assertThat(reader.read(digitalPin(14))).isNull();
+			assertThat(reader.read(analogPin(2))).isNull();
+			assertThat(reader.updates()).isEqualTo(3);
+		}
+	}
+
+	@Test
+	void layoutIsAsDocumented() throws IOException {
+		try (MappedPinStateTable table = MappedPinStateTable.exportTo(file, link, 2, 3)) {
+			fireEvent(link, digitalPinValueChanged(digitalPin(1), true));
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(LITTLE_ENDIAN);
+		assertThat(bytes.capacity()).isEqualTo(64 + 5 * 32);
+		assertThat(new String(bytes.array(), 0, 4)).isEqualTo("ALPS");
+		assertThat(bytes.getInt(4)).isEqualTo(1);
+		assertThat(bytes.getInt(8)).isEqualTo(2);
+		assertThat(bytes.getInt(12)).isEqualTo(3);
+		assertThat(bytes.getInt(16)).isEqualTo(32);
+		assertThat(bytes.getInt(20)).isEqualTo(64);
+		assertThat(bytes.getLong(24)).isEqualTo(1);
+		int slot = 64 + (2 + 1) * 32;
+		assertThat(bytes.getLong(slot)).isEqualTo(2);
+		assertThat(bytes.getLong(slot + 8)).isEqualTo(1);
+	}
+
+	@Test
+	void readersNeverSeeTornSlots() throws Exception {
+		int updates = 200_000;
+		try (MappedPinStateTable table = MappedPinStateTable.exportTo(file, link)) {
+			Thread writer = new Thread(() -> {
+				for (int i = 1; i <= updates; i++) {
+					table.stateChanged(analogPinValueChanged(analogPin(0), i));
+				}
+			});
+			writer.start();
+			Reader reader = new Reader(file);
+			PinState state;
+			do {
+				state = reader.read(analogPin(0));
+				if (state != null) {
+					assertThat(state.getValue()).isEqualTo(state.getUpdates());
+				}
+			} while (state == null || state.getUpdates() < updates);
+			writer.join();
+		}
+	}
+
+}
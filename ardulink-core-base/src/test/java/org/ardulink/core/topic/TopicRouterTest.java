@@ -0,0 +1,87 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.topic;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.Pin.Type.DIGITAL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.ardulink.core.topic.TopicRouter.Match;
+import org.junit.jupiter.api.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class TopicRouterTest {
+
+	TopicRouter<String> sut = TopicRouter.<String>builder() //
+			.route("base/A", ANALOG, "/value/set", "write") //
+			.route("base/D", DIGITAL, "/value/set", "write") //
+			.route("base/system/listening/A", ANALOG, "/value/set", "control") //
+			.route("base/system/listening/D", DIGITAL, "/value/set", "control") //
+			.route("base/A", ANALOG, "", "plain") //
+			.build();
+
+	@Test
+	void resolvesActionPinTypeAndPinNumber() {
+		Match<String> match = sut.resolve("base/A12/value/set").get();
+		assertThat(match.getAction()).isEqualTo("write");
+		assertThat(match.getType()).isEqualTo(ANALOG);
+		assertThat(match.getPinNumber()).isEqualTo(12);
+		assertThat(match.getPin()).isEqualTo(analogPin(12));
+		assertThat(sut.resolve("base/D3/value/set").map(Match::getPin)).hasValue(digitalPin(3));
+		assertThat(sut.resolve("base/system/listening/D07/value/set").map(Match::getAction)).hasValue("control");
+		assertThat(sut.resolve("base/A5").map(Match::getAction)).hasValue("plain");
+	}
+
+	@Test
+	void doesNotResolveUnknownTopics() {
+		assertThat(sut.resolve("base/A/value/set")).isEmpty();
+		assertThat(sut.resolve("base/A1x/value/set")).isEmpty();
+		assertThat(sut.resolve("base/A1/value/get")).isEmpty();
+		assertThat(sut.resolve("base/A1/value/set/more")).isEmpty();
+		assertThat(sut.resolve("base/X1/value/set")).isEmpty();
+		assertThat(sut.resolve("other/A1/value/set")).isEmpty();
+		assertThat(sut.resolve("base/A12345678901/value/set")).isEmpty();
+		assertThat(sut.resolve("")).isEmpty();
+	}
+
+	@Test
+	void literalDigitsInPrefixTakePrecedenceOverPinNumbers() {
+		TopicRouter<String> router = TopicRouter.<String>builder() //
+				.route("base/", ANALOG, "/x", "pin") //
+				.route("base/1", DIGITAL, "/x", "prefixed") //
+				.build();
+		assertThat(router.resolve("base/12/x").map(m -> m.getAction() + m.getPinNumber())).hasValue("prefixed2");
+		assertThat(router.resolve("base/21/x").map(m -> m.getAction() + m.getPinNumber())).hasValue("pin21");
+	}
+
+	@Test
+	void rejectsDuplicateRoutes() {
+		TopicRouter.Builder<String> builder = TopicRouter.<String>builder().route("a/A", ANALOG, "", "x");
+		assertThrows(IllegalStateException.class, () -> builder.route("a/A", DIGITAL, "", "y"));
+	}
+
+}
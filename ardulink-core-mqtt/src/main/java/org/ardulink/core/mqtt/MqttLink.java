@@ -15,13 +15,16 @@ limitations under the License.
  */
 
 package org.ardulink.core.mqtt;
-import static java.lang.Boolean.FALSE;
-import static java.lang.Boolean.TRUE;
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.Integer.parseInt;
+import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableMap;
-import static java.util.regex.Pattern.quote;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
@@ -31,17 +34,22 @@ import static org.ardulink.core.mqtt.MqttLinkConfig.Connection.TCP;
 import static org.ardulink.core.mqtt.MqttLinkConfig.Connection.TLS;
 import static org.ardulink.util.Preconditions.checkArgument;
 import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
 import static org.ardulink.util.Predicates.not;
-import static org.ardulink.util.Regex.regex;
 import static org.ardulink.util.Throwables.propagate;
 import static org.ardulink.util.anno.LapsedWith.JDK9;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ardulink.core.AbstractListenerLink;
 import org.ardulink.core.Pin;
@@ -49,22 +57,43 @@ import org.ardulink.core.Pin.AnalogPin;
 import org.ardulink.core.Pin.DigitalPin;
 import org.ardulink.core.Pin.Type;
 import org.ardulink.core.Tone;
+import org.ardulink.core.events.DefaultRplyEvent;
 import org.ardulink.core.mqtt.MqttLinkConfig.Connection;
 import org.ardulink.core.proto.api.MessageIdHolders;
+import org.ardulink.core.topic.TopicRouter;
 import org.ardulink.util.MapBuilder;
 import org.ardulink.util.anno.LapsedWith;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
+ * By default each message is published synchronously, so the link methods
+ * return when the broker has acknowledged the message (for QoS 1 and 2 this is
+ * a broker round trip per command). In async mode the link methods publish
+ * without waiting and return a message id, a {@link DefaultRplyEvent} for that
+ * id is fired once the message has been delivered (or failed). The
+ * <code>*Async</code> methods always publish this way and additionally return a
+ * future completing with the message id. At most <i>maxInflight</i> messages
+ * are unacknowledged at a time, publishing blocks while the window is full.
+ * 
+ * With <i>offlineBuffer</i> enabled, messages published while the broker is
+ * unreachable are buffered (see {@link OfflineBuffer}, a newer message of a pin
+ * supersedes the buffered one) and published after reconnecting, at most
+ * <i>drainRate</i> messages per second. Buffered messages have no message id,
+ * the link methods return {@link MessageIdHolders#NO_ID}.
+ * 
  * project Ardulink http://www.ardulink.org/
  * 
  * [adsense]
@@ -72,9 +101,53 @@ import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
  */
 public class MqttLink extends AbstractListenerLink {
 
+	private interface PinValueHandler {
+		void handle(int pinNumber, String payload);
+	}
+
+	/**
+	 * Completes with the message id when the broker acknowledged the message.
+	 */
+	private final class Delivery extends CompletableFuture<Long> implements IMqttActionListener {
+
+		private final long id;
+
+		private Delivery(long id) {
+			this.id = id;
+		}
+
+		@Override
+		public void onSuccess(IMqttToken token) {
+			inflight.release();
+			complete(id);
+			fireReplyReceived(new DefaultRplyEvent(true, id, emptyMap()));
+		}
+
+		@Override
+		public void onFailure(IMqttToken token, Throwable exception) {
+			inflight.release();
+			completeExceptionally(exception);
+			fireReplyReceived(new DefaultRplyEvent(false, id, emptyMap()));
+		}
+
+	}
+
+	private static final Logger logger = LoggerFactory.getLogger(MqttLink.class);
+
 	private static final String ANALOG = "A";
 	private static final String DIGITAL = "D";
 
+	/**
+	 * Topics of the first {@value} pins and payloads of the analog values below
+	 * {@value #PRECOMPUTED_ANALOG_VALUES} are created once.
+	 */
+	private static final int PRECOMPUTED_PINS = 128;
+	private static final int PRECOMPUTED_ANALOG_VALUES = 1024;
+
+	private static final byte[] TRUE = bytes(String.valueOf(true));
+	private static final byte[] FALSE = bytes(String.valueOf(false));
+	private static final byte[][] ANALOG_VALUES = analogValues();
+
 	@LapsedWith(value = JDK9, module = "List#of")
 	private static final Map<Connection, String> prefixes = unmodifiableMap(
 			new EnumMap<>(MapBuilder.<Connection, String>newMapBuilder() //
@@ -92,28 +165,57 @@ public class MqttLink extends AbstractListenerLink {
 
 	private final int qos;
 	private final String topic;
-	private final Pattern mqttReceivePattern;
-	private final MqttClient mqttClient;
+	private final TopicRouter<PinValueHandler> router;
+	private final MqttAsyncClient mqttClient;
 	private final boolean hasAppendix;
-
-	public MqttLink(MqttLinkConfig config) throws MqttException {
+	private final boolean async;
+	private final Semaphore inflight;
+	private final AtomicLong messageIds = new AtomicLong();
+	private final Map<Type, String[]> writeTopics = new EnumMap<>(Type.class);
+	private final Map<Type, String[]> controlTopics = new EnumMap<>(Type.class);
+	private final OfflineBuffer offlineBuffer;
+	private final ExecutorService drainer;
+	private final long drainIntervalNanos;
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	public MqttLink(MqttLinkConfig config) throws MqttException, IOException {
 		checkArgument(config.getHost() != null, "host must not be null");
 		checkArgument(config.getClientId() != null, "clientId must not be null");
 		checkArgument(config.getTopic() != null, "topic must not be null");
 		this.qos = config.getQos().intValue();
 		this.hasAppendix = config.separateTopics;
 		this.topic = config.getTopic();
-		this.mqttReceivePattern = regex(MqttLink.this.topic + "([aAdD])(\\d+)" + quote(appendixSub()));
+		this.async = config.async;
+		checkArgument(config.maxInflight > 0, "maxInflight must be greater than zero but was %s", config.maxInflight);
+		this.inflight = new Semaphore(config.maxInflight);
+		for (Type type : typeMap.keySet()) {
+			this.writeTopics.put(type, topics(writePrefix(), type));
+			this.controlTopics.put(type, topics(controlPrefix(), type));
+		}
+		this.router = router();
+		checkArgument(config.drainRate >= 0, "drainRate must not be negative but was %s", config.drainRate);
+		this.offlineBuffer = offlineBuffer(config);
+		this.drainer = offlineBuffer == null ? null : newSingleThreadExecutor(newThreadFactory("ardulink-mqtt-drain"));
+		this.drainIntervalNanos = config.drainRate == 0 ? 0 : SECONDS.toNanos(1) / config.drainRate;
 		this.mqttClient = newClient(config);
 		MqttCallback callback = callback();
 		this.mqttClient.setCallback(callback);
-		this.mqttClient.connect(options(config));
+		this.mqttClient.connect(options(config)).waitForCompletion();
 		subscribe();
 		fireReconnected();
 	}
 
+	private static OfflineBuffer offlineBuffer(MqttLinkConfig config) throws IOException {
+		if (config.offlineBuffer == 0) {
+			return null;
+		}
+		return nonEmpty(config.offlineSpillFile).isPresent()
+				? new OfflineBuffer(config.offlineBuffer, Paths.get(config.offlineSpillFile), config.offlineSpillSize)
+				: new OfflineBuffer(config.offlineBuffer);
+	}
+
 	private void subscribe() throws MqttException {
-		this.mqttClient.subscribe(topic + "#", qos, (t, m) -> messageReceived(t, m));
+		this.mqttClient.subscribe(topic + "#", qos, (t, m) -> messageReceived(t, m)).waitForCompletion();
 	}
 
 	private MqttCallback callback() {
@@ -142,6 +244,9 @@ public class MqttLink extends AbstractListenerLink {
 				} catch (MqttException e) {
 					throw propagate(e);
 				}
+				if (offlineBuffer != null) {
+					scheduleDrain();
+				}
 			}
 		};
 	}
@@ -150,6 +255,7 @@ public class MqttLink extends AbstractListenerLink {
 		MqttConnectOptions options = new MqttConnectOptions();
 		options.setConnectionTimeout(10);
 		options.setAutomaticReconnect(true);
+		options.setMaxInflight(config.maxInflight);
 		nonEmpty(config.user).ifPresent(options::setUserName);
 		nonEmpty(config.password).map(String::toCharArray).ifPresent(options::setPassword);
 		return options;
@@ -167,26 +273,29 @@ public class MqttLink extends AbstractListenerLink {
 		return hasAppendix ? "/value/set" : "";
 	}
 
+	private TopicRouter<PinValueHandler> router() {
+		PinValueHandler analog = (pinNumber, payload) -> fireStateChanged(
+				analogPinValueChanged(analogPin(pinNumber), parseInt(payload)));
+		PinValueHandler digital = (pinNumber, payload) -> fireStateChanged(
+				digitalPinValueChanged(digitalPin(pinNumber), parseBoolean(payload)));
+		return TopicRouter.<PinValueHandler>builder() //
+				.route(topic + ANALOG, Type.ANALOG, appendixSub(), analog) //
+				.route(topic + ANALOG.toLowerCase(), Type.ANALOG, appendixSub(), analog) //
+				.route(topic + DIGITAL, Type.DIGITAL, appendixSub(), digital) //
+				.route(topic + DIGITAL.toLowerCase(), Type.DIGITAL, appendixSub(), digital) //
+				.build();
+	}
+
 	private void messageReceived(String topic, MqttMessage message) {
-		Matcher matcher = mqttReceivePattern.matcher(topic);
-		if (matcher.matches() && matcher.groupCount() == 2) {
-			String pinType = matcher.group(1);
-			int pinNumber = parseInt(matcher.group(2));
-			String payload = payload(message);
-			if (DIGITAL.equalsIgnoreCase(pinType)) {
-				fireStateChanged(digitalPinValueChanged(digitalPin(pinNumber), parseBoolean(payload)));
-			} else if (ANALOG.equalsIgnoreCase(pinType)) {
-				fireStateChanged(analogPinValueChanged(analogPin(pinNumber), parseInt(payload)));
-			}
-		}
+		router.resolve(topic).ifPresent(m -> m.getAction().handle(m.getPinNumber(), payload(message)));
 	}
 
 	private String payload(MqttMessage message) {
 		return new String(message.getPayload(), UTF_8);
 	}
 
-	private MqttClient newClient(MqttLinkConfig config) throws MqttException {
-		return new MqttClient(serverUrl(config), config.getClientId(), new MemoryPersistence());
+	private MqttAsyncClient newClient(MqttLinkConfig config) throws MqttException {
+		return new MqttAsyncClient(serverUrl(config), config.getClientId(), new MemoryPersistence());
 	}
 
 	private String serverUrl(MqttLinkConfig config) {
@@ -200,48 +309,215 @@ public class MqttLink extends AbstractListenerLink {
 
 	@Override
 	public long startListening(Pin pin) throws IOException {
-		publish(controlTopic(pin), TRUE);
-		return MessageIdHolders.NO_ID.getId();
+		return publish(controlTopic(pin), TRUE);
+	}
+
+	public CompletableFuture<Long> startListeningAsync(Pin pin) throws IOException {
+		return publishAsync(controlTopic(pin), TRUE);
 	}
 
 	@Override
 	public long stopListening(Pin pin) throws IOException {
-		publish(controlTopic(pin), FALSE);
-		return MessageIdHolders.NO_ID.getId();
+		return publish(controlTopic(pin), FALSE);
+	}
+
+	public CompletableFuture<Long> stopListeningAsync(Pin pin) throws IOException {
+		return publishAsync(controlTopic(pin), FALSE);
+	}
+
+	private String writePrefix() {
+		return topic;
+	}
+
+	private String controlPrefix() {
+		return topic + "system/listening/";
+	}
+
+	private String[] topics(String prefix, Type type) {
+		String[] topics = new String[PRECOMPUTED_PINS];
+		for (int pin = 0; pin < topics.length; pin++) {
+			topics[pin] = prefix + typeMap.get(type) + pin + appendixPub();
+		}
+		return topics;
+	}
+
+	private String writeTopic(Pin pin) {
+		return topic(writeTopics, writePrefix(), pin);
 	}
 
 	private String controlTopic(Pin pin) {
-		return topic + "system/listening/" + getType(pin) + pin.pinNum() + appendixPub();
+		return topic(controlTopics, controlPrefix(), pin);
+	}
+
+	private String topic(Map<Type, String[]> precomputed, String prefix, Pin pin) {
+		String[] topics = precomputed.get(pin.getType());
+		int pinNum = pin.pinNum();
+		return topics != null && pinNum >= 0 && pinNum < topics.length //
+				? topics[pinNum] //
+				: prefix + getType(pin) + pinNum + appendixPub();
 	}
 
 	private String getType(Pin pin) {
 		return checkNotNull(typeMap.get(pin.getType()), "Cannot handle pin %s", pin);
 	}
 
+	private static byte[][] analogValues() {
+		byte[][] values = new byte[PRECOMPUTED_ANALOG_VALUES][];
+		for (int value = 0; value < values.length; value++) {
+			values[value] = bytes(String.valueOf(value));
+		}
+		return values;
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(US_ASCII);
+	}
+
+	private static byte[] payload(int value) {
+		return value >= 0 && value < ANALOG_VALUES.length ? ANALOG_VALUES[value] : bytes(String.valueOf(value));
+	}
+
+	private static byte[] payload(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+
 	@Override
 	public long switchAnalogPin(AnalogPin analogPin, int value) throws IOException {
-		switchPin(ANALOG, analogPin, value);
-		return MessageIdHolders.NO_ID.getId();
+		return publish(writeTopic(analogPin), payload(value));
+	}
+
+	public CompletableFuture<Long> switchAnalogPinAsync(AnalogPin analogPin, int value) throws IOException {
+		return publishAsync(writeTopic(analogPin), payload(value));
 	}
 
 	@Override
 	public long switchDigitalPin(DigitalPin digitalPin, boolean value) throws IOException {
-		switchPin(DIGITAL, digitalPin, value);
-		return MessageIdHolders.NO_ID.getId();
+		return publish(writeTopic(digitalPin), payload(value));
 	}
 
-	private void switchPin(String type, Pin pin, Object value) throws IOException {
-		publish(topic + type + pin.pinNum() + appendixPub(), value);
+	public CompletableFuture<Long> switchDigitalPinAsync(DigitalPin digitalPin, boolean value) throws IOException {
+		return publishAsync(writeTopic(digitalPin), payload(value));
 	}
 
-	private void publish(String topic, Object value) throws IOException {
+	private long publish(String topic, byte[] payload) throws IOException {
+		if (bufferWhileOffline(topic, payload)) {
+			return MessageIdHolders.NO_ID.getId();
+		}
 		try {
-			this.mqttClient.publish(topic, String.valueOf(value).getBytes(), qos, false);
-		} catch (Exception e) {
+			if (async) {
+				return deliver(topic, payload).id;
+			}
+			this.mqttClient.publish(topic, payload, qos, false).waitForCompletion();
+			return MessageIdHolders.NO_ID.getId();
+		} catch (MqttException e) {
+			if (bufferOnConnectionLoss(e, topic, payload)) {
+				return MessageIdHolders.NO_ID.getId();
+			}
+			throw new IOException(e);
+		} catch (RuntimeException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private CompletableFuture<Long> publishAsync(String topic, byte[] payload) throws IOException {
+		if (bufferWhileOffline(topic, payload)) {
+			return completedFuture(MessageIdHolders.NO_ID.getId());
+		}
+		try {
+			return deliver(topic, payload);
+		} catch (MqttException e) {
+			if (bufferOnConnectionLoss(e, topic, payload)) {
+				return completedFuture(MessageIdHolders.NO_ID.getId());
+			}
+			throw new IOException(e);
+		} catch (RuntimeException e) {
 			throw new IOException(e);
 		}
 	}
 
+	private Delivery deliver(String topic, byte[] payload) throws MqttException, InterruptedIOException {
+		try {
+			this.inflight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the inflight window");
+		}
+		Delivery delivery = new Delivery(messageIds.incrementAndGet());
+		try {
+			this.mqttClient.publish(topic, payload, qos, false, null, delivery);
+		} catch (MqttException | RuntimeException e) {
+			this.inflight.release();
+			throw e;
+		}
+		return delivery;
+	}
+
+	/**
+	 * Buffers the message if the broker is unreachable or buffered messages are
+	 * still to be published (so they are not overtaken).
+	 */
+	private boolean bufferWhileOffline(String topic, byte[] payload) {
+		if (offlineBuffer == null || (mqttClient.isConnected() && offlineBuffer.isEmpty())) {
+			return false;
+		}
+		buffer(topic, payload);
+		return true;
+	}
+
+	private boolean bufferOnConnectionLoss(MqttException e, String topic, byte[] payload) {
+		int reasonCode = e.getReasonCode();
+		if (offlineBuffer == null || (reasonCode != MqttException.REASON_CODE_CLIENT_NOT_CONNECTED
+				&& reasonCode != MqttException.REASON_CODE_CONNECTION_LOST)) {
+			return false;
+		}
+		buffer(topic, payload);
+		return true;
+	}
+
+	private void buffer(String topic, byte[] payload) {
+		offlineBuffer.add(topic, payload);
+		if (mqttClient.isConnected()) {
+			scheduleDrain();
+		}
+	}
+
+	private void scheduleDrain() {
+		if (draining.compareAndSet(false, true)) {
+			drainer.execute(this::drain);
+		}
+	}
+
+	private void drain() {
+		do {
+			try {
+				drainBuffered();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				draining.set(false);
+				return;
+			}
+			draining.set(false);
+		} while (mqttClient.isConnected() && !offlineBuffer.isEmpty() && draining.compareAndSet(false, true));
+	}
+
+	private void drainBuffered() throws InterruptedException {
+		for (OfflineBuffer.Entry entry; (entry = offlineBuffer.peek()) != null;) {
+			try {
+				mqttClient.publish(entry.getTopic(), entry.getPayload(), qos, false).waitForCompletion();
+			} catch (MqttException e) {
+				if (!mqttClient.isConnected()) {
+					// resumed on reconnect
+					return;
+				}
+				logger.warn("Dropping buffered message to {}", entry.getTopic(), e);
+			}
+			offlineBuffer.remove(entry);
+			if (drainIntervalNanos > 0) {
+				NANOSECONDS.sleep(drainIntervalNanos);
+			}
+		}
+	}
+
 	@Override
 	public long sendKeyPressEvent(char keychar, int keycode, int keylocation, int keymodifiers, int keymodifiersex)
 			throws IOException {
@@ -267,8 +543,12 @@ public class MqttLink extends AbstractListenerLink {
 	public void close() {
 		try {
 			deregisterAllEventListeners();
+			if (this.drainer != null) {
+				this.drainer.shutdownNow();
+				this.offlineBuffer.close();
+			}
 			if (this.mqttClient.isConnected()) {
-				this.mqttClient.disconnect();
+				this.mqttClient.disconnect().waitForCompletion();
 			}
 			super.close();
 		} catch (Exception e) {
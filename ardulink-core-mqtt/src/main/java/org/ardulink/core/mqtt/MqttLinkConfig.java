@@ -22,6 +22,7 @@ import static org.ardulink.util.Preconditions.checkNotNull;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 
 import org.ardulink.core.linkmanager.LinkConfig;
 import org.ardulink.core.linkmanager.LinkConfig.I18n;
@@ -41,6 +42,10 @@ public class MqttLinkConfig implements LinkConfig {
 
 	public static final int DEFAULT_PORT = 1883;
 
+	public static final int DEFAULT_MAX_INFLIGHT = 10;
+
+	public static final int DEFAULT_OFFLINE_SPILL_SIZE = 1024 * 1024;
+
 	private static final Qos DEFAULT_QOS = Qos.DEFAULT;
 
 	public enum Connection {
@@ -74,6 +79,28 @@ public class MqttLinkConfig implements LinkConfig {
 	@Named("separatedTopics")
 	public boolean separateTopics;
 
+	@Named("async")
+	public boolean async;
+
+	@Named("maxInflight")
+	@Positive
+	public int maxInflight = DEFAULT_MAX_INFLIGHT;
+
+	@Named("offlineBuffer")
+	@PositiveOrZero
+	public int offlineBuffer;
+
+	@Named("offlineSpillFile")
+	public String offlineSpillFile;
+
+	@Named("offlineSpillSize")
+	@Positive
+	public int offlineSpillSize = DEFAULT_OFFLINE_SPILL_SIZE;
+
+	@Named("drainRate")
+	@PositiveOrZero
+	public int drainRate;
+
 	@Named("host")
 	public String getHost() {
 		return host;
@@ -0,0 +1,264 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.mqtt;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.ardulink.util.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Holds the messages published while the broker is unreachable. A message
+ * supersedes a buffered message of the same topic (the same pin and action),
+ * so the buffer keeps at most one message per topic, moved to the end when
+ * updated. If <i>capacity</i> topics are buffered, further topics are appended
+ * to the optional memory-mapped spill file, if there is none (or it is full)
+ * the oldest buffered message is dropped.
+ *
+ * Spilled messages are handed out first: a topic is only spilled if it is not
+ * buffered in memory, so a later message of that topic is always handed out
+ * after it. A spilled message supersedes the one spilled before for its topic
+ * (which is marked as such and skipped), superseded messages are compacted away
+ * when the spill file runs full. The spill file is scratch space only, it is
+ * overwritten when a buffer is created for it.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+final class OfflineBuffer implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(OfflineBuffer.class);
+
+	static final class Entry {
+
+		private final String topic;
+		private final byte[] payload;
+		private final boolean spilled;
+
+		private Entry(String topic, byte[] payload, boolean spilled) {
+			this.topic = topic;
+			this.payload = payload;
+			this.spilled = spilled;
+		}
+
+		String getTopic() {
+			return topic;
+		}
+
+		byte[] getPayload() {
+			return payload;
+		}
+
+	}
+
+	private final int capacity;
+	private final Map<String, byte[]> pending = new LinkedHashMap<>();
+	// offset of the (not superseded) spilled message per topic
+	private final Map<String, Integer> spilled = new HashMap<>();
+	private final FileChannel spillChannel;
+	private final MappedByteBuffer spill;
+	private int spillRead;
+	private long dropped;
+
+	OfflineBuffer(int capacity) {
+		this.capacity = capacity(capacity);
+		this.spillChannel = null;
+		this.spill = null;
+	}
+
+	OfflineBuffer(int capacity, Path spillFile, int spillSize) throws IOException {
+		checkArgument(spillSize > 0, "spillSize must be greater than zero but was %s", spillSize);
+		this.capacity = capacity(capacity);
+		this.spillChannel = FileChannel.open(spillFile, CREATE, READ, WRITE);
+		this.spill = this.spillChannel.map(READ_WRITE, 0, spillSize);
+	}
+
+	private static int capacity(int capacity) {
+		checkArgument(capacity > 0, "capacity must be greater than zero but was %s", capacity);
+		return capacity;
+	}
+
+	synchronized void add(String topic, byte[] payload) {
+		if (pending.remove(topic) != null || pending.size() < capacity) {
+			pending.put(topic, payload);
+		} else if (!spill(topic, payload)) {
+			dropOldest();
+			pending.put(topic, payload);
+		}
+	}
+
+	private boolean spill(String topic, byte[] payload) {
+		if (spill == null) {
+			return false;
+		}
+		byte[] topicBytes = topic.getBytes(UTF_8);
+		int length = Integer.BYTES + topicBytes.length + Integer.BYTES + payload.length;
+		if (spill.remaining() < length) {
+			compactSpill();
+			if (spill.remaining() < length) {
+				return false;
+			}
+		}
+		Integer superseded = spilled.put(topic, spill.position());
+		if (superseded != null) {
+			// superseded messages have a negative topic length
+			spill.putInt(superseded, ~spill.getInt(superseded));
+		}
+		spill.putInt(topicBytes.length).put(topicBytes).putInt(payload.length).put(payload);
+		return true;
+	}
+
+	/**
+	 * Moves the messages not handed out yet and not superseded to the start of
+	 * the spill file.
+	 */
+	private void compactSpill() {
+		ByteBuffer out = spill.duplicate();
+		out.clear();
+		spilled.clear();
+		for (int offset = spillRead; offset < spill.position();) {
+			int length = recordLength(offset);
+			if (spill.getInt(offset) >= 0) {
+				spilled.put(spilledAt(offset).topic, out.position());
+				// copied via an array since source and target may overlap
+				byte[] record = new byte[length];
+				ByteBuffer in = spill.duplicate();
+				in.position(offset);
+				in.get(record);
+				out.put(record);
+			}
+			offset += length;
+		}
+		spill.position(out.position());
+		spillRead = 0;
+	}
+
+	private int recordLength(int offset) {
+		int topicLength = spill.getInt(offset);
+		if (topicLength < 0) {
+			topicLength = ~topicLength;
+		}
+		int payloadOffset = offset + Integer.BYTES + topicLength;
+		return payloadOffset + Integer.BYTES + spill.getInt(payloadOffset) - offset;
+	}
+
+	private Entry spilledAt(int offset) {
+		ByteBuffer in = spill.duplicate();
+		in.position(offset);
+		byte[] topic = new byte[in.getInt()];
+		in.get(topic);
+		byte[] payload = new byte[in.getInt()];
+		in.get(payload);
+		return new Entry(new String(topic, UTF_8), payload, true);
+	}
+
+	private void skipSuperseded() {
+		while (spillRead < spill.position() && spill.getInt(spillRead) < 0) {
+			spillRead += recordLength(spillRead);
+		}
+	}
+
+	private void dropOldest() {
+		Iterator<String> topics = pending.keySet().iterator();
+		String topic = topics.next();
+		topics.remove();
+		if (dropped++ == 0) {
+			logger.warn("Offline buffer full, dropping the oldest buffered messages (first dropped {})", topic);
+		}
+	}
+
+	/**
+	 * Returns the next message to publish (without removing it) or
+	 * <code>null</code> if the buffer is empty.
+	 */
+	synchronized Entry peek() {
+		if (!spilled.isEmpty()) {
+			skipSuperseded();
+			return spilledAt(spillRead);
+		}
+		Iterator<Map.Entry<String, byte[]>> entries = pending.entrySet().iterator();
+		if (!entries.hasNext()) {
+			return null;
+		}
+		Map.Entry<String, byte[]> first = entries.next();
+		return new Entry(first.getKey(), first.getValue(), false);
+	}
+
+	/**
+	 * Removes the passed message (returned by {@link #peek()}) after it has been
+	 * published. A message superseded in the meantime stays buffered.
+	 */
+	synchronized void remove(Entry entry) {
+		if (entry.spilled) {
+			removeSpilled(entry);
+		} else {
+			pending.remove(entry.topic, entry.payload);
+		}
+		if (isEmpty()) {
+			dropped = 0;
+		}
+	}
+
+	private void removeSpilled(Entry entry) {
+		if (!spilled.isEmpty()) {
+			skipSuperseded();
+			// unless superseded (and maybe compacted away) meanwhile
+			Entry next = spilledAt(spillRead);
+			if (next.topic.equals(entry.topic) && Arrays.equals(next.payload, entry.payload)) {
+				spilled.remove(entry.topic);
+				spillRead += recordLength(spillRead);
+			}
+		}
+		if (spilled.isEmpty()) {
+			spillRead = 0;
+			spill.clear();
+		}
+	}
+
+	synchronized boolean isEmpty() {
+		return pending.isEmpty() && spilled.isEmpty();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (spillChannel != null) {
+			spillChannel.close();
+		}
+	}
+
+}
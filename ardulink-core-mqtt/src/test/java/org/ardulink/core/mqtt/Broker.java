@@ -17,6 +17,7 @@ limitations under the License.
 package org.ardulink.core.mqtt;
 
 import static io.moquette.broker.config.IConfig.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.unmodifiableList;
 import static java.util.stream.Collectors.toMap;
 import static org.ardulink.util.Maps.toProperties;
@@ -131,7 +132,7 @@ public class Broker implements BeforeEachCallback, AfterEachCallback {
 			
 			@Override
 			public void onPublish(InterceptPublishMessage message) {
-				messages.add(new Message(message.getTopicName(), new String(message.getPayload().array())));
+				messages.add(new Message(message.getTopicName(), message.getPayload().toString(UTF_8)));
 			}
 
 			@Override
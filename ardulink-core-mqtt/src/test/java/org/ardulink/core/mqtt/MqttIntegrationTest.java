@@ -28,11 +28,15 @@ import static org.ardulink.core.events.DefaultDigitalPinValueChangedEvent.digita
 import static org.ardulink.core.mqtt.Broker.newBroker;
 import static org.ardulink.core.mqtt.EventCollector.eventCollector;
 import static org.ardulink.core.mqtt.duplicated.AnotherMqttClient.newClient;
+import static org.ardulink.core.proto.api.MessageIdHolders.NO_ID;
+import static org.ardulink.testsupport.mock.TestSupport.extractDelegated;
 import static org.ardulink.util.ServerSockets.freePort;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.ardulink.core.Link;
 import org.ardulink.core.Pin.AnalogPin;
@@ -40,6 +44,7 @@ import org.ardulink.core.Pin.DigitalPin;
 import org.ardulink.core.convenience.Links;
 import org.ardulink.core.events.EventListenerAdapter;
 import org.ardulink.core.events.FilteredEventListenerAdapter;
+import org.ardulink.core.events.RplyEvent;
 import org.ardulink.core.mqtt.duplicated.AnotherMqttClient;
 import org.ardulink.core.mqtt.duplicated.Message;
 import org.ardulink.util.Closeables;
@@ -104,10 +109,14 @@ class MqttIntegrationTest {
 	}
 
 	void init(TestConfig config) {
+		init(config, "");
+	}
+
+	void init(TestConfig config, String additionalParams) {
 		this.mqttClient.appendValueSet(config.separatedTopics);
 		this.messageFormat = config.messageFormat;
 		String clientUri = "ardulink://mqtt?host=localhost&port=" + broker.port() + "&topic=" + TOPIC
-				+ "&separatedTopics=" + config.separatedTopics;
+				+ "&separatedTopics=" + config.separatedTopics + additionalParams;
 		this.link = Links.getLink(clientUri);
 	}
 
@@ -179,6 +188,24 @@ class MqttIntegrationTest {
 		mqttClient.awaitMessages(m -> assertThat(m).singleElement().isEqualTo(m2));
 	}
 
+	@ParameterizedTest(name = "{index} {0}")
+	@MethodSource("data")
+	void asyncModeReturnsMessageIdsAndRepliesOnceDelivered(TestConfig config) throws Exception {
+		init(config, "&async=true&maxInflight=2");
+		List<RplyEvent> replies = new CopyOnWriteArrayList<>();
+		link.addRplyListener(replies::add);
+		long id1 = link.switchAnalogPin(analogPin(12), 34);
+		long id2 = link.switchDigitalPin(digitalPin(30), true);
+		long id3 = ((MqttLink) extractDelegated(link)).switchAnalogPinAsync(analogPin(200), 2000).get();
+		assertThat(asList(id1, id2, id3)).doesNotHaveDuplicates().doesNotContain(NO_ID.getId());
+		mqttClient.awaitMessages(m -> assertThat(m).containsExactly( //
+				new Message(topic("A12"), "34"), //
+				new Message(topic("D30"), "true"), //
+				new Message(topic("A200"), "2000")));
+		await().untilAsserted(() -> assertThat(replies).allMatch(RplyEvent::isOk).extracting(RplyEvent::getId)
+				.containsExactlyInAnyOrder(id1, id2, id3));
+	}
+
 	private String topic(String pin) {
 		return String.format(messageFormat, pin);
 	}
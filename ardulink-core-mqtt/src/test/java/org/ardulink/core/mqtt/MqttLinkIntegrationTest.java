@@ -97,7 +97,7 @@ class MqttLinkIntegrationTest {
 	static final String TOPIC = "myTopic" + System.currentTimeMillis();
 
 	@RegisterExtension
-	Broker broker = newBroker().port(freePort());
+	Broker broker = newBroker().port(freePort()).recordMessages();
 
 	@RegisterExtension
 	AnotherMqttClient mqttClient = newClient(TOPIC, broker.port());
@@ -151,6 +151,28 @@ class MqttLinkIntegrationTest {
 		}
 	}
 
+	@ParameterizedTest(name = "{index} {0}")
+	@MethodSource("data")
+	void buffersMessagesWhileDisconnectedAndPublishesTheLatestPerPinAfterReconnect(TestConfig testConfig)
+			throws Exception {
+		try (Link link = makeLink(testConfig, "&offlineBuffer=10")) {
+			TrackStateConnectionListener connectionListener = new TrackStateConnectionListener();
+			((AbstractListenerLink) extractDelegated(link)).addConnectionListener(connectionListener);
+			this.broker.stop();
+			awaitConnectionIs(connectionListener, false);
+
+			link.switchAnalogPin(analogPin(8), 1);
+			link.switchDigitalPin(digitalPin(3), true);
+			link.switchAnalogPin(analogPin(8), 2);
+
+			this.broker.start();
+			awaitConnectionIs(connectionListener, true);
+			await("buffered messages published").untilAsserted(() -> assertThat(broker.getMessages()).containsExactly( //
+					new Message(topic("D3"), "true"), //
+					new Message(topic("A8"), "2")));
+		}
+	}
+
 	private void breedReconnectedState(Link link) throws IOException {
 		TrackStateConnectionListener connectionListener = new TrackStateConnectionListener();
 		((AbstractListenerLink) extractDelegated(link)).addConnectionListener(connectionListener);
@@ -163,11 +185,15 @@ class MqttLinkIntegrationTest {
 	}
 
 	private Link makeLink(TestConfig config) throws IOException {
+		return makeLink(config, "");
+	}
+
+	private Link makeLink(TestConfig config, String additionalParams) throws IOException {
 		this.separatedTopics = config.separateTopics;
 		this.messageFormat = config.messageFormat;
 		this.mqttClient.appendValueSet(config.separateTopics);
-		Link link = Links.getLink(
-				"ardulink://mqtt?port=" + broker.port() + "&topic=" + TOPIC + "&separatedTopics=" + separatedTopics);
+		Link link = Links.getLink("ardulink://mqtt?port=" + broker.port() + "&topic=" + TOPIC + "&separatedTopics="
+				+ separatedTopics + additionalParams);
 		link.addListener(eventCollector);
 		return link;
 	}
@@ -0,0 +1,128 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.mqtt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ardulink.core.mqtt.OfflineBuffer.Entry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class OfflineBufferTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void keepsTheLatestMessagePerTopicInOrderOfTheirLastUpdate() {
+		OfflineBuffer sut = new OfflineBuffer(10);
+		sut.add("A1", bytes("1"));
+		sut.add("D2", bytes("true"));
+		sut.add("A1", bytes("2"));
+		assertThat(drain(sut)).containsExactly("D2=true", "A1=2");
+		assertThat(sut.isEmpty()).isTrue();
+	}
+
+	@Test
+	void messageSupersededWhilePublishingStaysBuffered() {
+		OfflineBuffer sut = new OfflineBuffer(10);
+		sut.add("A1", bytes("1"));
+		Entry entry = sut.peek();
+		sut.add("A1", bytes("2"));
+		sut.remove(entry);
+		assertThat(drain(sut)).containsExactly("A1=2");
+	}
+
+	@Test
+	void dropsTheOldestMessageIfFull() {
+		OfflineBuffer sut = new OfflineBuffer(2);
+		sut.add("A1", bytes("1"));
+		sut.add("A2", bytes("2"));
+		sut.add("A3", bytes("3"));
+		assertThat(drain(sut)).containsExactly("A2=2", "A3=3");
+	}
+
+	@Test
+	void spillsToFileIfFullAndHandsOutSpilledMessagesFirst() throws IOException {
+		try (OfflineBuffer sut = new OfflineBuffer(1, tempDir.resolve("spill"), 1024)) {
+			sut.add("A1", bytes("1"));
+			sut.add("A2", bytes("2"));
+			sut.add("A3", bytes("3"));
+			sut.add("A1", bytes("4"));
+			assertThat(drain(sut)).containsExactly("A2=2", "A3=3", "A1=4");
+			assertThat(sut.isEmpty()).isTrue();
+
+			sut.add("A5", bytes("5"));
+			sut.add("A6", bytes("6"));
+			assertThat(drain(sut)).containsExactly("A6=6", "A5=5");
+		}
+	}
+
+	@Test
+	void spilledMessagesAreSupersededByLaterOnesOfTheSameTopic() throws IOException {
+		try (OfflineBuffer sut = new OfflineBuffer(1, tempDir.resolve("spill"), 64)) {
+			sut.add("A1", bytes("1"));
+			// many more than the spill file could take without superseding
+			for (int i = 0; i < 1000; i++) {
+				sut.add("A2", bytes(String.valueOf(i)));
+			}
+			sut.add("A3", bytes("3"));
+			assertThat(drain(sut)).containsExactly("A2=999", "A3=3", "A1=1");
+			assertThat(sut.isEmpty()).isTrue();
+		}
+	}
+
+	@Test
+	void spilledMessageSupersededWhilePublishingStaysBuffered() throws IOException {
+		try (OfflineBuffer sut = new OfflineBuffer(1, tempDir.resolve("spill"), 64)) {
+			sut.add("A1", bytes("1"));
+			sut.add("A2", bytes("2"));
+			Entry entry = sut.peek();
+			sut.add("A2", bytes("3"));
+			sut.remove(entry);
+			assertThat(drain(sut)).containsExactly("A2=3", "A1=1");
+		}
+	}
+
+	private static List<String> drain(OfflineBuffer buffer) {
+		List<String> drained = new ArrayList<>();
+		for (Entry entry; (entry = buffer.peek()) != null;) {
+			drained.add(entry.getTopic() + "=" + new String(entry.getPayload(), US_ASCII));
+			buffer.remove(entry);
+		}
+		return drained;
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(US_ASCII);
+	}
+
+}
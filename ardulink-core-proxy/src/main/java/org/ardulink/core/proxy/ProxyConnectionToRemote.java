@@ -22,14 +22,22 @@ import static org.ardulink.util.Preconditions.checkNotNull;
 import static org.ardulink.util.Preconditions.checkState;
 
 import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 import java.util.regex.Pattern;
 
+import org.ardulink.util.UnixDomainSockets;
+
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
@@ -44,7 +52,7 @@ public class ProxyConnectionToRemote implements Closeable {
 
 	public enum Command {
 
-		GET_PORT_LIST_CMD("get_port_list"), CONNECT_CMD("connect");
+		GET_PORT_LIST_CMD("get_port_list"), CONNECT_CMD("connect"), CONNECT_FRAMED_CMD("connect_framed");
 
 		private final String command;
 
@@ -65,16 +73,43 @@ public class ProxyConnectionToRemote implements Closeable {
 
 	private static final String NUMBER_OF_PORTS = "NUMBER_OF_PORTS=";
 
+	private static final long PROBE_INTERVAL_MILLIS = 1000;
+
 	private final String host;
 	private final Socket socket;
+	private final Closeable connection;
+	private final InputStream inputStream;
+	private final OutputStream outputStream;
 	private final Scanner scanner;
 	private final PrintWriter printWriter;
 
 	public ProxyConnectionToRemote(String host, int port) throws IOException {
+		this(host, new Socket(host, port));
+	}
+
+	private ProxyConnectionToRemote(String host, Socket socket) throws IOException {
+		this(host, socket, socket, socket.getInputStream(), socket.getOutputStream());
+	}
+
+	private ProxyConnectionToRemote(String host, Socket socket, Closeable connection, InputStream inputStream,
+			OutputStream outputStream) {
 		this.host = host;
-		this.socket = new Socket(host, port);
-		this.scanner = new Scanner(socket.getInputStream()).useDelimiter(Pattern.quote(PROXY_CONNECTION_SEPARATOR));
-		this.printWriter = new PrintWriter(socket.getOutputStream(), false);
+		this.socket = socket;
+		this.connection = connection;
+		this.inputStream = inputStream;
+		this.outputStream = outputStream;
+		this.scanner = new Scanner(inputStream).useDelimiter(Pattern.quote(PROXY_CONNECTION_SEPARATOR));
+		this.printWriter = new PrintWriter(outputStream, false);
+	}
+
+	/**
+	 * Connects to a proxy server on the same machine listening on the Unix domain
+	 * socket at the passed path (needs Java 16 or later).
+	 */
+	public static ProxyConnectionToRemote connectUnixDomainSocket(String path) throws IOException {
+		SocketChannel channel = UnixDomainSockets.connect(path);
+		return new ProxyConnectionToRemote(path, null, channel, UnixDomainSockets.inputStream(channel),
+				UnixDomainSockets.outputStream(channel));
 	}
 
 	public List<String> getPortList() throws IOException {
@@ -90,8 +125,80 @@ public class ProxyConnectionToRemote implements Closeable {
 		return retvalue;
 	}
 
-	public Socket getSocket() {
-		return socket;
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/**
+	 * Returns the InputStream wrapped so that it can be read by a
+	 * {@link org.ardulink.core.StreamPoller}: A socket's available() keeps
+	 * returning 0 once the peer closed the connection, so while there is no data
+	 * available the stream probes the socket (at most once per second) with a
+	 * short read timeout and throws an {@link EOFException} when the peer has gone.
+	 * Only supported for TCP connections.
+	 */
+	public InputStream getPollableInputStream() throws IOException {
+		checkState(socket != null, "%s is not connected via TCP", host);
+		socket.setSoTimeout(1);
+		return new ProbingInputStream(inputStream);
+	}
+
+	private static class ProbingInputStream extends FilterInputStream {
+
+		private int pushback = -1;
+		private long lastProbe = System.currentTimeMillis();
+
+		private ProbingInputStream(InputStream inputStream) {
+			super(inputStream);
+		}
+
+		@Override
+		public int available() throws IOException {
+			int inStream = in.available();
+			if (pushback >= 0) {
+				return 1 + inStream;
+			}
+			if (inStream > 0 || System.currentTimeMillis() - lastProbe < PROBE_INTERVAL_MILLIS) {
+				return inStream;
+			}
+			lastProbe = System.currentTimeMillis();
+			try {
+				int read = in.read();
+				if (read < 0) {
+					throw new EOFException("Connection closed by peer");
+				}
+				pushback = read;
+				return 1 + in.available();
+			} catch (SocketTimeoutException e) {
+				return 0;
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (pushback >= 0) {
+				int read = pushback;
+				pushback = -1;
+				return read;
+			}
+			return in.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (pushback < 0 || len == 0) {
+				return in.read(b, off, len);
+			}
+			b[off] = (byte) pushback;
+			pushback = -1;
+			int inStream = in.available();
+			return inStream > 0 ? 1 + in.read(b, off + 1, Math.min(len - 1, inStream)) : 1;
+		}
+
+	}
+
+	public OutputStream getOutputStream() {
+		return outputStream;
 	}
 
 	public String read() throws IOException {
@@ -108,7 +215,7 @@ public class ProxyConnectionToRemote implements Closeable {
 	public void close() throws IOException {
 		scanner.close();
 		printWriter.close();
-		socket.close();
+		connection.close();
 	}
 
 }
\ No newline at end of file
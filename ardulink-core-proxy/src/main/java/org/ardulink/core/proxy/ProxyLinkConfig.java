@@ -23,6 +23,7 @@ import java.util.List;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
 
 import org.ardulink.core.linkmanager.LinkConfig;
 import org.ardulink.core.linkmanager.LinkConfig.I18n;
@@ -42,6 +43,8 @@ public class ProxyLinkConfig implements LinkConfig {
 
 	private static final String NAMED_TCPPORT = "tcpport";
 
+	private static final String NAMED_SOCKETPATH = "socketpath";
+
 	private static final String NAMED_PORT = "port";
 
 	private static final int DEFAULT_LISTENING_PORT = 4478;
@@ -56,6 +59,9 @@ public class ProxyLinkConfig implements LinkConfig {
 	@Max(2 << 16 - 1)
 	public int tcpport = DEFAULT_LISTENING_PORT;
 
+	@Named(NAMED_SOCKETPATH)
+	public String socketpath;
+
 	@Named(NAMED_PORT)
 	public String port;
 
@@ -63,11 +69,24 @@ public class ProxyLinkConfig implements LinkConfig {
 	@Positive
 	public int speed = DEFAULT_SPEED;
 
+	@Named("framed")
+	public boolean framed;
+
+	@Named("deflate")
+	public boolean deflate;
+
+	@Named("coalescemillis")
+	@PositiveOrZero
+	public int coalesceMillis;
+
+	@Named("streampoller")
+	public boolean streamPoller;
+
 	private ProxyConnectionToRemote remote;
 
-	@ChoiceFor(value = NAMED_PORT, dependsOn = { NAMED_TCPHOST, NAMED_TCPPORT })
+	@ChoiceFor(value = NAMED_PORT, dependsOn = { NAMED_TCPHOST, NAMED_TCPPORT, NAMED_SOCKETPATH })
 	public List<String> getAvailablePorts() throws IOException {
-		return tcphost == null ? emptyList() : getRemoteInternal().getPortList();
+		return tcphost == null && socketpath == null ? emptyList() : getRemoteInternal().getPortList();
 	}
 
 	public synchronized ProxyConnectionToRemote getRemote() throws IOException {
@@ -78,7 +97,8 @@ public class ProxyLinkConfig implements LinkConfig {
 
 	private ProxyConnectionToRemote getRemoteInternal() throws IOException {
 		if (this.remote == null) {
-			this.remote = new ProxyConnectionToRemote(tcphost, tcpport);
+			this.remote = socketpath == null ? new ProxyConnectionToRemote(tcphost, tcpport)
+					: ProxyConnectionToRemote.connectUnixDomainSocket(socketpath);
 		}
 		return this.remote;
 	}
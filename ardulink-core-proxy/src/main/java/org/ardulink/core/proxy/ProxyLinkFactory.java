@@ -18,15 +18,21 @@ package org.ardulink.core.proxy;
 
 import static org.ardulink.core.proto.api.Protocols.protoByName;
 import static org.ardulink.core.proxy.ProxyConnectionToRemote.Command.CONNECT_CMD;
+import static org.ardulink.core.proxy.ProxyConnectionToRemote.Command.CONNECT_FRAMED_CMD;
 import static org.ardulink.util.Preconditions.checkNotNull;
 import static org.ardulink.util.Preconditions.checkState;
 
 import java.io.IOException;
-import java.net.Socket;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.FramedInputStream;
+import org.ardulink.core.FramedOutputStream;
 import org.ardulink.core.StreamConnection;
+import org.ardulink.core.StreamPoller;
 import org.ardulink.core.linkmanager.LinkFactory;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
 import org.ardulink.core.proto.impl.ArdulinkProtocol2;
 
 /**
@@ -48,22 +54,38 @@ public class ProxyLinkFactory implements LinkFactory<ProxyLinkConfig> {
 
 	@Override
 	public ConnectionBasedLink newLink(ProxyLinkConfig config) throws IOException {
+		checkState(!config.streamPoller || config.socketpath == null,
+				"streampoller is not supported for Unix domain sockets (socketpath %s)", config.socketpath);
 		ProxyConnectionToRemote remote = config.getRemote();
 
-		remote.send(CONNECT_CMD.getCommand());
+		remote.send(config.framed ? CONNECT_FRAMED_CMD.getCommand() : CONNECT_CMD.getCommand());
 		remote.send(checkNotNull(config.port, "port must not be null"));
 		remote.send(String.valueOf(config.speed));
+		if (config.framed) {
+			remote.send(String.valueOf(config.deflate));
+			remote.send(String.valueOf(config.coalesceMillis));
+		}
 		String response = remote.read();
 		checkState(OK.equals(response), "Did not receive %s from remote, got %s", OK, response);
-		Socket socket = remote.getSocket();
-		return new ConnectionBasedLink(new StreamConnection(socket.getInputStream(), socket.getOutputStream(),
-				protoByName(ArdulinkProtocol2.NAME).newByteStreamProcessor())) {
+		InputStream inputStream = config.streamPoller ? remote.getPollableInputStream() : remote.getInputStream();
+		OutputStream outputStream = remote.getOutputStream();
+		if (config.framed) {
+			inputStream = new FramedInputStream(inputStream, config.deflate);
+			outputStream = new FramedOutputStream(outputStream, config.deflate, config.coalesceMillis);
+		}
+		ByteStreamProcessor byteStreamProcessor = protoByName(ArdulinkProtocol2.NAME).newByteStreamProcessor();
+		StreamConnection connection = config.streamPoller
+				? new StreamConnection(inputStream, outputStream, byteStreamProcessor, StreamPoller.sharedInstance())
+				: new StreamConnection(inputStream, outputStream, byteStreamProcessor);
+		ConnectionBasedLink link = new ConnectionBasedLink(connection) {
 			@Override
 			public void close() throws IOException {
 				super.close();
 				remote.close();
 			}
 		};
+		connection.onEndOfStream(link::fireConnectionLost);
+		return link;
 	}
 
 	@Override
@@ -22,11 +22,19 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.proxy.ProxyServerDouble.portName;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.awaitility.Awaitility.await;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.ardulink.core.AbstractListenerLink;
+import org.ardulink.core.ConnectionListener;
 import org.ardulink.core.Link;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
 import org.ardulink.core.linkmanager.LinkManager;
 import org.ardulink.core.linkmanager.LinkManager.ConfigAttribute;
 import org.ardulink.core.linkmanager.LinkManager.Configurer;
@@ -83,6 +91,26 @@ class ProxyLinkFactoryTest {
 		}
 	}
 
+	@Test
+	void canConnectFramed() throws IOException {
+		proxyServerDouble.setNumberOfPorts(1);
+		Configurer configurer = configurerForProxy();
+		configurer.getAttribute("port").setValue(portName(0));
+		configurer.getAttribute("framed").setValue(true);
+		configurer.getAttribute("deflate").setValue(true);
+		configurer.getAttribute("coalescemillis").setValue(5);
+		try (Link newLink = configurer.newLink()) {
+			assertThatProxyServerReceived( //
+					proxyMessage("get_port_list"), //
+					proxyMessage("connect_framed"), //
+					portName(0), //
+					"115200", //
+					"true", //
+					"5" //
+			);
+		}
+	}
+
 	@Test
 	void canSwitchAnalogPort() throws IOException {
 		proxyServerDouble.setNumberOfPorts(1);
@@ -101,6 +129,63 @@ class ProxyLinkFactoryTest {
 		}
 	}
 
+	@Test
+	void canReceiveUsingTheStreamPoller() throws IOException {
+		proxyServerDouble.setNumberOfPorts(1).answer("alp://ppin/1/123", "alp://ared/1/42");
+		Configurer configurer = configurerForProxy();
+		configurer.getAttribute("port").setValue(portName(0));
+		configurer.getAttribute("streampoller").setValue(true);
+		try (Link newLink = configurer.newLink()) {
+			List<AnalogPinValueChangedEvent> events = new CopyOnWriteArrayList<>();
+			newLink.addListener(new EventListenerAdapter() {
+				@Override
+				public void stateChanged(AnalogPinValueChangedEvent event) {
+					events.add(event);
+				}
+			});
+			newLink.switchAnalogPin(analogPin(1), 123);
+			await().untilAsserted(() -> assertThat(events).singleElement()
+					.satisfies(e -> assertThat(e.getValue()).isEqualTo(42)));
+		}
+	}
+
+	@Test
+	void streamPollerReportsConnectionsClosedByThePeer() throws IOException {
+		proxyServerDouble.setNumberOfPorts(1).closeOn("alp://ppin/1/123");
+		Configurer configurer = configurerForProxy();
+		configurer.getAttribute("port").setValue(portName(0));
+		configurer.getAttribute("streampoller").setValue(true);
+		try (Link newLink = configurer.newLink()) {
+			AtomicBoolean connectionLost = new AtomicBoolean();
+			((AbstractListenerLink) newLink).addConnectionListener(new ConnectionListener() {
+
+				@Override
+				public void connectionLost() {
+					connectionLost.set(true);
+				}
+
+				@Override
+				public void reconnected() {
+					// not of interest
+				}
+
+			});
+			newLink.switchAnalogPin(analogPin(1), 123);
+			await().untilTrue(connectionLost);
+		}
+	}
+
+	@Test
+	void streamPollerCannotBeCombinedWithUnixDomainSockets() {
+		ProxyLinkFactory factory = new ProxyLinkFactory();
+		ProxyLinkConfig config = factory.newLinkConfig();
+		config.socketpath = "/tmp/ardulink-proxy.sock";
+		config.port = portName(0);
+		config.streamPoller = true;
+		assertThatThrownBy(() -> factory.newLink(config)).isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("streampoller").hasMessageContaining("Unix domain sockets");
+	}
+
 	private Configurer configurerForProxy() {
 		return configurerForProxy("localhost", proxyServerDouble.getLocalPort());
 	}
@@ -33,6 +33,7 @@ import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
@@ -67,6 +68,7 @@ public class ProxyServerDouble implements BeforeEachCallback, AfterEachCallback
 	private final Thread thread;
 	private Map<String, List<String>> answers = makeMap(1);
 	private final List<String> received = new ArrayList<>();
+	private volatile String closeOn;
 
 	private ServerSocket serverSocket;
 
@@ -92,6 +94,11 @@ public class ProxyServerDouble implements BeforeEachCallback, AfterEachCallback
 						answers.getOrDefault(line, emptyList()).stream().peek(m -> logger.info("Responding {}", m))
 								.map(m -> m + "\n").forEach(out::print);
 						out.flush();
+						if (line.equals(closeOn)) {
+							logger.info("Closing client connection");
+							clientSocket.close();
+							return;
+						}
 					}
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -139,7 +146,20 @@ public class ProxyServerDouble implements BeforeEachCallback, AfterEachCallback
 	private Map<String, List<String>> makeMap(int numberOfPorts) {
 		return MapBuilder.<String, List<String>>newMapBuilder()
 				.put(proxyMessage("get_port_list"), portList(numberOfPorts))
-				.put(proxyMessage("connect"), singletonList(OK)).build();
+				.put(proxyMessage("connect"), singletonList(OK)) //
+				.put(proxyMessage("connect_framed"), singletonList(OK)).build();
+	}
+
+	public ProxyServerDouble answer(String line, String response) {
+		Map<String, List<String>> answers = new HashMap<>(this.answers);
+		answers.put(line, singletonList(response));
+		this.answers = answers;
+		return this;
+	}
+
+	public ProxyServerDouble closeOn(String line) {
+		this.closeOn = line;
+		return this;
 	}
 
 	public List<String> received() {
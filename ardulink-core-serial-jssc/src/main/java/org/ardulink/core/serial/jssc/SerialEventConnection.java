@@ -0,0 +1,112 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.serial.jssc;
+
+import static jssc.SerialPort.MASK_RXCHAR;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.ByteStreamProcessorProvider;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
+import jssc.SerialPortException;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Connection that does not poll the {@link SerialPort} byte by byte but gets
+ * notified by jssc's event thread (RXCHAR) and drains all bytes available in
+ * one single native call. The chunk read is then passed as a whole to the
+ * listeners and the {@link ByteStreamProcessor}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class SerialEventConnection extends AbstractConnection
+		implements ByteStreamProcessorProvider, SerialPortEventListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(SerialEventConnection.class);
+
+	private final SerialPort serialPort;
+	private final ByteStreamProcessor byteStreamProcessor;
+
+	public SerialEventConnection(SerialPort serialPort, ByteStreamProcessor byteStreamProcessor)
+			throws SerialPortException {
+		this.serialPort = checkNotNull(serialPort, "serialPort must not be null");
+		this.byteStreamProcessor = checkNotNull(byteStreamProcessor, "byteStreamProcessor must not be null");
+		this.serialPort.addEventListener(this, MASK_RXCHAR);
+	}
+
+	@Override
+	public void serialEvent(SerialPortEvent event) {
+		if (event.isRXCHAR() && event.getEventValue() > 0) {
+			try {
+				received(serialPort.readBytes(event.getEventValue()));
+			} catch (SerialPortException e) {
+				logger.error("Error while retrieving data", e);
+			}
+		}
+	}
+
+	private void received(byte[] bytes) {
+		if (bytes != null && bytes.length > 0) {
+			fireReceived(bytes);
+			try {
+				byteStreamProcessor.process(bytes);
+			} catch (Exception e) {
+				logger.error("Error while processing data", e);
+			}
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes) throws IOException {
+		logger.debug("Serial write {}", bytes);
+		try {
+			serialPort.writeBytes(checkNotNull(bytes, "bytes must not be null"));
+		} catch (SerialPortException e) {
+			throw new IOException(e);
+		}
+		fireSent(bytes);
+	}
+
+	@Override
+	public ByteStreamProcessor getByteStreamProcessor() {
+		return byteStreamProcessor;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (serialPort.isOpened()) {
+				serialPort.removeEventListener();
+			}
+		} catch (SerialPortException e) {
+			throw new IOException(e);
+		}
+	}
+
+}
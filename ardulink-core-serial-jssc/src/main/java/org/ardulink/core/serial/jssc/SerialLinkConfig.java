@@ -70,6 +70,9 @@ public class SerialLinkConfig implements LinkConfig {
 	@Named("pingprobe")
 	public boolean pingprobe = true;
 
+	@Named("eventdriven")
+	public boolean eventdriven;
+
 	private Protocol useProtoOrFallback(String prefered) {
 		return or(tryProtoByName(prefered), () -> getFirst(protocols())).orElse(null);
 	}
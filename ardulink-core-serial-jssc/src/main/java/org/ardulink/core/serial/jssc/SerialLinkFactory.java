@@ -23,11 +23,13 @@ import static jssc.SerialPort.STOPBITS_1;
 
 import java.io.IOException;
 
+import org.ardulink.core.Connection;
 import org.ardulink.core.ConnectionBasedLink;
 import org.ardulink.core.Link;
 import org.ardulink.core.StreamConnection;
 import org.ardulink.core.convenience.LinkDelegate;
 import org.ardulink.core.linkmanager.LinkFactory;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
 import org.ardulink.core.qos.QosLink;
 
 import jssc.SerialPort;
@@ -55,9 +57,9 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		String portIdentifier = config.port;
 		SerialPort serialPort = serialPort(config, portIdentifier);
 
+		ByteStreamProcessor byteStreamProcessor = config.protocol().newByteStreamProcessor();
 		ConnectionBasedLink connectionBasedLink = new ConnectionBasedLink(
-				new StreamConnection(new SerialInputStream(serialPort), new SerialOutputStream(serialPort),
-						config.protocol().newByteStreamProcessor()));
+				connection(config, serialPort, byteStreamProcessor), byteStreamProcessor);
 
 		Link link = config.qos ? new QosLink(connectionBasedLink) : connectionBasedLink;
 
@@ -92,6 +94,14 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		return false;
 	}
 
+	private static Connection connection(SerialLinkConfig config, SerialPort serialPort,
+			ByteStreamProcessor byteStreamProcessor) throws SerialPortException {
+		return config.eventdriven //
+				? new SerialEventConnection(serialPort, byteStreamProcessor) //
+				: new StreamConnection(new SerialInputStream(serialPort), new SerialOutputStream(serialPort),
+						byteStreamProcessor);
+	}
+
 	private SerialPort serialPort(SerialLinkConfig config, String portIdentifier) throws SerialPortException {
 		SerialPort serialPort = new SerialPort(portIdentifier);
 		serialPort.openPort();
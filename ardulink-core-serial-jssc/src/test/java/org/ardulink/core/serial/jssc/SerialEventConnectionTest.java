@@ -0,0 +1,93 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.serial.jssc;
+
+import static jssc.SerialPortEvent.RXCHAR;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ardulink.core.Connection.ListenerAdapter;
+import org.ardulink.core.messages.api.FromDeviceMessage;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.jupiter.api.Test;
+
+import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class SerialEventConnectionTest {
+
+	private static class StubSerialPort extends SerialPort {
+
+		private byte[] input = new byte[0];
+		private int readCalls;
+
+		StubSerialPort() {
+			super("stub");
+		}
+
+		@Override
+		public void addEventListener(SerialPortEventListener listener, int mask) {
+			// no native event thread
+		}
+
+		@Override
+		public byte[] readBytes(int byteCount) {
+			readCalls++;
+			byte[] bytes = Arrays.copyOf(input, byteCount);
+			input = Arrays.copyOfRange(input, byteCount, input.length);
+			return bytes;
+		}
+
+	}
+
+	@Test
+	void drainsAllAvailableBytesWithOneReadAndParsesThem() throws Exception {
+		StubSerialPort serialPort = new StubSerialPort();
+		List<FromDeviceMessage> messages = new ArrayList<>();
+		List<byte[]> chunks = new ArrayList<>();
+		try (SerialEventConnection connection = new SerialEventConnection(serialPort,
+				new ArdulinkProtocol2().newByteStreamProcessor())) {
+			connection.getByteStreamProcessor().addListener(messages::add);
+			connection.addListener(new ListenerAdapter() {
+				@Override
+				public void received(byte[] bytes) {
+					chunks.add(bytes);
+				}
+			});
+
+			serialPort.input = "alp://ared/1/42\nalp://dred/2/1\n".getBytes();
+			connection.serialEvent(new SerialPortEvent(serialPort, RXCHAR, serialPort.input.length));
+		}
+
+		assertThat(serialPort.readCalls).isEqualTo(1);
+		assertThat(chunks).hasSize(1);
+		assertThat(messages).hasSize(2);
+	}
+
+}
@@ -0,0 +1,128 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.serial.rxtx;
+
+import static gnu.io.SerialPortEvent.DATA_AVAILABLE;
+import static java.lang.Math.min;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.TooManyListenersException;
+
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.ByteStreamProcessorProvider;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Connection that does not block a reader thread in single byte reads but gets
+ * notified by rxtx when data is available. All available bytes then are read in
+ * bulk into a reusable buffer and passed chunk-wise to the listeners and the
+ * {@link ByteStreamProcessor}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class SerialEventConnection extends AbstractConnection
+		implements ByteStreamProcessorProvider, SerialPortEventListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(SerialEventConnection.class);
+
+	private final SerialPort serialPort;
+	private final InputStream inputStream;
+	private final OutputStream outputStream;
+	private final ByteStreamProcessor byteStreamProcessor;
+	private final byte[] buffer;
+
+	public SerialEventConnection(SerialPort serialPort, ByteStreamProcessor byteStreamProcessor, int bufferSize)
+			throws IOException, TooManyListenersException {
+		checkArgument(bufferSize > 0, "bufferSize must be greater 0 but was %s", bufferSize);
+		this.serialPort = checkNotNull(serialPort, "serialPort must not be null");
+		this.byteStreamProcessor = checkNotNull(byteStreamProcessor, "byteStreamProcessor must not be null");
+		this.inputStream = serialPort.getInputStream();
+		this.outputStream = serialPort.getOutputStream();
+		this.buffer = new byte[bufferSize];
+		this.serialPort.addEventListener(this);
+		this.serialPort.notifyOnDataAvailable(true);
+	}
+
+	@Override
+	public void serialEvent(SerialPortEvent event) {
+		if (event.getEventType() == DATA_AVAILABLE) {
+			try {
+				readAvailable();
+			} catch (IOException e) {
+				logger.error("Error while retrieving data", e);
+			}
+		}
+	}
+
+	private void readAvailable() throws IOException {
+		int available;
+		while ((available = inputStream.available()) > 0) {
+			int read = inputStream.read(buffer, 0, min(available, buffer.length));
+			if (read <= 0) {
+				return;
+			}
+			received(Arrays.copyOf(buffer, read));
+		}
+	}
+
+	private void received(byte[] bytes) {
+		fireReceived(bytes);
+		try {
+			byteStreamProcessor.process(bytes);
+		} catch (Exception e) {
+			logger.error("Error while processing data", e);
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes) throws IOException {
+		logger.debug("Serial write {}", bytes);
+		outputStream.write(checkNotNull(bytes, "bytes must not be null"));
+		outputStream.flush();
+		fireSent(bytes);
+	}
+
+	@Override
+	public ByteStreamProcessor getByteStreamProcessor() {
+		return byteStreamProcessor;
+	}
+
+	@Override
+	public void close() throws IOException {
+		serialPort.notifyOnDataAvailable(false);
+		serialPort.removeEventListener();
+		inputStream.close();
+		outputStream.close();
+	}
+
+}
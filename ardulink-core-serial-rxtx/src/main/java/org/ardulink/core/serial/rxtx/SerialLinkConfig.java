@@ -75,6 +75,25 @@ public class SerialLinkConfig implements LinkConfig {
 	@Named("pingprobe")
 	public boolean pingprobe = true;
 
+	@Named("eventdriven")
+	public boolean eventdriven;
+
+	@PositiveOrZero
+	@Named("rcvthreshold")
+	public int receiveThreshold;
+
+	@PositiveOrZero
+	@Named("rcvtimeout")
+	public int receiveTimeout;
+
+	@PositiveOrZero
+	@Named("inputbuffersize")
+	public int inputBufferSize;
+
+	@PositiveOrZero
+	@Named("outputbuffersize")
+	public int outputBufferSize;
+
 	private Protocol useProtoOrFallback(String prefered) {
 		return or(tryProtoByName(prefered), () -> getFirst(Protocols.protocols())).orElse(null);
 	}
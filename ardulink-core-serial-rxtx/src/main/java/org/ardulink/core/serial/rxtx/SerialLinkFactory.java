@@ -23,12 +23,15 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.ardulink.util.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.TooManyListenersException;
 
+import org.ardulink.core.Connection;
 import org.ardulink.core.ConnectionBasedLink;
 import org.ardulink.core.Link;
 import org.ardulink.core.StreamConnection;
 import org.ardulink.core.convenience.LinkDelegate;
 import org.ardulink.core.linkmanager.LinkFactory;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
 import org.ardulink.core.qos.QosLink;
 
 import gnu.io.CommPortIdentifier;
@@ -49,22 +52,27 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 
 	protected static final String NAME = "serial-rxtx";
 
+	// size of the chunks read in event driven mode, independent of the driver's
+	// input buffer (inputbuffersize): available bytes exceeding it are read in
+	// further chunks
+	private static final int READ_CHUNK_SIZE = 1024;
+
 	@Override
 	public String getName() {
 		return NAME;
 	}
 
 	@Override
-	public LinkDelegate newLink(SerialLinkConfig config)
-			throws NoSuchPortException, PortInUseException, UnsupportedCommOperationException, IOException {
+	public LinkDelegate newLink(SerialLinkConfig config) throws NoSuchPortException, PortInUseException,
+			UnsupportedCommOperationException, IOException, TooManyListenersException {
 		CommPortIdentifier portIdentifier = CommPortIdentifier.getPortIdentifier(config.port);
 		checkState(!portIdentifier.isCurrentlyOwned(), "Port %s is currently in use", config.port);
 		SerialPort serialPort = serialPort(config, portIdentifier);
 
-		StreamConnection connection = new StreamConnection(serialPort.getInputStream(), serialPort.getOutputStream(),
-				config.protocol().newByteStreamProcessor());
+		ByteStreamProcessor byteStreamProcessor = config.protocol().newByteStreamProcessor();
+		Connection connection = connection(config, serialPort, byteStreamProcessor);
 
-		ConnectionBasedLink connectionBasedLink = new ConnectionBasedLink(connection);
+		ConnectionBasedLink connectionBasedLink = new ConnectionBasedLink(connection, byteStreamProcessor);
 		Link link = config.qos ? new QosLink(connectionBasedLink) : connectionBasedLink;
 
 		if (!waitForArdulink(config, connectionBasedLink)) {
@@ -94,10 +102,29 @@ public class SerialLinkFactory implements LinkFactory<SerialLinkConfig> {
 		return false;
 	}
 
+	private static Connection connection(SerialLinkConfig config, SerialPort serialPort,
+			ByteStreamProcessor byteStreamProcessor) throws IOException, TooManyListenersException {
+		return config.eventdriven //
+				? new SerialEventConnection(serialPort, byteStreamProcessor, READ_CHUNK_SIZE) //
+				: new StreamConnection(serialPort.getInputStream(), serialPort.getOutputStream(), byteStreamProcessor);
+	}
+
 	private SerialPort serialPort(SerialLinkConfig config, CommPortIdentifier portIdentifier)
 			throws PortInUseException, UnsupportedCommOperationException {
 		SerialPort serialPort = portIdentifier.open("RTBug_network", 2000);
 		serialPort.setSerialPortParams(config.baudrate, DATABITS_8, STOPBITS_1, PARITY_NONE);
+		if (config.receiveThreshold > 0) {
+			serialPort.enableReceiveThreshold(config.receiveThreshold);
+		}
+		if (config.receiveTimeout > 0) {
+			serialPort.enableReceiveTimeout(config.receiveTimeout);
+		}
+		if (config.inputBufferSize > 0) {
+			serialPort.setInputBufferSize(config.inputBufferSize);
+		}
+		if (config.outputBufferSize > 0) {
+			serialPort.setOutputBufferSize(config.outputBufferSize);
+		}
 		return serialPort;
 	}
 
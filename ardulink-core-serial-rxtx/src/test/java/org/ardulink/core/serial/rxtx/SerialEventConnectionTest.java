@@ -0,0 +1,76 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.core.serial.rxtx;
+
+import static gnu.io.SerialPortEvent.DATA_AVAILABLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ardulink.core.Connection.ListenerAdapter;
+import org.ardulink.core.messages.api.FromDeviceMessage;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.junit.jupiter.api.Test;
+
+import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class SerialEventConnectionTest {
+
+	@Test
+	void readsAllAvailableBytesInChunksAndParsesThem() throws Exception {
+		byte[] input = "alp://ared/1/42\nalp://dred/2/1\n".getBytes();
+		SerialPort serialPort = mock(SerialPort.class);
+		when(serialPort.getInputStream()).thenReturn(new ByteArrayInputStream(input));
+		when(serialPort.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+		List<FromDeviceMessage> messages = new ArrayList<>();
+		List<byte[]> chunks = new ArrayList<>();
+		try (SerialEventConnection connection = new SerialEventConnection(serialPort,
+				new ArdulinkProtocol2().newByteStreamProcessor(), 16)) {
+			verify(serialPort).notifyOnDataAvailable(true);
+			connection.getByteStreamProcessor().addListener(messages::add);
+			connection.addListener(new ListenerAdapter() {
+				@Override
+				public void received(byte[] bytes) {
+					chunks.add(bytes);
+				}
+			});
+
+			connection.serialEvent(new SerialPortEvent(serialPort, DATA_AVAILABLE, false, true));
+		}
+
+		// 31 bytes read using a buffer of 16 bytes
+		assertThat(chunks).extracting(chunk -> chunk.length).containsExactly(16, 15);
+		assertThat(messages).hasSize(2);
+		verify(serialPort).removeEventListener();
+	}
+
+}
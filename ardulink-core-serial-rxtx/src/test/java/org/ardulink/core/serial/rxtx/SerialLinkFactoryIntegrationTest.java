@@ -68,7 +68,8 @@ class SerialLinkFactoryIntegrationTest {
 		Configurer configurer = connectionManager.getConfigurer(create(PREFIX));
 
 		assertThat(configurer.getAttributes()).containsExactlyInAnyOrder( //
-				"port", "baudrate", "proto", "qos", "waitsecs", "pingprobe");
+				"port", "baudrate", "proto", "qos", "waitsecs", "pingprobe", "eventdriven", "rcvthreshold",
+				"rcvtimeout", "inputbuffersize", "outputbuffersize");
 
 		assertThat(attribute(configurer, "port").hasChoiceValues()).isTrue();
 		assertThat(attribute(configurer, "proto").hasChoiceValues()).isTrue();
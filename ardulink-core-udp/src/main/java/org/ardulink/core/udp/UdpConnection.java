@@ -0,0 +1,260 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.udp;
+
+import static java.nio.channels.SelectionKey.OP_READ;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Throwables.propagate;
+
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.ByteStreamProcessorProvider;
+import org.ardulink.core.ChannelSelector;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Connection sending each message as one UDP datagram using a connected
+ * {@link DatagramChannel}. Datagrams received are read by the (shared)
+ * {@link ChannelSelector}, so there is no reader thread per connection.
+ *
+ * If sequence numbers are enabled each datagram starts with a 4 byte big
+ * endian sequence number (incremented by one per datagram, wrapping around)
+ * followed by the payload. Gaps in the sequence numbers of the datagrams
+ * received are counted as lost, datagrams arriving late (or twice) are counted
+ * and dropped since they would overwrite newer states. Datagrams too far behind
+ * to be late (or several late ones in a row) mean the device restarted its
+ * sequence, e.g. after a reboot, so the connection resynchronizes to them.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class UdpConnection extends AbstractConnection implements ByteStreamProcessorProvider {
+
+	private static final Logger logger = LoggerFactory.getLogger(UdpConnection.class);
+
+	public static final int SEQUENCE_NUMBER_SIZE = 4;
+
+	public static final int MAX_DATAGRAM_SIZE = 65507;
+
+	// how far behind a datagram can be to be considered late rather than a restart
+	private static final int REORDER_WINDOW = 64;
+
+	private static final int LATE_DATAGRAMS_BEFORE_RESYNC = 3;
+
+	public static class Statistics {
+
+		private final AtomicLong sent = new AtomicLong();
+		private final AtomicLong received = new AtomicLong();
+		private final AtomicLong lost = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+
+		/**
+		 * @return number of datagrams sent
+		 */
+		public long getSent() {
+			return sent.get();
+		}
+
+		/**
+		 * @return number of datagrams received and passed on
+		 */
+		public long getReceived() {
+			return received.get();
+		}
+
+		/**
+		 * @return number of datagrams missing according to the sequence numbers
+		 */
+		public long getLost() {
+			return lost.get();
+		}
+
+		/**
+		 * @return number of datagrams dropped because they arrived late, twice or
+		 *         were too short to carry a sequence number as well as datagrams
+		 *         not sent because the socket's send buffer was full
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+
+		@Override
+		public String toString() {
+			return "Statistics [sent=" + sent + ", received=" + received + ", lost=" + lost + ", dropped=" + dropped
+					+ "]";
+		}
+
+	}
+
+	private final DatagramChannel channel;
+	private final ByteStreamProcessor byteStreamProcessor;
+	private final ChannelSelector selector;
+	private final boolean sequenceNumbers;
+	private final SelectionKey key;
+	private final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+	private ByteBuffer receiveBuffer;
+	private final Statistics statistics = new Statistics();
+	private int nextSequenceNumber;
+	private Integer expectedSequenceNumber;
+	private int lateInARow;
+
+	/**
+	 * Creates a connection for the passed (connected) channel. The channel gets
+	 * switched to non-blocking mode and registered at the passed selector.
+	 */
+	public UdpConnection(DatagramChannel channel, ByteStreamProcessor byteStreamProcessor, boolean sequenceNumbers,
+			ChannelSelector selector) throws IOException {
+		checkArgument(channel.isConnected(), "channel must be connected");
+		this.channel = channel;
+		this.byteStreamProcessor = checkNotNull(byteStreamProcessor, "byteStreamProcessor must not be null");
+		this.sequenceNumbers = sequenceNumbers;
+		this.selector = checkNotNull(selector, "selector must not be null");
+		this.key = registerAt(selector);
+	}
+
+	private SelectionKey registerAt(ChannelSelector selector) throws IOException {
+		try {
+			return selector.register(channel, OP_READ, k -> read()).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while registering " + channel, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw propagate(cause);
+		}
+	}
+
+	private void read() throws IOException {
+		ByteBuffer buffer = readBuffer();
+		buffer.clear();
+		try {
+			if (channel.read(buffer) < 0) {
+				return;
+			}
+		} catch (PortUnreachableException e) {
+			// the device did not listen (yet), this must not close the channel
+			logger.debug("{} unreachable", channel.getRemoteAddress());
+			return;
+		}
+		buffer.flip();
+		if (sequenceNumbers && !inSequence(buffer)) {
+			statistics.dropped.incrementAndGet();
+			return;
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		statistics.received.incrementAndGet();
+		fireReceived(bytes);
+		byteStreamProcessor.process(bytes);
+	}
+
+	private ByteBuffer readBuffer() {
+		ByteBuffer buffer = selector.readBuffer();
+		if (buffer.capacity() >= MAX_DATAGRAM_SIZE) {
+			return buffer;
+		}
+		// the rest of a datagram not fitting into the buffer would be discarded
+		if (receiveBuffer == null) {
+			receiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+		}
+		return receiveBuffer;
+	}
+
+	private boolean inSequence(ByteBuffer buffer) {
+		if (buffer.remaining() < SEQUENCE_NUMBER_SIZE) {
+			return false;
+		}
+		int sequenceNumber = buffer.getInt();
+		if (expectedSequenceNumber != null) {
+			// int arithmetic so that wrapped around sequence numbers work
+			int distance = sequenceNumber - expectedSequenceNumber;
+			if (distance < 0) {
+				if (distance >= -REORDER_WINDOW && ++lateInARow < LATE_DATAGRAMS_BEFORE_RESYNC) {
+					logger.debug("Dropping datagram {}, expected {}", sequenceNumber, expectedSequenceNumber);
+					return false;
+				}
+				logger.info("Resynchronizing to datagram {}, expected {}", sequenceNumber, expectedSequenceNumber);
+			} else {
+				statistics.lost.addAndGet(distance);
+			}
+		}
+		lateInARow = 0;
+		expectedSequenceNumber = sequenceNumber + 1;
+		return true;
+	}
+
+	@Override
+	public void write(byte[] bytes) throws IOException {
+		checkNotNull(bytes, "bytes must not be null");
+		int size = bytes.length + (sequenceNumbers ? SEQUENCE_NUMBER_SIZE : 0);
+		checkArgument(size <= MAX_DATAGRAM_SIZE, "message too large for one datagram (%s bytes)", size);
+		synchronized (sendBuffer) {
+			sendBuffer.clear();
+			if (sequenceNumbers) {
+				sendBuffer.putInt(nextSequenceNumber++);
+			}
+			sendBuffer.put(bytes).flip();
+			// the non-blocking channel writes nothing if the send buffer is full,
+			// like the network would lose the datagram
+			channel.write(sendBuffer);
+			if (sendBuffer.hasRemaining()) {
+				logger.debug("Send buffer of {} full, dropping datagram", channel.getRemoteAddress());
+				statistics.dropped.incrementAndGet();
+				return;
+			}
+		}
+		statistics.sent.incrementAndGet();
+		fireSent(bytes);
+	}
+
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	public DatagramChannel getChannel() {
+		return channel;
+	}
+
+	@Override
+	public void close() throws IOException {
+		key.cancel();
+		channel.close();
+	}
+
+	@Override
+	public ByteStreamProcessor getByteStreamProcessor() {
+		return byteStreamProcessor;
+	}
+
+}
@@ -0,0 +1,81 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.udp;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+
+import org.ardulink.core.ChannelSelector;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.LinkDelegate;
+import org.ardulink.core.linkmanager.LinkFactory;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
+import org.ardulink.core.qos.QosLink;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class UdpLinkFactory implements LinkFactory<UdpLinkConfig> {
+
+	public static final String NAME = "udp";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public LinkDelegate newLink(UdpLinkConfig config) throws IOException {
+		DatagramChannel channel = DatagramChannel.open();
+		try {
+			channel.bind(new InetSocketAddress(config.localport));
+			channel.connect(new InetSocketAddress(checkNotNull(config.host, "host must not be null"), config.port));
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		ByteStreamProcessor byteStreamProcessor = config.protocol().newByteStreamProcessor();
+		ConnectionBasedLink connectionBasedLink = new ConnectionBasedLink(new UdpConnection(channel,
+				byteStreamProcessor, config.sequencenumbers, ChannelSelector.sharedInstance()), byteStreamProcessor);
+
+		if (config.pingprobe && !connectionBasedLink.waitForArduinoToBoot(config.waitsecs, SECONDS)) {
+			connectionBasedLink.close();
+			throw new IllegalStateException("Waited for device to respond but no response received");
+		}
+
+		Link link = config.qos ? new QosLink(connectionBasedLink, config.qosTimeoutMillis, MILLISECONDS)
+				: connectionBasedLink;
+		return new LinkDelegate(link);
+	}
+
+	@Override
+	public UdpLinkConfig newLinkConfig() {
+		return new UdpLinkConfig();
+	}
+
+}
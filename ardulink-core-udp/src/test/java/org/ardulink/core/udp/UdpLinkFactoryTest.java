@@ -0,0 +1,217 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.udp;
+
+import static java.net.InetAddress.getLoopbackAddress;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ardulink.core.Connection.ListenerAdapter;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.convenience.LinkDelegate;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.qos.QosLink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 10, unit = SECONDS)
+class UdpLinkFactoryTest {
+
+	private DatagramSocket device;
+	private LinkDelegate link;
+
+	@BeforeEach
+	void setup() throws IOException {
+		device = new DatagramSocket(0, getLoopbackAddress());
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		if (link != null) {
+			link.close();
+		}
+		device.close();
+	}
+
+	@Test
+	void eachMessageIsSentAsOneDatagram() throws IOException {
+		link = newLink(config());
+		link.switchAnalogPin(analogPin(1), 2);
+		link.switchAnalogPin(analogPin(3), 4);
+		assertThat(payload(receive())).isEqualTo("alp://ppin/1/2\n");
+		assertThat(payload(receive())).isEqualTo("alp://ppin/3/4\n");
+	}
+
+	@Test
+	void datagramsOfDeviceArePassedToTheLink() throws IOException {
+		link = newLink(config());
+		List<AnalogPinValueChangedEvent> events = eventsOf(link);
+		link.switchAnalogPin(analogPin(1), 2);
+		SocketAddress linkAddress = receive().getSocketAddress();
+		send(linkAddress, "alp://ared/3/42\n".getBytes(US_ASCII));
+		await().until(() -> events.size() == 1);
+		assertThat(events.get(0).getValue()).isEqualTo(42);
+	}
+
+	@Test
+	void lostAndLateDatagramsAreDetected() throws IOException {
+		UdpLinkConfig config = config();
+		config.sequencenumbers = true;
+		link = newLink(config);
+		List<AnalogPinValueChangedEvent> events = eventsOf(link);
+		link.switchAnalogPin(analogPin(1), 2);
+		DatagramPacket packet = receive();
+		assertThat(ByteBuffer.wrap(packet.getData()).getInt()).isZero();
+
+		send(packet.getSocketAddress(), withSequenceNumber(0, "alp://ared/3/1\n"));
+		send(packet.getSocketAddress(), withSequenceNumber(2, "alp://ared/3/3\n"));
+		send(packet.getSocketAddress(), withSequenceNumber(1, "alp://ared/3/2\n"));
+		send(packet.getSocketAddress(), withSequenceNumber(3, "alp://ared/3/4\n"));
+
+		await().until(() -> events.size() == 3);
+		assertThat(events).extracting(e -> e.getValue()).containsExactly(1, 3, 4);
+		UdpConnection.Statistics statistics = connection(link).getStatistics();
+		assertThat(statistics.getSent()).isEqualTo(1);
+		assertThat(statistics.getReceived()).isEqualTo(3);
+		assertThat(statistics.getLost()).isEqualTo(1);
+		assertThat(statistics.getDropped()).isEqualTo(1);
+	}
+
+	@Test
+	void sequenceIsResynchronizedIfTheDeviceRestarts() throws IOException {
+		UdpLinkConfig config = config();
+		config.sequencenumbers = true;
+		link = newLink(config);
+		List<AnalogPinValueChangedEvent> events = eventsOf(link);
+		link.switchAnalogPin(analogPin(1), 2);
+		SocketAddress linkAddress = receive().getSocketAddress();
+
+		send(linkAddress, withSequenceNumber(1000, "alp://ared/3/1\n"));
+		// far behind, so no late datagram
+		send(linkAddress, withSequenceNumber(0, "alp://ared/3/2\n"));
+		send(linkAddress, withSequenceNumber(1, "alp://ared/3/3\n"));
+		// restarted shortly after the last datagram, resynchronized on the third
+		send(linkAddress, withSequenceNumber(0, "alp://ared/3/4\n"));
+		send(linkAddress, withSequenceNumber(1, "alp://ared/3/5\n"));
+		send(linkAddress, withSequenceNumber(2, "alp://ared/3/6\n"));
+		send(linkAddress, withSequenceNumber(3, "alp://ared/3/7\n"));
+
+		await().until(() -> events.size() == 5);
+		assertThat(events).extracting(e -> e.getValue()).containsExactly(1, 2, 3, 6, 7);
+		UdpConnection.Statistics statistics = connection(link).getStatistics();
+		assertThat(statistics.getLost()).isZero();
+		assertThat(statistics.getDropped()).isEqualTo(2);
+	}
+
+	@Test
+	void datagramsLargerThanTheReadBufferOfTheSelectorAreReceivedCompletely() throws IOException {
+		link = newLink(config());
+		List<byte[]> received = new CopyOnWriteArrayList<>();
+		connection(link).addListener(new ListenerAdapter() {
+			@Override
+			public void received(byte[] bytes) {
+				received.add(bytes);
+			}
+		});
+		link.switchAnalogPin(analogPin(1), 2);
+		// larger than the former default of 8 KB (and small enough for any loopback)
+		byte[] datagram = new byte[16 * 1024];
+		send(receive().getSocketAddress(), datagram);
+		await().until(() -> received.size() == 1);
+		assertThat(received.get(0)).hasSize(datagram.length);
+	}
+
+	@Test
+	void qosFailsIfDeviceDoesNotConfirm() throws IOException {
+		UdpLinkConfig config = config();
+		config.qos = true;
+		config.qosTimeoutMillis = 50;
+		link = newLink(config);
+		assertThat(link.getDelegate()).isInstanceOf(QosLink.class);
+		assertThatThrownBy(() -> link.switchAnalogPin(analogPin(1), 2)).isInstanceOf(IllegalStateException.class)
+				.hasMessageContaining("No response received");
+	}
+
+	private DatagramPacket receive() throws IOException {
+		DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+		device.receive(packet);
+		return packet;
+	}
+
+	private static String payload(DatagramPacket packet) {
+		return new String(packet.getData(), packet.getOffset(), packet.getLength(), US_ASCII);
+	}
+
+	private void send(SocketAddress address, byte[] bytes) throws IOException {
+		device.send(new DatagramPacket(bytes, bytes.length, address));
+	}
+
+	private static byte[] withSequenceNumber(int sequenceNumber, String message) {
+		byte[] bytes = message.getBytes(US_ASCII);
+		return ByteBuffer.allocate(4 + bytes.length).putInt(sequenceNumber).put(bytes).array();
+	}
+
+	private static List<AnalogPinValueChangedEvent> eventsOf(LinkDelegate link) throws IOException {
+		List<AnalogPinValueChangedEvent> events = new CopyOnWriteArrayList<>();
+		link.addListener(new EventListenerAdapter() {
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				events.add(event);
+			}
+		});
+		return events;
+	}
+
+	private static UdpConnection connection(LinkDelegate link) {
+		return (UdpConnection) ((ConnectionBasedLink) link.getDelegate()).getConnection();
+	}
+
+	private UdpLinkConfig config() {
+		UdpLinkConfig config = new UdpLinkFactory().newLinkConfig();
+		config.host = getLoopbackAddress().getHostAddress();
+		config.port = device.getLocalPort();
+		return config;
+	}
+
+	private static LinkDelegate newLink(UdpLinkConfig config) throws IOException {
+		return new UdpLinkFactory().newLink(config);
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.util;
+
+import static java.lang.System.getProperty;
+import static org.ardulink.util.Iterables.getFirst;
+import static org.ardulink.util.ServiceLoaders.services;
+import static org.ardulink.util.Throwables.propagate;
+import static org.ardulink.util.anno.LapsedWith.JDK21;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ardulink.util.anno.LapsedWith;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Central place where Ardulink gets its threads from (reader threads, proxy
+ * connections, ...). The {@link ThreadFactory} used is determined as follows:
+ * <ol>
+ * <li>the first {@link Provider} found via {@link java.util.ServiceLoader}</li>
+ * <li>virtual threads if the system property <code>ardulink.threads</code> is
+ * set to <code>virtual</code> and the JVM supports them (Java 21+)</li>
+ * <li>platform daemon threads otherwise</li>
+ * </ol>
+ *
+ * Threads blocking in native code (e.g. serial reads via JNI) would pin the
+ * carrier thread of a virtual thread, so a few of them could starve the virtual
+ * thread scheduler. They are created using
+ * {@link #newPlatformThread(String, Runnable)}, which does not use virtual
+ * threads (threads of an installed {@link Provider} are used as is).
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public final class ThreadFactories {
+
+	public interface Provider {
+
+		/**
+		 * Creates a ThreadFactory for threads of the given name. The threads created
+		 * must not prevent the JVM from exiting.
+		 *
+		 * @param name the name (prefix) of the threads
+		 * @return ThreadFactory
+		 */
+		ThreadFactory newThreadFactory(String name);
+
+	}
+
+	private static final Provider PLATFORM = ThreadFactories::platformThreadFactory;
+
+	private static final Optional<Provider> virtual = useVirtualThreads() ? virtualThreadProvider()
+			: Optional.empty();
+
+	private static final Provider provider = getFirst(services(Provider.class)) //
+			.orElseGet(() -> virtual.orElse(PLATFORM));
+
+	private ThreadFactories() {
+		super();
+	}
+
+	public static ThreadFactory newThreadFactory(String name) {
+		return provider.newThreadFactory(name);
+	}
+
+	public static Thread newThread(String name, Runnable runnable) {
+		return newThreadFactory(name).newThread(runnable);
+	}
+
+	/**
+	 * Same as {@link #newThread(String, Runnable)} but creates a platform thread
+	 * if virtual threads are used. To be used for threads blocking in native
+	 * code.
+	 */
+	public static Thread newPlatformThread(String name, Runnable runnable) {
+		return (virtual.isPresent() && provider == virtual.get() ? PLATFORM : provider).newThreadFactory(name)
+				.newThread(runnable);
+	}
+
+	public static ThreadFactory platformThreadFactory(String name) {
+		AtomicLong counter = new AtomicLong();
+		return r -> {
+			Thread thread = new Thread(r, name + "-" + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	public static boolean virtualThreadsAvailable() {
+		return virtualThreadProvider().isPresent();
+	}
+
+	private static boolean useVirtualThreads() {
+		return "virtual".equalsIgnoreCase(getProperty("ardulink.threads"));
+	}
+
+	@LapsedWith(module = JDK21, value = "Thread#ofVirtual")
+	private static Optional<Provider> virtualThreadProvider() {
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+			Method factoryMethod = builderClass.getMethod("factory");
+			// fail early e.g. on JDKs having virtual threads as preview feature only
+			ofVirtual.invoke(null);
+			return Optional.of(name -> {
+				try {
+					Object builder = nameMethod.invoke(ofVirtual.invoke(null), name + "-", 0L);
+					return (ThreadFactory) factoryMethod.invoke(builder);
+				} catch (ReflectiveOperationException e) {
+					throw propagate(e);
+				}
+			});
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return Optional.empty();
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.util;
+
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.anno.LapsedWith.JDK16;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.ardulink.util.anno.LapsedWith;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Access to Unix domain sockets (Java 16+) while still compiling for Java 8:
+ * the JDK's API is looked up reflectively, {@link #available()} tells if the
+ * running JVM supports them.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@LapsedWith(value = JDK16, module = "UnixDomainSocketAddress")
+public final class UnixDomainSockets {
+
+	private static final Support support = Support.lookup();
+
+	// file type bits of st_mode
+	private static final int S_IFMT = 0170000;
+	private static final int S_IFSOCK = 0140000;
+
+	private static final class Support {
+
+		private final ProtocolFamily unix;
+		private final Method addressOf;
+		private final Method openSocketChannel;
+		private final Method openServerSocketChannel;
+
+		private Support(ProtocolFamily unix, Method addressOf, Method openSocketChannel,
+				Method openServerSocketChannel) {
+			this.unix = unix;
+			this.addressOf = addressOf;
+			this.openSocketChannel = openSocketChannel;
+			this.openServerSocketChannel = openServerSocketChannel;
+		}
+
+		private static Support lookup() {
+			try {
+				return new Support(StandardProtocolFamily.valueOf("UNIX"),
+						Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class),
+						SocketChannel.class.getMethod("open", ProtocolFamily.class),
+						ServerSocketChannel.class.getMethod("open", ProtocolFamily.class));
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				return null;
+			}
+		}
+
+	}
+
+	private UnixDomainSockets() {
+		super();
+	}
+
+	public static boolean available() {
+		return support != null;
+	}
+
+	/**
+	 * Opens a (blocking) channel connected to the Unix domain socket at the passed
+	 * path.
+	 */
+	public static SocketChannel connect(String path) throws IOException {
+		SocketChannel channel = (SocketChannel) invoke(support().openSocketChannel, support().unix);
+		try {
+			channel.connect(address(path));
+			return channel;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a (blocking) server channel bound to the passed path. The socket file
+	 * must not exist.
+	 */
+	public static ServerSocketChannel bind(String path) throws IOException {
+		ServerSocketChannel channel = (ServerSocketChannel) invoke(support().openServerSocketChannel, support().unix);
+		try {
+			return channel.bind(address(path));
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the passed path (not following links) is a
+	 * socket file.
+	 */
+	public static boolean isSocket(Path path) throws IOException {
+		try {
+			int mode = (Integer) Files.getAttribute(path, "unix:mode", NOFOLLOW_LINKS);
+			return (mode & S_IFMT) == S_IFSOCK;
+		} catch (UnsupportedOperationException | IllegalArgumentException e) {
+			// no unix attributes (Windows): sockets are neither files, directories nor links
+			return Files.readAttributes(path, BasicFileAttributes.class, NOFOLLOW_LINKS).isOther();
+		}
+	}
+
+	private static SocketAddress address(String path) throws IOException {
+		return (SocketAddress) invoke(support().addressOf, path);
+	}
+
+	private static Support support() {
+		checkState(available(), "Unix domain sockets need Java 16 or later");
+		return support;
+	}
+
+	private static Object invoke(Method method, Object arg) throws IOException {
+		try {
+			return method.invoke(null, arg);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw Throwables.propagate(cause);
+		} catch (IllegalAccessException e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Unlike {@link java.nio.channels.Channels#newInputStream} the returned stream
+	 * does not share a lock with {@link #outputStream(SocketChannel)}, so one
+	 * thread can block reading while others write. The channel has to be in
+	 * blocking mode.
+	 */
+	public static InputStream inputStream(SocketChannel channel) {
+		return new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+
+		};
+	}
+
+	/**
+	 * @see #inputStream(SocketChannel)
+	 */
+	public static OutputStream outputStream(SocketChannel channel) {
+		return new OutputStream() {
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+
+		};
+	}
+
+}
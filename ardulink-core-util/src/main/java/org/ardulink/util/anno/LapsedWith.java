@@ -18,6 +18,8 @@ public @interface LapsedWith {
 	String JDK9 = "JDK9";
 	String JDK11 = "JDK11";
 	String JDK14 = "JDK14";
+	String JDK16 = "JDK16";
+	String JDK21 = "JDK21";
 
 	String value();
 
@@ -0,0 +1,71 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.util;
+
+import static org.ardulink.util.ThreadFactories.newPlatformThread;
+import static org.ardulink.util.ThreadFactories.newThread;
+import static org.ardulink.util.ThreadFactories.platformThreadFactory;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class ThreadFactoriesTest {
+
+	@Test
+	void platformThreadsAreNamedDaemonThreads() {
+		ThreadFactory threadFactory = platformThreadFactory("foo");
+		Thread thread1 = threadFactory.newThread(() -> {
+		});
+		Thread thread2 = threadFactory.newThread(() -> {
+		});
+		assertThat(thread1.isDaemon()).isTrue();
+		assertThat(thread1.getName()).isEqualTo("foo-0");
+		assertThat(thread2.getName()).isEqualTo("foo-1");
+	}
+
+	@Test
+	void createdThreadsDoNotPreventJvmFromExiting() throws InterruptedException {
+		StringBuilder sb = new StringBuilder();
+		Thread thread = newThread("bar", () -> sb.append("run"));
+		assertThat(thread.isDaemon()).isTrue();
+		assertThat(thread.getName()).startsWith("bar-");
+		thread.start();
+		thread.join();
+		assertThat(sb).hasToString("run");
+	}
+
+	@Test
+	void threadsForBlockingNativeCallsArePlatformThreads() {
+		// virtual threads are opt-in, so all threads are platform threads here
+		Thread thread = newPlatformThread("baz", () -> {
+		});
+		assertThat(thread.isDaemon()).isTrue();
+		assertThat(thread.getName()).startsWith("baz-");
+		assertThat(thread.getClass()).isEqualTo(Thread.class);
+	}
+
+}
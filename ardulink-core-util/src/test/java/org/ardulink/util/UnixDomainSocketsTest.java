@@ -0,0 +1,85 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(5)
+class UnixDomainSocketsTest {
+
+	@TempDir
+	Path tempDir;
+
+	@BeforeEach
+	void requiresUnixDomainSockets() {
+		assumeTrue(UnixDomainSockets.available());
+	}
+
+	@Test
+	void canWriteWhileOtherThreadIsBlockedReading() throws Exception {
+		String path = tempDir.resolve("ardulink.sock").toString();
+		try (ServerSocketChannel server = UnixDomainSockets.bind(path);
+				SocketChannel client = UnixDomainSockets.connect(path);
+				SocketChannel accepted = server.accept()) {
+			InputStream clientIn = UnixDomainSockets.inputStream(client);
+			OutputStream clientOut = UnixDomainSockets.outputStream(client);
+
+			StringBuilder received = new StringBuilder();
+			Thread reader = new Thread(() -> {
+				try {
+					byte[] buffer = new byte[4];
+					int read = clientIn.read(buffer);
+					received.append(new String(buffer, 0, read));
+				} catch (IOException e) {
+					received.append(e);
+				}
+			});
+			reader.start();
+
+			clientOut.write("ping".getBytes());
+			byte[] buffer = new byte[4];
+			assertThat(UnixDomainSockets.inputStream(accepted).read(buffer)).isEqualTo(4);
+			assertThat(new String(buffer)).isEqualTo("ping");
+
+			UnixDomainSockets.outputStream(accepted).write("pong".getBytes());
+			reader.join();
+			assertThat(received).hasToString("pong");
+		}
+	}
+
+}
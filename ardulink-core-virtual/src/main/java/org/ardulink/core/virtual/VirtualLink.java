@@ -4,6 +4,7 @@ import static org.ardulink.core.Pin.Type.ANALOG;
 import static org.ardulink.core.Pin.Type.DIGITAL;
 import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
 import static org.ardulink.core.events.DefaultDigitalPinValueChangedEvent.digitalPinValueChanged;
+import static org.ardulink.util.ThreadFactories.newThread;
 
 import java.io.IOException;
 import java.security.SecureRandom;
@@ -27,14 +28,11 @@ public class VirtualLink extends AbstractListenerLink {
 
 	private final SecureRandom secureRandom = new SecureRandom();
 
-	private final Thread thread = new Thread() {
-		@Override
-		public void run() {
-			while (true) {
-				sendRandomMessagesAndSleep();
-			}
+	private final Thread thread = newThread("ardulink-virtuallink", () -> {
+		while (!Thread.currentThread().isInterrupted()) {
+			sendRandomMessagesAndSleep();
 		}
-	};
+	});
 
 	private final Map<Pin, Object> listeningPins = new ConcurrentHashMap<>();
 
@@ -43,7 +41,6 @@ public class VirtualLink extends AbstractListenerLink {
 	public VirtualLink(VirtualLinkConfig config) {
 		super();
 		this.config = config;
-		this.thread.setDaemon(true);
 		this.thread.start();
 	}
 
@@ -0,0 +1,432 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.websocket;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Collections.emptyList;
+import static java.util.Locale.ENGLISH;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Minimal (RFC 6455) WebSocket endpoint on top of a blocking {@link Socket}
+ * supporting what Ardulink needs: the opening handshake of client and server,
+ * binary/text messages (possibly fragmented), ping/pong and the closing
+ * handshake. Extensions and subprotocols are not supported. Frames not masked
+ * as required (clients mask, servers do not) are rejected.
+ *
+ * {@link #send(byte[])} may be called from any thread, {@link #receive()} is
+ * meant to be called by one reader thread.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class WebSocket implements Closeable {
+
+	/**
+	 * Messages (as well as the HTTP header lines of the handshake) larger than
+	 * this are rejected.
+	 */
+	public static final int MAX_MESSAGE_SIZE = 64 * 1024;
+
+	private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+	private static final int FIN = 0x80;
+	private static final int MASK = 0x80;
+	private static final int OPCODE_CONTINUATION = 0x0;
+	private static final int OPCODE_TEXT = 0x1;
+	private static final int OPCODE_BINARY = 0x2;
+	private static final int OPCODE_CLOSE = 0x8;
+	private static final int OPCODE_PING = 0x9;
+	private static final int OPCODE_PONG = 0xA;
+
+	private static final Random random = new SecureRandom();
+
+	private final Socket socket;
+	private final DataInputStream inputStream;
+	private final OutputStream outputStream;
+	private final boolean client;
+	private final Object writeLock = new Object();
+	private volatile boolean closeSent;
+
+	private WebSocket(Socket socket, DataInputStream inputStream, OutputStream outputStream, boolean client) {
+		this.socket = socket;
+		this.inputStream = inputStream;
+		this.outputStream = outputStream;
+		this.client = client;
+	}
+
+	/**
+	 * Connects to the passed host and does the opening handshake.
+	 */
+	public static WebSocket connect(String host, int port, String path, int timeoutMillis) throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(checkNotNull(host, "host must not be null"), port), timeoutMillis);
+			socket.setSoTimeout(timeoutMillis);
+			socket.setTcpNoDelay(true);
+			WebSocket webSocket = new WebSocket(socket, dataInputStream(socket), outputStream(socket), true);
+			webSocket.clientHandshake(host + ":" + port, path);
+			socket.setSoTimeout(0);
+			return webSocket;
+		} catch (IOException | RuntimeException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Does the server side of the opening handshake on the passed (accepted)
+	 * socket accepting browsers only from pages of the same host.
+	 *
+	 * @see #accept(Socket, Collection)
+	 */
+	public static WebSocket accept(Socket socket) throws IOException {
+		return accept(socket, emptyList());
+	}
+
+	/**
+	 * Does the server side of the opening handshake on the passed (accepted)
+	 * socket. If the request is no valid WebSocket upgrade request the socket
+	 * gets answered with "400 Bad Request" and closed.
+	 *
+	 * Browsers send the origin of the page opening the WebSocket. To prevent
+	 * other sites from using the server through the browser (cross-site
+	 * WebSocket hijacking) requests with an Origin header are answered with "403
+	 * Forbidden" unless the origin is the host the request was sent to or is
+	 * contained in the passed allowed origins ("*" allows any origin). Requests
+	 * without an Origin header (non-browser clients) are accepted.
+	 *
+	 * @param socket         the accepted socket
+	 * @param allowedOrigins origins (e.g. "http://dashboard.example.com") allowed
+	 *                       additionally to the same host
+	 */
+	public static WebSocket accept(Socket socket, Collection<String> allowedOrigins) throws IOException {
+		checkNotNull(allowedOrigins, "allowedOrigins must not be null");
+		try {
+			socket.setTcpNoDelay(true);
+			WebSocket webSocket = new WebSocket(socket, dataInputStream(socket), outputStream(socket), false);
+			webSocket.serverHandshake(allowedOrigins);
+			return webSocket;
+		} catch (IOException | RuntimeException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	private static DataInputStream dataInputStream(Socket socket) throws IOException {
+		return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	}
+
+	private static BufferedOutputStream outputStream(Socket socket) throws IOException {
+		return new BufferedOutputStream(socket.getOutputStream());
+	}
+
+	private void clientHandshake(String host, String path) throws IOException {
+		byte[] nonce = new byte[16];
+		random.nextBytes(nonce);
+		String key = Base64.getEncoder().encodeToString(nonce);
+		writeAscii("GET " + (path == null || path.isEmpty() ? "/" : path) + " HTTP/1.1\r\n" //
+				+ "Host: " + host + "\r\n" //
+				+ "Upgrade: websocket\r\n" //
+				+ "Connection: Upgrade\r\n" //
+				+ "Sec-WebSocket-Key: " + key + "\r\n" //
+				+ "Sec-WebSocket-Version: 13\r\n\r\n");
+
+		String statusLine = readLine();
+		String[] status = statusLine.split(" ", 3);
+		if (status.length < 2 || !"101".equals(status[1])) {
+			throw new IOException("Server did not switch protocols: " + statusLine);
+		}
+		String accept = readHeaders().get("sec-websocket-accept");
+		if (!acceptKey(key).equals(accept)) {
+			throw new IOException("Invalid Sec-WebSocket-Accept " + accept);
+		}
+	}
+
+	private void serverHandshake(Collection<String> allowedOrigins) throws IOException {
+		String requestLine = readLine();
+		Map<String, String> headers = readHeaders();
+		String key = headers.get("sec-websocket-key");
+		if (!requestLine.startsWith("GET ") || !"websocket".equalsIgnoreCase(headers.get("upgrade"))
+				|| key == null) {
+			writeAscii("HTTP/1.1 400 Bad Request\r\nConnection: close\r\nContent-Length: 0\r\n\r\n");
+			throw new IOException("No WebSocket upgrade request: " + requestLine);
+		}
+		String origin = headers.get("origin");
+		if (origin != null && !isAllowed(origin, headers.get("host"), allowedOrigins)) {
+			writeAscii("HTTP/1.1 403 Forbidden\r\nConnection: close\r\nContent-Length: 0\r\n\r\n");
+			throw new IOException("Origin " + origin + " not allowed");
+		}
+		writeAscii("HTTP/1.1 101 Switching Protocols\r\n" //
+				+ "Upgrade: websocket\r\n" //
+				+ "Connection: Upgrade\r\n" //
+				+ "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n");
+	}
+
+	private static boolean isAllowed(String origin, String host, Collection<String> allowedOrigins) {
+		if (allowedOrigins.contains("*") || allowedOrigins.stream().anyMatch(origin::equalsIgnoreCase)) {
+			return true;
+		}
+		try {
+			String authority = new URI(origin).getAuthority();
+			return authority != null && authority.equalsIgnoreCase(host);
+		} catch (URISyntaxException e) {
+			return false;
+		}
+	}
+
+	private static String acceptKey(String key) {
+		try {
+			return Base64.getEncoder().encodeToString(
+					MessageDigest.getInstance("SHA-1").digest((key.trim() + GUID).getBytes(US_ASCII)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeAscii(String string) throws IOException {
+		outputStream.write(string.getBytes(US_ASCII));
+		outputStream.flush();
+	}
+
+	private Map<String, String> readHeaders() throws IOException {
+		Map<String, String> headers = new HashMap<>();
+		for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+			int colon = line.indexOf(':');
+			if (colon > 0) {
+				headers.put(line.substring(0, colon).trim().toLowerCase(ENGLISH), line.substring(colon + 1).trim());
+			}
+		}
+		return headers;
+	}
+
+	private String readLine() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int read;
+		while ((read = inputStream.read()) != '\n') {
+			if (read < 0) {
+				throw new EOFException("Stream closed during handshake");
+			}
+			if (read != '\r') {
+				sb.append((char) read);
+			}
+			if (sb.length() > MAX_LINE_LENGTH) {
+				throw new IOException("Header line too long");
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sends the passed bytes as one binary message.
+	 */
+	public void send(byte[] payload) throws IOException {
+		writeFrame(OPCODE_BINARY, payload);
+	}
+
+	/**
+	 * Sends the passed messages as binary messages flushing the underlying socket
+	 * only once.
+	 */
+	public void send(Iterable<byte[]> payloads) throws IOException {
+		synchronized (writeLock) {
+			for (byte[] payload : payloads) {
+				writeFrameUnflushed(OPCODE_BINARY, payload);
+			}
+			outputStream.flush();
+		}
+	}
+
+	/**
+	 * Blocks until the next (binary or text) message was received. Pings are
+	 * answered while waiting.
+	 *
+	 * @return the payload of the message or <code>null</code> if the peer closed
+	 *         the connection
+	 */
+	public byte[] receive() throws IOException {
+		ByteArrayOutputStream message = null;
+		while (true) {
+			int b0 = inputStream.read();
+			if (b0 < 0) {
+				return null;
+			}
+			int b1 = inputStream.readUnsignedByte();
+			int opcode = b0 & 0x0F;
+			byte[] payload = readPayload(b1);
+			switch (opcode) {
+			case OPCODE_PING:
+				writeFrame(OPCODE_PONG, payload);
+				break;
+			case OPCODE_PONG:
+				break;
+			case OPCODE_CLOSE:
+				if (!closeSent) {
+					writeClose();
+				}
+				return null;
+			case OPCODE_TEXT:
+			case OPCODE_BINARY:
+			case OPCODE_CONTINUATION:
+				if (opcode == OPCODE_CONTINUATION && message == null) {
+					throw new IOException("Continuation frame without message");
+				}
+				if (message == null) {
+					message = new ByteArrayOutputStream(payload.length);
+				}
+				message.write(payload);
+				if (message.size() > MAX_MESSAGE_SIZE) {
+					throw new IOException("Message exceeds " + MAX_MESSAGE_SIZE + " bytes");
+				}
+				if ((b0 & FIN) != 0) {
+					return message.toByteArray();
+				}
+				break;
+			default:
+				throw new IOException("Unsupported opcode " + opcode);
+			}
+		}
+	}
+
+	private byte[] readPayload(int b1) throws IOException {
+		long length = b1 & 0x7F;
+		if (length == 126) {
+			length = inputStream.readUnsignedShort();
+		} else if (length == 127) {
+			length = inputStream.readLong();
+		}
+		if (length < 0 || length > MAX_MESSAGE_SIZE) {
+			throw new IOException("Frame exceeds " + MAX_MESSAGE_SIZE + " bytes");
+		}
+		boolean masked = (b1 & MASK) != 0;
+		if (masked == client) {
+			// RFC 6455 5.1: clients must mask their frames, servers must not
+			throw new IOException(client ? "Received masked frame from server" : "Received unmasked frame from client");
+		}
+		byte[] mask = null;
+		if (masked) {
+			mask = new byte[4];
+			inputStream.readFully(mask);
+		}
+		byte[] payload = new byte[(int) length];
+		inputStream.readFully(payload);
+		if (mask != null) {
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i & 3];
+			}
+		}
+		return payload;
+	}
+
+	private void writeFrame(int opcode, byte[] payload) throws IOException {
+		synchronized (writeLock) {
+			writeFrameUnflushed(opcode, payload);
+			outputStream.flush();
+		}
+	}
+
+	private void writeFrameUnflushed(int opcode, byte[] payload) throws IOException {
+		checkArgument(payload.length <= MAX_MESSAGE_SIZE, "Message exceeds %s bytes", MAX_MESSAGE_SIZE);
+		// clients have to mask their frames, servers must not
+		int maskBit = client ? MASK : 0;
+		outputStream.write(FIN | opcode);
+		if (payload.length < 126) {
+			outputStream.write(maskBit | payload.length);
+		} else if (payload.length <= 0xFFFF) {
+			outputStream.write(maskBit | 126);
+			outputStream.write(payload.length >>> 8);
+			outputStream.write(payload.length);
+		} else {
+			// MAX_MESSAGE_SIZE does not fit into the 16 bit length
+			outputStream.write(maskBit | 127);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				outputStream.write((int) ((long) payload.length >>> shift));
+			}
+		}
+		if (client) {
+			byte[] mask = new byte[4];
+			random.nextBytes(mask);
+			outputStream.write(mask);
+			byte[] masked = new byte[payload.length];
+			for (int i = 0; i < payload.length; i++) {
+				masked[i] = (byte) (payload[i] ^ mask[i & 3]);
+			}
+			outputStream.write(masked);
+		} else {
+			outputStream.write(payload);
+		}
+	}
+
+	private void writeClose() throws IOException {
+		closeSent = true;
+		// 1000: normal closure
+		writeFrame(OPCODE_CLOSE, new byte[] { (byte) 0x03, (byte) 0xE8 });
+	}
+
+	public boolean isClosed() {
+		return socket.isClosed();
+	}
+
+	@Override
+	public String toString() {
+		return "WebSocket [" + socket.getRemoteSocketAddress() + "]";
+	}
+
+	/**
+	 * Sends a close frame (if not already done) and closes the underlying socket.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!closeSent && !socket.isClosed()) {
+				writeClose();
+			}
+		} catch (IOException e) {
+			// the peer is gone already
+		} finally {
+			socket.close();
+		}
+	}
+
+}
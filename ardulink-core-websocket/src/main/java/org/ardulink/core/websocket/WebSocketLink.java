@@ -0,0 +1,166 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.websocket;
+
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
+import static org.ardulink.core.events.DefaultDigitalPinValueChangedEvent.digitalPinValueChanged;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_DIGITAL;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_DIGITAL;
+import static org.ardulink.util.ThreadFactories.newThread;
+
+import java.io.IOException;
+
+import org.ardulink.core.AbstractListenerLink;
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
+import org.ardulink.core.Tone;
+import org.ardulink.core.messages.api.FromDeviceMessage;
+import org.ardulink.core.messages.api.FromDeviceMessagePinStateChanged;
+import org.ardulink.core.proto.api.MessageIdHolders;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2.ALPByteStreamProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Link connecting to a {@link WebSocketLinkServer}. All messages are exchanged
+ * as binary WebSocket messages containing ALP messages the same way the camel
+ * component does: pin states are "ared"/"dred" messages (in both directions),
+ * listening is controlled using "srla"/"srld"/"spla"/"spld".
+ *
+ * Writes block if the server does not keep up (TCP flow control), events are
+ * read by one thread per link.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class WebSocketLink extends AbstractListenerLink {
+
+	private static final Logger logger = LoggerFactory.getLogger(WebSocketLink.class);
+
+	private final WebSocket webSocket;
+	private final ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
+	private final Thread reader;
+	private volatile boolean closed;
+
+	public WebSocketLink(WebSocketLinkConfig config) throws IOException {
+		this.webSocket = WebSocket.connect(config.host, config.port, config.path, config.timeoutMillis);
+		this.byteStreamProcessor.addListener(this::received);
+		this.reader = newThread("ardulink-websocketlink", this::read);
+		this.reader.start();
+	}
+
+	private void read() {
+		try {
+			for (byte[] message; (message = webSocket.receive()) != null;) {
+				byteStreamProcessor.process(message);
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				logger.warn("Error reading from {}", webSocket, e);
+			}
+		}
+		if (!closed) {
+			fireConnectionLost();
+		}
+	}
+
+	private void received(FromDeviceMessage fromDevice) {
+		if (fromDevice instanceof FromDeviceMessagePinStateChanged) {
+			FromDeviceMessagePinStateChanged changed = (FromDeviceMessagePinStateChanged) fromDevice;
+			Pin pin = changed.getPin();
+			Object value = changed.getValue();
+			if (pin.is(ANALOG)) {
+				fireStateChanged(analogPinValueChanged(analogPin(pin.pinNum()), (Integer) value));
+			} else {
+				fireStateChanged(digitalPinValueChanged(digitalPin(pin.pinNum()), (Boolean) value));
+			}
+		}
+	}
+
+	@Override
+	public long startListening(Pin pin) throws IOException {
+		send(alpProtocolMessage(pin.is(ANALOG) ? START_LISTENING_ANALOG : START_LISTENING_DIGITAL)
+				.forPin(pin.pinNum()).withoutValue());
+		return MessageIdHolders.NO_ID.getId();
+	}
+
+	@Override
+	public long stopListening(Pin pin) throws IOException {
+		send(alpProtocolMessage(pin.is(ANALOG) ? STOP_LISTENING_ANALOG : STOP_LISTENING_DIGITAL)
+				.forPin(pin.pinNum()).withoutValue());
+		return MessageIdHolders.NO_ID.getId();
+	}
+
+	@Override
+	public long switchAnalogPin(AnalogPin analogPin, int value) throws IOException {
+		send(alpProtocolMessage(ANALOG_PIN_READ).forPin(analogPin.pinNum()).withValue(value));
+		return MessageIdHolders.NO_ID.getId();
+	}
+
+	@Override
+	public long switchDigitalPin(DigitalPin digitalPin, boolean value) throws IOException {
+		send(alpProtocolMessage(DIGITAL_PIN_READ).forPin(digitalPin.pinNum()).withState(value));
+		return MessageIdHolders.NO_ID.getId();
+	}
+
+	private void send(String message) throws IOException {
+		webSocket.send(byteStreamProcessor.toBytes(message));
+	}
+
+	@Override
+	public long sendKeyPressEvent(char keychar, int keycode, int keylocation, int keymodifiers, int keymodifiersex)
+			throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long sendTone(Tone tone) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long sendNoTone(AnalogPin analogPin) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long sendCustomMessage(String... messages) throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		deregisterAllEventListeners();
+		webSocket.close();
+		super.close();
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.websocket;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+import org.ardulink.core.linkmanager.LinkConfig;
+import org.ardulink.core.linkmanager.LinkConfig.I18n;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@I18n("message")
+public class WebSocketLinkConfig implements LinkConfig {
+
+	public static final String DEFAULT_HOST = "localhost";
+
+	@Named("host")
+	@NotNull
+	public String host = DEFAULT_HOST;
+
+	@Named("port")
+	@Positive
+	@Max(2 << 16 - 1)
+	public int port = WebSocketLinkServer.DEFAULT_PORT;
+
+	@Named("path")
+	@NotNull
+	public String path = "/";
+
+	@Named("timeoutmillis")
+	@Positive
+	public int timeoutMillis = 5000;
+
+}
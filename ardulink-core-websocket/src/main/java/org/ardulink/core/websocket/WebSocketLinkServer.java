@@ -0,0 +1,302 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.websocket;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.ConcurrentHashMap.newKeySet;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.messages.api.FromDeviceChangeListeningState.Mode.START;
+import static org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessors.parse;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newThread;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.Pin;
+import org.ardulink.core.Pin.AnalogPin;
+import org.ardulink.core.Pin.DigitalPin;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.DigitalPinValueChangedEvent;
+import org.ardulink.core.events.EventListener;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.messages.api.FromDeviceChangeListeningState;
+import org.ardulink.core.messages.api.FromDeviceMessage;
+import org.ardulink.core.messages.api.FromDeviceMessagePinStateChanged;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2.ALPByteStreamProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Serves one {@link Link} to any number of WebSocket clients (e.g. browser
+ * dashboards or {@link WebSocketLink}s). Clients subscribe to pins sending
+ * "alp://srla/{pin}" or "alp://srld/{pin}" and get the state changes of those
+ * pins streamed as binary messages ("alp://ared/{pin}/{value}",
+ * "alp://dred/{pin}/{value}"). Pins are switched sending the same messages to
+ * the server.
+ *
+ * Each client has its own outbox holding at most one (the latest) message per
+ * pin and its own writer thread, so a slow client gets intermediate states
+ * skipped but never blocks the link or the other clients.
+ *
+ * Browsers are only accepted from pages of the same host or from the allowed
+ * origins passed, see {@link WebSocket#accept(Socket, Collection)}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class WebSocketLinkServer implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(WebSocketLinkServer.class);
+
+	public static final int DEFAULT_PORT = 8081;
+
+	private final Link link;
+	private final ServerSocket serverSocket;
+	private final List<String> allowedOrigins;
+	private final Set<Session> sessions = newKeySet();
+	private final Map<Pin, Integer> subscriptionCounts = new HashMap<>();
+	private final EventListener eventListener = eventListener();
+
+	public WebSocketLinkServer(Link link, InetSocketAddress bindAddress) throws IOException {
+		this(link, bindAddress, emptyList());
+	}
+
+	public WebSocketLinkServer(Link link, InetSocketAddress bindAddress, Collection<String> allowedOrigins)
+			throws IOException {
+		this.link = checkNotNull(link, "link must not be null");
+		this.allowedOrigins = new ArrayList<>(checkNotNull(allowedOrigins, "allowedOrigins must not be null"));
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.bind(bindAddress);
+		this.link.addListener(eventListener);
+		newThread("ardulink-websocketserver", this::accept).start();
+		logger.info("WebSocket server listening on {}", serverSocket.getLocalSocketAddress());
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	private EventListener eventListener() {
+		ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
+		return new EventListenerAdapter() {
+
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				publish(event.getPin(), byteStreamProcessor.toBytes(alpProtocolMessage(ANALOG_PIN_READ)
+						.forPin(event.getPin().pinNum()).withValue(event.getValue())));
+			}
+
+			@Override
+			public void stateChanged(DigitalPinValueChangedEvent event) {
+				publish(event.getPin(), byteStreamProcessor.toBytes(alpProtocolMessage(DIGITAL_PIN_READ)
+						.forPin(event.getPin().pinNum()).withState(event.getValue())));
+			}
+
+		};
+	}
+
+	private void publish(Pin pin, byte[] message) {
+		for (Session session : sessions) {
+			session.offer(pin, message);
+		}
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				newThread("ardulink-websocketsession", () -> serve(socket)).start();
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					logger.error("Error accepting connection", e);
+				}
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		Session session;
+		try {
+			session = new Session(WebSocket.accept(socket, allowedOrigins));
+		} catch (IOException e) {
+			logger.info("Handshake with {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+			return;
+		}
+		sessions.add(session);
+		session.read();
+	}
+
+	private void subscribe(Pin pin) throws IOException {
+		synchronized (subscriptionCounts) {
+			Integer count = subscriptionCounts.merge(pin, 1, Integer::sum);
+			if (count == 1) {
+				link.startListening(pin);
+			}
+		}
+	}
+
+	private void unsubscribe(Pin pin) throws IOException {
+		synchronized (subscriptionCounts) {
+			Integer count = subscriptionCounts.computeIfPresent(pin, (p, c) -> c == 1 ? null : c - 1);
+			if (count == null) {
+				link.stopListening(pin);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		link.removeListener(eventListener);
+		for (Session session : sessions) {
+			session.close();
+		}
+	}
+
+	private final class Session {
+
+		private final WebSocket webSocket;
+		private final ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
+		private final Set<Pin> subscriptions = newKeySet();
+		private final Map<Pin, byte[]> outbox = new LinkedHashMap<>();
+		private final Thread writer;
+
+		private Session(WebSocket webSocket) {
+			this.webSocket = webSocket;
+			this.writer = newThread("ardulink-websocketwriter", this::write);
+			this.writer.start();
+		}
+
+		private void offer(Pin pin, byte[] message) {
+			if (subscriptions.contains(pin)) {
+				synchronized (outbox) {
+					outbox.put(pin, message);
+					outbox.notifyAll();
+				}
+			}
+		}
+
+		private void write() {
+			try {
+				while (!webSocket.isClosed()) {
+					List<byte[]> messages;
+					synchronized (outbox) {
+						while (outbox.isEmpty()) {
+							outbox.wait();
+						}
+						messages = new ArrayList<>(outbox.values());
+						outbox.clear();
+					}
+					webSocket.send(messages);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				logger.debug("Error writing to {}", webSocket, e);
+				close();
+			}
+		}
+
+		private void read() {
+			try {
+				for (byte[] message; (message = webSocket.receive()) != null;) {
+					for (FromDeviceMessage fromDevice : parse(byteStreamProcessor, terminated(message))) {
+						handle(fromDevice);
+					}
+				}
+			} catch (IOException e) {
+				logger.debug("Error reading from {}", webSocket, e);
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * Each WebSocket message is one ALP message, so browsers do not have to
+		 * append the line separator.
+		 */
+		private byte[] terminated(byte[] message) {
+			if (message.length > 0 && message[message.length - 1] == '\n') {
+				return message;
+			}
+			byte[] terminated = Arrays.copyOf(message, message.length + 1);
+			terminated[message.length] = '\n';
+			return terminated;
+		}
+
+		private void handle(FromDeviceMessage fromDevice) throws IOException {
+			if (fromDevice instanceof FromDeviceMessagePinStateChanged) {
+				FromDeviceMessagePinStateChanged changed = (FromDeviceMessagePinStateChanged) fromDevice;
+				Pin pin = changed.getPin();
+				if (pin.is(ANALOG)) {
+					link.switchAnalogPin((AnalogPin) pin, (Integer) changed.getValue());
+				} else {
+					link.switchDigitalPin((DigitalPin) pin, (Boolean) changed.getValue());
+				}
+			} else if (fromDevice instanceof FromDeviceChangeListeningState) {
+				FromDeviceChangeListeningState listeningState = (FromDeviceChangeListeningState) fromDevice;
+				Pin pin = listeningState.getPin();
+				if (listeningState.getMode() == START) {
+					if (subscriptions.add(pin)) {
+						subscribe(pin);
+					}
+				} else if (subscriptions.remove(pin)) {
+					unsubscribe(pin);
+				}
+			} else {
+				logger.info("Ignoring {} from {}", fromDevice, webSocket);
+			}
+		}
+
+		private void close() {
+			if (!sessions.remove(this)) {
+				return;
+			}
+			writer.interrupt();
+			try {
+				webSocket.close();
+				for (Pin pin : subscriptions) {
+					unsubscribe(pin);
+				}
+			} catch (IOException e) {
+				logger.warn("Error closing {}", webSocket, e);
+			}
+		}
+
+	}
+
+}
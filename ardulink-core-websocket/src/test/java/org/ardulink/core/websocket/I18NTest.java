@@ -0,0 +1,14 @@
+package org.ardulink.core.websocket;
+
+import static org.ardulink.testsupport.i18n.I18NTestSupport.assertAllAttributesHaveDescriptions;
+
+import org.junit.jupiter.api.Test;
+
+class I18NTest {
+
+	@Test
+	void allAttributesHaveAdescription() {
+		assertAllAttributesHaveDescriptions("ardulink://ws");
+	}
+
+}
@@ -0,0 +1,235 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.core.websocket;
+
+import static java.net.InetAddress.getLoopbackAddress;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
+import static org.ardulink.testsupport.mock.TestSupport.fireEvent;
+import static org.ardulink.testsupport.mock.TestSupport.getMock;
+import static org.ardulink.testsupport.mock.TestSupport.uniqueMockUri;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 10, unit = SECONDS)
+class WebSocketLinkTest {
+
+	Link serverLink;
+	WebSocketLinkServer server;
+	WebSocketLink link;
+
+	@BeforeEach
+	void setup() throws IOException {
+		serverLink = Links.getLink(uniqueMockUri());
+		server = new WebSocketLinkServer(serverLink, new InetSocketAddress(getLoopbackAddress(), 0));
+		link = new WebSocketLink(config());
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		link.close();
+		server.close();
+		serverLink.close();
+	}
+
+	@Test
+	void switchesArePassedToTheServersLink() throws IOException {
+		link.switchAnalogPin(analogPin(3), 42);
+		link.switchDigitalPin(digitalPin(4), true);
+		verify(getMock(serverLink), timeout(5_000)).switchAnalogPin(analogPin(3), 42);
+		verify(getMock(serverLink), timeout(5_000)).switchDigitalPin(digitalPin(4), true);
+	}
+
+	@Test
+	void onlyEventsOfSubscribedPinsAreStreamed() throws IOException {
+		List<AnalogPinValueChangedEvent> events = new CopyOnWriteArrayList<>();
+		link.addListener(new EventListenerAdapter() {
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				events.add(event);
+			}
+		});
+		link.startListening(analogPin(1));
+		verify(getMock(serverLink), timeout(5_000)).startListening(analogPin(1));
+
+		fireEvent(serverLink, analogPinValueChanged(analogPin(2), 1));
+		fireEvent(serverLink, analogPinValueChanged(analogPin(1), 7));
+
+		await().until(() -> !events.isEmpty());
+		assertThat(events).extracting(e -> e.getPin()).containsOnly(analogPin(1));
+		assertThat(events).extracting(e -> e.getValue()).containsExactly(7);
+	}
+
+	@Test
+	void slowClientGetsLatestStateAndDoesNotBlockTheLink() throws IOException {
+		try (WebSocket slowClient = WebSocket.connect(getLoopbackAddress().getHostAddress(), server.getPort(), "/",
+				5_000)) {
+			// browsers send messages without line separator
+			slowClient.send("alp://srla/1".getBytes(US_ASCII));
+			verify(getMock(serverLink), timeout(5_000)).startListening(analogPin(1));
+
+			int events = 100_000;
+			for (int i = 1; i <= events; i++) {
+				fireEvent(serverLink, analogPinValueChanged(analogPin(1), i));
+			}
+
+			String last = "alp://ared/1/" + events + "\n";
+			int received = 0;
+			String message;
+			do {
+				message = new String(slowClient.receive(), US_ASCII);
+				received++;
+			} while (!message.equals(last));
+			assertThat(received).isLessThan(events);
+		}
+		verify(getMock(serverLink), timeout(5_000)).stopListening(analogPin(1));
+	}
+
+	@Test
+	void messagesOfTheMaximumSizeAreTransferredInBothDirections() throws Exception {
+		byte[] message = new byte[WebSocket.MAX_MESSAGE_SIZE];
+		new Random(0).nextBytes(message);
+		try (ServerSocket serverSocket = new ServerSocket(0, 1, getLoopbackAddress())) {
+			CompletableFuture<WebSocket> accepted = supplyAsync(() -> {
+				try {
+					return WebSocket.accept(serverSocket.accept());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			try (WebSocket client = WebSocket.connect(getLoopbackAddress().getHostAddress(),
+					serverSocket.getLocalPort(), "/", 5_000); WebSocket server = accepted.get(5, SECONDS)) {
+				client.send(message);
+				assertThat(server.receive()).isEqualTo(message);
+				server.send(message);
+				assertThat(client.receive()).isEqualTo(message);
+			}
+		}
+	}
+
+	@Test
+	void browsersOfForeignOriginsAreRejected() throws IOException {
+		assertThat(handshake(server.getPort(), "http://evil.example.com")).contains(" 403 ");
+	}
+
+	@Test
+	void browsersOfTheSameHostAreAccepted() throws IOException {
+		String host = getLoopbackAddress().getHostAddress() + ":" + server.getPort();
+		assertThat(handshake(server.getPort(), "http://" + host)).contains(" 101 ");
+	}
+
+	@Test
+	void browsersOfAllowedOriginsAreAccepted() throws IOException {
+		try (WebSocketLinkServer server = new WebSocketLinkServer(serverLink,
+				new InetSocketAddress(getLoopbackAddress(), 0), singletonList("http://dashboard.example.com"))) {
+			assertThat(handshake(server.getPort(), "http://dashboard.example.com")).contains(" 101 ");
+			assertThat(handshake(server.getPort(), "http://evil.example.com")).contains(" 403 ");
+		}
+	}
+
+	@Test
+	void unmaskedFramesOfClientsAreRejected() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0, 1, getLoopbackAddress())) {
+			CompletableFuture<WebSocket> accepted = supplyAsync(() -> {
+				try {
+					return WebSocket.accept(serverSocket.accept());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			try (Socket client = new Socket(getLoopbackAddress(), serverSocket.getLocalPort())) {
+				assertThat(handshake(client, serverSocket.getLocalPort(), null)).contains(" 101 ");
+				try (WebSocket server = accepted.get(5, SECONDS)) {
+					OutputStream outputStream = client.getOutputStream();
+					// FIN + binary, no mask bit, 1 byte payload
+					outputStream.write(new byte[] { (byte) 0x82, 0x01, 'x' });
+					outputStream.flush();
+					assertThatThrownBy(server::receive).isInstanceOf(IOException.class)
+							.hasMessageContaining("unmasked");
+				}
+			}
+		}
+	}
+
+	private static String handshake(int port, String origin) throws IOException {
+		try (Socket socket = new Socket(getLoopbackAddress(), port)) {
+			return handshake(socket, port, origin);
+		}
+	}
+
+	private static String handshake(Socket socket, int port, String origin) throws IOException {
+		OutputStream outputStream = socket.getOutputStream();
+		outputStream.write(("GET / HTTP/1.1\r\n" //
+				+ "Host: " + getLoopbackAddress().getHostAddress() + ":" + port + "\r\n" //
+				+ (origin == null ? "" : "Origin: " + origin + "\r\n") //
+				+ "Upgrade: websocket\r\n" //
+				+ "Connection: Upgrade\r\n" //
+				+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" //
+				+ "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(US_ASCII));
+		outputStream.flush();
+		// only the status line is read, the reader must not consume any frames
+		StringBuilder statusLine = new StringBuilder();
+		for (int read; (read = socket.getInputStream().read()) != '\n' && read >= 0;) {
+			statusLine.append((char) read);
+		}
+		return statusLine.toString();
+	}
+
+	private WebSocketLinkConfig config() {
+		WebSocketLinkConfig config = new WebSocketLinkConfig();
+		config.host = getLoopbackAddress().getHostAddress();
+		config.port = server.getPort();
+		return config;
+	}
+
+}
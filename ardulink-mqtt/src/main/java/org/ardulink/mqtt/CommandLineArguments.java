@@ -3,8 +3,13 @@ package org.ardulink.mqtt;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.ardulink.core.convenience.Links.DEFAULT_URI;
 import static org.ardulink.mqtt.MqttCamelRouteBuilder.CompactStrategy.AVERAGE;
+import static org.ardulink.mqtt.PinBatcher.Format.JSON;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.ardulink.mqtt.MqttCamelRouteBuilder.CompactStrategy;
+import org.ardulink.mqtt.PinBatcher.Format;
 import org.kohsuke.args4j.Option;
 
 public class CommandLineArguments {
@@ -52,15 +57,57 @@ public class CommandLineArguments {
 	@Option(name = "-athstr", aliases = "--strategy", usage = "Analog throttle strategy")
 	public CompactStrategy compactStrategy = AVERAGE;
 
+	@Option(name = "-athstats", aliases = "--statistics", usage = "Comma separated statistics to publish per "
+			+ "throttle window (MIN, MAX, AVERAGE, LAST, COUNT), overrides the strategy, only used with -direct")
+	public String statistics;
+
+	@Option(name = "-athstep", aliases = "--slide", usage = "Publish a window of <throttleMillis> sliding every "
+			+ "<stepMillis>, only used with -direct")
+	public int stepMillis;
+
+	@Option(name = "-athchanged", aliases = "--changedOnly", usage = "Only publish statistics that changed since "
+			+ "the previous window, only used with -direct")
+	public boolean changedOnly;
+
+	@Option(name = "-batch", usage = "Additionally publish all pins changed within <batchMillis> as one message "
+			+ "on $brokerTopic/batch, only used with -direct")
+	public int batchMillis;
+
+	@Option(name = "-batchFormat", usage = "Payload format of the batch messages")
+	public Format batchFormat = JSON;
+
+	@Option(name = "-batchOnly", usage = "Publish the batch messages only (no per pin messages)")
+	public boolean batchOnly;
+
+	@Option(name = "-retained", usage = "Publish the pin values retained and only if they changed, only used "
+			+ "with -direct")
+	public boolean retained;
+
+	@Option(name = "-snapshot", usage = "Publish the latest values of all pins every <snapshotMillis> as one "
+			+ "retained message on $brokerTopic/state (format see -batchFormat), only used with -direct")
+	public int snapshotMillis;
+
 	@Option(name = "-connection", usage = "Connection URI to the arduino")
 	public String connection = DEFAULT_URI;
 
+	@Option(name = "-board", usage = "Bridge an additional arduino as <topicPrefix>=<connectionUri> on "
+			+ "$brokerTopic<topicPrefix>/ (repeatable, replaces -connection, implies -direct)")
+	public List<String> boards = new ArrayList<>();
+
 	@Option(name = "-control", usage = "Enable the control of listeners via mqtt")
 	public boolean control;
 
+	@Option(name = "-direct", usage = "Bridge the link and the broker directly without camel (faster, analog "
+			+ "values are compacted per -athms window as selected by -athstr/-athstats)")
+	public boolean direct;
+
 	@Option(name = "-standalone", usage = "Start a mqtt server on this host")
 	public boolean standalone;
 
+	@Option(name = "-inProcess", usage = "Bridge the link to the server started by -standalone within the process "
+			+ "(no network connection, implies -direct)")
+	public boolean inProcess;
+
 	CommandLineArguments normalize() {
 		if (brokerTopic != null && !brokerTopic.endsWith("/")) {
 			brokerTopic = brokerTopic + '/';
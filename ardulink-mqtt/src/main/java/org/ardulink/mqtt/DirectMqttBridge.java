@@ -0,0 +1,699 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.mqtt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.DigitalPinValueChangedEvent;
+import org.ardulink.core.events.EventListener;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.topic.TopicRouter;
+import org.ardulink.core.topic.TopicRouter.Match;
+import org.ardulink.mqtt.MqttCamelRouteBuilder.MqttConnectionProperties;
+import org.ardulink.mqtt.PinBatcher.Format;
+import org.ardulink.mqtt.Topics.Action;
+import org.ardulink.mqtt.WindowedAggregator.Statistic;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Bridges a {@link Link} and a MQTT broker without camel: pin events of the
+ * link are published using a paho {@link MqttAsyncClient} and messages
+ * received on the write (and control) topics are passed to the link. A bridge
+ * to a {@link MqttBroker} running in the same JVM publishes and intercepts the
+ * messages within the broker instead, so no client connection (and no loopback
+ * network traffic) is involved.
+ *
+ * The topics of the first {@value #PRECOMPUTED_PINS} pins and the payloads of
+ * the first {@value #PRECOMPUTED_ANALOG_VALUES} analog values are computed
+ * once, so publishing does not format or encode anything. Inbound topics are
+ * resolved using the {@link TopicRouter} of the {@link Topics}.
+ *
+ * Analog values can be compacted by a {@link WindowedAggregator}: if only one
+ * statistic is configured it is published on the pin's read topic, otherwise
+ * each statistic is published on the read topic suffixed by
+ * "/{@link Statistic#getSuffix()}" (e.g. ".../A3/avg").
+ *
+ * Additionally (or instead of the per pin topics) the changed pins can be
+ * published as one message per interval on the batch topic (the topic of the
+ * {@link Topics} followed by "batch", see {@link PinBatcher}).
+ *
+ * In retained mode the pin values are published as retained messages and
+ * only if they differ from the value previously published for the pin (so new
+ * subscribers instantly receive the current state). Additionally the state of
+ * all pins can be published periodically as one retained message on the state
+ * topic (the topic of the {@link Topics} followed by "state", encoded like the
+ * batches).
+ *
+ * A bridge can serve several links (e.g. one per board), each one using its
+ * own {@link Topics}. All of them share the connection to the broker, one
+ * {@link TopicRouter} resolving the inbound topics and one thread emitting
+ * the windows and batches.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class DirectMqttBridge implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectMqttBridge.class);
+
+	public static final int PRECOMPUTED_PINS = 128;
+	public static final int PRECOMPUTED_ANALOG_VALUES = 1024;
+
+	private static final byte[] TRUE = "true".getBytes(US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(US_ASCII);
+	private static final byte[][] ANALOG_VALUES = analogValues();
+
+	private interface Transport extends Closeable {
+
+		void connect(String[] topicFilters) throws MqttException;
+
+		void publish(String topic, byte[] payload, boolean retained) throws MqttException;
+
+		boolean isConnected();
+
+	}
+
+	private static final class PahoTransport implements Transport {
+
+		private final MqttConnectionProperties properties;
+		private final MqttAsyncClient client;
+
+		private PahoTransport(MqttConnectionProperties properties, BiConsumer<String, byte[]> inbound)
+				throws MqttException {
+			this.properties = properties;
+			this.client = new MqttAsyncClient(properties.getBrokerUrl(), properties.getName(), new MemoryPersistence());
+			this.client.setCallback(callback(inbound));
+		}
+
+		@Override
+		public void connect(String[] topicFilters) throws MqttException {
+			client.connect(connectOptions(properties)).waitForCompletion();
+			client.subscribe(topicFilters, new int[topicFilters.length]).waitForCompletion();
+		}
+
+		private static MqttConnectOptions connectOptions(MqttConnectionProperties properties) {
+			MqttConnectOptions options = new MqttConnectOptions();
+			options.setAutomaticReconnect(false);
+			options.setCleanSession(true);
+			options.setMaxInflight(65535);
+			if (properties.hasAuth()) {
+				options.setUserName(properties.getUser());
+				options.setPassword(new String(properties.getPass(), US_ASCII).toCharArray());
+			}
+			return options;
+		}
+
+		private MqttCallback callback(BiConsumer<String, byte[]> inbound) {
+			return new MqttCallback() {
+
+				@Override
+				public void messageArrived(String topic, MqttMessage message) {
+					inbound.accept(topic, message.getPayload());
+				}
+
+				@Override
+				public void deliveryComplete(IMqttDeliveryToken token) {
+					// nothing to do
+				}
+
+				@Override
+				public void connectionLost(Throwable cause) {
+					logger.warn("Connection to {} lost", client.getServerURI(), cause);
+				}
+
+			};
+		}
+
+		@Override
+		public void publish(String topic, byte[] payload, boolean retained) throws MqttException {
+			// retained messages use qos 1, some brokers (e.g. moquette) do not retain
+			// messages published using qos 0
+			client.publish(topic, payload, retained ? 1 : 0, retained);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return client.isConnected();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (client.isConnected()) {
+					client.disconnect().waitForCompletion();
+				}
+				client.close();
+			} catch (MqttException e) {
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return client.getServerURI();
+		}
+
+	}
+
+	private static final class InProcessTransport implements Transport {
+
+		private final MqttBroker broker;
+		private final String clientId;
+		private final BiConsumer<String, byte[]> inbound;
+		private volatile Closeable interception;
+
+		private InProcessTransport(MqttBroker broker, String clientId, BiConsumer<String, byte[]> inbound) {
+			this.broker = broker;
+			this.clientId = clientId;
+			this.inbound = inbound;
+		}
+
+		@Override
+		public void connect(String[] topicFilters) {
+			// one INFO message per pin event would flood the log
+			MqttBroker.quietInternalPublishLogging();
+			// the router ignores the messages outside of the topic filters
+			interception = broker.interceptPublishes(clientId, inbound);
+		}
+
+		@Override
+		public void publish(String topic, byte[] payload, boolean retained) {
+			broker.internalPublish(topic, payload, retained, clientId);
+		}
+
+		@Override
+		public boolean isConnected() {
+			return interception != null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			Closeable interception = this.interception;
+			this.interception = null;
+			if (interception != null) {
+				interception.close();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "in-process broker " + broker.getHost() + ":" + broker.getPort();
+		}
+
+	}
+
+	public static class Builder {
+
+		private final Map<Link, Topics> links = new LinkedHashMap<>();
+		private MqttConnectionProperties properties;
+		private MqttBroker broker;
+		private WindowedAggregator.Builder aggregation;
+		private long batchMillis;
+		private Format batchFormat = Format.JSON;
+		private boolean perPinTopics = true;
+		private boolean retained;
+		private long snapshotMillis;
+		private Format snapshotFormat = Format.JSON;
+
+		private Builder(Link link, Topics topics) {
+			link(link, topics);
+		}
+
+		/**
+		 * Additionally bridges the passed link using the passed topics, which must
+		 * not overlap the topics of the other links.
+		 */
+		public Builder link(Link link, Topics topics) {
+			checkNotNull(link, "link must not be null");
+			checkNotNull(topics, "topics must not be null");
+			checkState(links.putIfAbsent(link, topics) == null, "%s is already bridged", link);
+			return this;
+		}
+
+		/**
+		 * Compacts analog values using the passed aggregation (or publishes each
+		 * value if <code>null</code>).
+		 */
+		public Builder aggregation(WindowedAggregator.Builder aggregation) {
+			this.aggregation = aggregation;
+			return this;
+		}
+
+		/**
+		 * Publishes the changed pins once per interval on the batch topic.
+		 */
+		public Builder batch(long interval, TimeUnit timeUnit, Format format) {
+			this.batchMillis = checkNotNull(timeUnit, "timeUnit must not be null").toMillis(interval);
+			this.batchFormat = checkNotNull(format, "format must not be null");
+			return this;
+		}
+
+		/**
+		 * Whether pin values are published on the per pin topics, defaults to
+		 * <code>true</code>. Can only be disabled if batching is enabled.
+		 */
+		public Builder perPinTopics(boolean perPinTopics) {
+			this.perPinTopics = perPinTopics;
+			return this;
+		}
+
+		/**
+		 * Publishes the per pin messages retained and only if the value changed
+		 * (statistics of the aggregation are always published retained, use
+		 * {@link WindowedAggregator.Builder#changeOnly(boolean)} to suppress
+		 * unchanged ones).
+		 */
+		public Builder retained(boolean retained) {
+			this.retained = retained;
+			return this;
+		}
+
+		/**
+		 * Publishes the latest value of all pins once per interval as retained
+		 * message on the state topic.
+		 */
+		public Builder snapshot(long interval, TimeUnit timeUnit, Format format) {
+			this.snapshotMillis = checkNotNull(timeUnit, "timeUnit must not be null").toMillis(interval);
+			this.snapshotFormat = checkNotNull(format, "format must not be null");
+			return this;
+		}
+
+		public DirectMqttBridge connect() throws MqttException, IOException {
+			checkState(perPinTopics || batchMillis > 0 || snapshotMillis > 0,
+					"Neither per pin topics, batching nor snapshots enabled");
+			DirectMqttBridge bridge = new DirectMqttBridge(this);
+			try {
+				bridge.connect(this);
+			} catch (MqttException | IOException e) {
+				try {
+					bridge.close();
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+				throw e;
+			}
+			return bridge;
+		}
+
+	}
+
+	private static final class Route {
+
+		private final Board board;
+		private final Action action;
+
+		private Route(Board board, Action action) {
+			this.board = board;
+			this.action = action;
+		}
+
+	}
+
+	private final class Board {
+
+		private final Link link;
+		private final Topics topics;
+		private final String[] analogTopics;
+		private final String[] digitalTopics;
+		private final String[][] statisticTopics;
+		private final EventListener eventListener = eventListener();
+		private final BitSet analogKnown = new BitSet();
+		private final BitSet digitalKnown = new BitSet();
+		private final BitSet digitalValues = new BitSet();
+		private int[] analogValues = new int[0];
+		private WindowedAggregator aggregator;
+		private PinBatcher batcher;
+		private PinBatcher snapshots;
+
+		private Board(Link link, Topics topics) {
+			this.link = link;
+			this.topics = topics;
+			this.analogTopics = readTopics(topics.getTopicPatternAnalogRead());
+			this.digitalTopics = readTopics(topics.getTopicPatternDigitalRead());
+			this.statisticTopics = aggregation == null ? null : statisticTopics(analogTopics, aggregation);
+		}
+
+		private void start(Builder builder) throws IOException {
+			if (perPinTopics && aggregation != null) {
+				aggregator = aggregation.start(this::publishStatistic, scheduler);
+			}
+			if (builder.batchMillis > 0) {
+				String batchTopic = topics.getTopic() + "batch";
+				batcher = PinBatcher.start(builder.batchMillis, MILLISECONDS, builder.batchFormat,
+						payload -> publish(batchTopic, payload), scheduler);
+			}
+			if (builder.snapshotMillis > 0) {
+				String stateTopic = topics.getTopic() + "state";
+				snapshots = PinBatcher.snapshots(builder.snapshotMillis, MILLISECONDS, builder.snapshotFormat,
+						payload -> publish(stateTopic, payload, true), scheduler);
+			}
+			link.addListener(eventListener);
+		}
+
+		private void execute(Action action, Match<Route> match, byte[] payload) throws IOException {
+			switch (action) {
+			case WRITE:
+				if (match.getType() == ANALOG) {
+					link.switchAnalogPin(analogPin(match.getPinNumber()), parseInt(payload));
+				} else {
+					link.switchDigitalPin(digitalPin(match.getPinNumber()), parseBoolean(payload));
+				}
+				break;
+			case CONTROL:
+				if (parseBoolean(payload)) {
+					link.startListening(match.getPin());
+				} else {
+					link.stopListening(match.getPin());
+				}
+				break;
+			default:
+				throw new IllegalStateException("Cannot handle " + action);
+			}
+		}
+
+		private EventListener eventListener() {
+			return new EventListenerAdapter() {
+
+				@Override
+				public void stateChanged(AnalogPinValueChangedEvent event) {
+					int pin = event.getPin().pinNum();
+					int value = event.getValue();
+					if (batcher != null) {
+						batcher.analog(pin, value);
+					}
+					if (snapshots != null) {
+						snapshots.analog(pin, value);
+					}
+					if (aggregator != null) {
+						aggregator.add(pin, value);
+					} else if (perPinTopics && (!retained || analogChanged(pin, value))) {
+						publish(analogTopic(pin), payload(value), retained);
+					}
+				}
+
+				@Override
+				public void stateChanged(DigitalPinValueChangedEvent event) {
+					int pin = event.getPin().pinNum();
+					boolean value = event.getValue();
+					if (batcher != null) {
+						batcher.digital(pin, value);
+					}
+					if (snapshots != null) {
+						snapshots.digital(pin, value);
+					}
+					if (perPinTopics && (!retained || digitalChanged(pin, value))) {
+						publish(pin < PRECOMPUTED_PINS ? digitalTopics[pin]
+								: String.format(topics.getTopicPatternDigitalRead(), pin), value ? TRUE : FALSE,
+								retained);
+					}
+				}
+
+			};
+		}
+
+		/**
+		 * Records the value in the last value table, returns <code>false</code>
+		 * if it is the value recorded before.
+		 */
+		private synchronized boolean analogChanged(int pin, int value) {
+			if (pin >= analogValues.length) {
+				analogValues = Arrays.copyOf(analogValues, pin + 1);
+			}
+			if (analogKnown.get(pin) && analogValues[pin] == value) {
+				return false;
+			}
+			analogKnown.set(pin);
+			analogValues[pin] = value;
+			return true;
+		}
+
+		private synchronized boolean digitalChanged(int pin, boolean value) {
+			if (digitalKnown.get(pin) && digitalValues.get(pin) == value) {
+				return false;
+			}
+			digitalKnown.set(pin);
+			digitalValues.set(pin, value);
+			return true;
+		}
+
+		private String analogTopic(int pin) {
+			return pin < PRECOMPUTED_PINS ? analogTopics[pin] : String.format(topics.getTopicPatternAnalogRead(), pin);
+		}
+
+		private void publishStatistic(int pin, Statistic statistic, long value) {
+			publish(pin < PRECOMPUTED_PINS ? statisticTopics[statistic.ordinal()][pin]
+					: statisticTopic(analogTopic(pin), statistic, aggregation), payload(value), retained);
+		}
+
+		private void close() throws IOException {
+			link.removeListener(eventListener);
+			if (aggregator != null) {
+				aggregator.close();
+			}
+			if (batcher != null) {
+				batcher.close();
+			}
+			if (snapshots != null) {
+				snapshots.close();
+			}
+		}
+
+	}
+
+	private final WindowedAggregator.Builder aggregation;
+	private final boolean perPinTopics;
+	private final boolean retained;
+	private final List<Board> boards;
+	private final TopicRouter<Route> router;
+	private final Transport transport;
+	private final AtomicLong dropped = new AtomicLong();
+	private ScheduledExecutorService scheduler;
+
+	public static Builder builder(Link link, Topics topics, MqttConnectionProperties properties) {
+		Builder builder = new Builder(link, topics);
+		builder.properties = checkNotNull(properties, "properties must not be null");
+		return builder;
+	}
+
+	/**
+	 * Returns a builder for a bridge to the passed broker running in this JVM.
+	 */
+	public static Builder builder(Link link, Topics topics, MqttBroker broker) {
+		Builder builder = new Builder(link, topics);
+		builder.broker = checkNotNull(broker, "broker must not be null");
+		return builder;
+	}
+
+	public static DirectMqttBridge connect(Link link, Topics topics, MqttConnectionProperties properties)
+			throws MqttException, IOException {
+		return builder(link, topics, properties).connect();
+	}
+
+	private DirectMqttBridge(Builder builder) throws MqttException {
+		this.aggregation = builder.aggregation;
+		this.perPinTopics = builder.perPinTopics;
+		this.retained = builder.retained;
+		this.boards = builder.links.entrySet().stream().map(e -> new Board(e.getKey(), e.getValue()))
+				.collect(toList());
+		TopicRouter.Builder<Route> routes = TopicRouter.builder();
+		for (Board board : boards) {
+			board.topics.routes(routes, action -> new Route(board, action));
+		}
+		this.router = routes.build();
+		this.transport = builder.broker == null ? new PahoTransport(builder.properties, this::messageArrived)
+				: new InProcessTransport(builder.broker, DirectMqttBridge.class.getName(), this::messageArrived);
+	}
+
+	private void connect(Builder builder) throws MqttException, IOException {
+		transport.connect(boards.stream().map(b -> b.topics.getTopic() + "#").toArray(String[]::new));
+		if ((perPinTopics && aggregation != null) || builder.batchMillis > 0 || builder.snapshotMillis > 0) {
+			scheduler = newSingleThreadScheduledExecutor(newThreadFactory("ardulink-mqtt-bridge"));
+		}
+		for (Board board : boards) {
+			board.start(builder);
+		}
+		logger.info("Bridging {} to {}", builder.links.keySet(), transport);
+	}
+
+	private static String[] readTopics(String format) {
+		String[] topics = new String[PRECOMPUTED_PINS];
+		for (int pin = 0; pin < topics.length; pin++) {
+			topics[pin] = String.format(format, pin);
+		}
+		return topics;
+	}
+
+	private static String[][] statisticTopics(String[] analogTopics, WindowedAggregator.Builder aggregation) {
+		String[][] topics = new String[Statistic.values().length][];
+		for (Statistic statistic : aggregation.getStatistics()) {
+			topics[statistic.ordinal()] = new String[analogTopics.length];
+			for (int pin = 0; pin < analogTopics.length; pin++) {
+				topics[statistic.ordinal()][pin] = statisticTopic(analogTopics[pin], statistic, aggregation);
+			}
+		}
+		return topics;
+	}
+
+	private static String statisticTopic(String analogTopic, Statistic statistic,
+			WindowedAggregator.Builder aggregation) {
+		return aggregation.getStatistics().size() == 1 ? analogTopic : analogTopic + "/" + statistic.getSuffix();
+	}
+
+	private static byte[][] analogValues() {
+		byte[][] values = new byte[PRECOMPUTED_ANALOG_VALUES][];
+		for (int value = 0; value < values.length; value++) {
+			values[value] = String.valueOf(value).getBytes(US_ASCII);
+		}
+		return values;
+	}
+
+	private static byte[] payload(long value) {
+		return value >= 0 && value < PRECOMPUTED_ANALOG_VALUES ? ANALOG_VALUES[(int) value]
+				: String.valueOf(value).getBytes(US_ASCII);
+	}
+
+	private void publish(String topic, byte[] payload) {
+		publish(topic, payload, false);
+	}
+
+	private void publish(String topic, byte[] payload, boolean retained) {
+		try {
+			transport.publish(topic, payload, retained);
+		} catch (MqttException | RuntimeException e) {
+			dropped.incrementAndGet();
+			logger.debug("Could not publish to {}", topic, e);
+		}
+	}
+
+	private void messageArrived(String topic, byte[] payload) {
+		Optional<Match<Route>> match = router.resolve(topic);
+		if (match.isPresent()) {
+			Route route = match.get().getAction();
+			try {
+				route.board.execute(route.action, match.get(), payload);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Error handling message on {}", topic, e);
+			}
+		}
+	}
+
+	/**
+	 * Same semantic as {@link Integer#parseInt(String)} (for ASCII digits) without
+	 * creating a String.
+	 */
+	static int parseInt(byte[] payload) {
+		boolean negative = payload.length > 0 && payload[0] == '-';
+		int start = payload.length > 0 && (negative || payload[0] == '+') ? 1 : 0;
+		if (start == payload.length) {
+			throw notANumber(payload);
+		}
+		// accumulating negatively like Integer#parseInt so that MIN_VALUE fits
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int value = 0;
+		for (int i = start; i < payload.length; i++) {
+			int digit = payload[i] - '0';
+			if (digit < 0 || digit > 9 || value < limit / 10) {
+				throw notANumber(payload);
+			}
+			value *= 10;
+			if (value < limit + digit) {
+				throw notANumber(payload);
+			}
+			value -= digit;
+		}
+		return negative ? value : -value;
+	}
+
+	private static NumberFormatException notANumber(byte[] payload) {
+		return new NumberFormatException(new String(payload, US_ASCII) + " is not a number");
+	}
+
+	/**
+	 * Same semantic as {@link Boolean#parseBoolean(String)}.
+	 */
+	private static boolean parseBoolean(byte[] payload) {
+		if (payload.length != TRUE.length) {
+			return false;
+		}
+		for (int i = 0; i < payload.length; i++) {
+			if ((payload[i] | 0x20) != TRUE[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public boolean isConnected() {
+		return transport.isConnected();
+	}
+
+	/**
+	 * Returns the number of events that could not be published (e.g. because
+	 * the client was disconnected or too many messages were in flight).
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Board board : boards) {
+			board.close();
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		transport.close();
+	}
+
+}
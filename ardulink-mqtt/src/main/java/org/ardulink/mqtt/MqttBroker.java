@@ -24,6 +24,8 @@ import static io.moquette.broker.config.IConfig.PERSISTENCE_ENABLED_PROPERTY_NAM
 import static io.moquette.broker.config.IConfig.PORT_PROPERTY_NAME;
 import static io.moquette.broker.config.IConfig.SSL_PORT_PROPERTY_NAME;
 import static io.moquette.broker.config.IConfig.WEB_SOCKET_PORT_PROPERTY_NAME;
+import static io.netty.handler.codec.mqtt.MqttQoS.AT_LEAST_ONCE;
+import static io.netty.handler.codec.mqtt.MqttQoS.AT_MOST_ONCE;
 import static org.ardulink.util.Throwables.propagate;
 
 import java.io.Closeable;
@@ -32,11 +34,20 @@ import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import io.moquette.broker.Server;
 import io.moquette.broker.config.IConfig;
 import io.moquette.broker.config.MemoryConfig;
 import io.moquette.broker.security.IAuthenticator;
+import io.moquette.interception.AbstractInterceptHandler;
+import io.moquette.interception.InterceptHandler;
+import io.moquette.interception.messages.InterceptPublishMessage;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -106,6 +117,9 @@ public class MqttBroker implements Closeable {
 
 	}
 
+	// the JDK references loggers weakly, the level would get lost without this
+	private static final Logger postOfficeLogger = Logger.getLogger("io.moquette.broker.PostOffice");
+
 	private final Server broker;
 	private final IConfig config;
 
@@ -135,6 +149,82 @@ public class MqttBroker implements Closeable {
 		return Integer.parseInt(config.getProperty(PORT_PROPERTY_NAME));
 	}
 
+	/**
+	 * Publishes the message (qos 0, not retained) to the subscribers from within
+	 * the broker, no client connection is involved.
+	 */
+	public void internalPublish(String topic, byte[] payload, String clientId) {
+		internalPublish(topic, payload, false, clientId);
+	}
+
+	/**
+	 * Same as {@link #internalPublish(String, byte[], String)} but optionally
+	 * retaining the message. Retained messages are published using qos 1, the
+	 * broker does not retain messages published using qos 0.
+	 */
+	public void internalPublish(String topic, byte[] payload, boolean retained, String clientId) {
+		broker.internalPublish(MqttMessageBuilders.publish().topicName(topic).retained(retained)
+				.qos(retained ? AT_LEAST_ONCE : AT_MOST_ONCE).payload(Unpooled.wrappedBuffer(payload)).build(),
+				clientId);
+	}
+
+	/**
+	 * Moquette logs each internal publish at INFO, raises its level to WARNING
+	 * unless configured otherwise. This affects java.util.logging (which slf4j
+	 * logs to using the slf4j-jdk14 binding shipped), other logging backends have
+	 * to be configured for logger <code>io.moquette.broker.PostOffice</code>.
+	 */
+	static void quietInternalPublishLogging() {
+		if (postOfficeLogger.getLevel() == null) {
+			postOfficeLogger.setLevel(Level.WARNING);
+		}
+	}
+
+	/**
+	 * Passes topic and payload of each message published by the clients to the
+	 * passed listener (messages published using
+	 * {@link #internalPublish(String, byte[], String)} are not passed). The
+	 * listener is called by the broker's interceptor thread in the order the
+	 * messages were published, until the returned {@link Closeable} is closed.
+	 */
+	public Closeable interceptPublishes(String id, BiConsumer<String, byte[]> listener) {
+		InterceptHandler handler = new PublishInterceptor(id, listener);
+		broker.addInterceptHandler(handler);
+		return () -> broker.removeInterceptHandler(handler);
+	}
+
+	static final class PublishInterceptor extends AbstractInterceptHandler {
+
+		private final String id;
+		private final BiConsumer<String, byte[]> listener;
+
+		PublishInterceptor(String id, BiConsumer<String, byte[]> listener) {
+			this.id = id;
+			this.listener = listener;
+		}
+
+		@Override
+		public String getID() {
+			return id;
+		}
+
+		@Override
+		public void onPublish(InterceptPublishMessage message) {
+			try {
+				listener.accept(message.getTopicName(), ByteBufUtil.getBytes(message.getPayload()));
+			} finally {
+				// each handler gets its own duplicate of the payload and has to release it
+				super.onPublish(message);
+			}
+		}
+
+		@Override
+		public void onSessionLoopError(Throwable error) {
+			// nothing to do, the session is handled by the broker
+		}
+
+	}
+
 	@Override
 	public void close() {
 		broker.stopServer();
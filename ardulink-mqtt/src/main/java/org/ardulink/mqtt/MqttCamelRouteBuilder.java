@@ -82,10 +82,25 @@ public class MqttCamelRouteBuilder {
 			return this;
 		}
 
+		public String getName() {
+			return name;
+		}
+
+		public String getBrokerUrl() {
+			return String.format("%s://%s:%s", (ssl ? "ssl" : "tcp"), brokerHost, getBrokerPort());
+		}
+
+		public String getUser() {
+			return user;
+		}
+
+		public byte[] getPass() {
+			return pass;
+		}
+
 		public String buildCamelURI(Topics topics) {
 			StringBuilder sb = new StringBuilder();
-			sb = sb.append(String.format("paho:%s#?brokerUrl=%s://%s:%s", topics.getTopic(), (ssl ? "ssl" : "tcp"),
-					brokerHost, getBrokerPort()));
+			sb = sb.append(String.format("paho:%s#?brokerUrl=%s", topics.getTopic(), getBrokerUrl()));
 			sb = hasAuth() ? sb.append(String.format("&userName=%s&password=%s", user, new String(pass))) : sb;
 			sb = sb.append("&automaticReconnect=false");
 			sb = sb.append("&maxInflight=65535");
@@ -94,7 +109,7 @@ public class MqttCamelRouteBuilder {
 			return sb.toString();
 		}
 
-		private boolean hasAuth() {
+		public boolean hasAuth() {
 			return user != null && pass != null;
 		}
 
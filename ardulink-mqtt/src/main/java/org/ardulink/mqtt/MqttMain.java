@@ -17,12 +17,24 @@ limitations under the License.
 package org.ardulink.mqtt;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.mqtt.MqttBroker.builder;
+import static org.ardulink.mqtt.MqttCamelRouteBuilder.CompactStrategy.USE_LATEST;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.AVERAGE;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.LAST;
 import static org.ardulink.util.Preconditions.checkState;
 import static org.ardulink.util.Strings.nullOrEmpty;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.IntStream;
@@ -33,8 +45,11 @@ import org.apache.camel.Route;
 import org.apache.camel.ServiceStatus;
 import org.apache.camel.impl.DefaultCamelContext;
 import org.apache.camel.spi.RouteController;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
 import org.ardulink.mqtt.MqttBroker.Builder;
 import org.ardulink.mqtt.MqttCamelRouteBuilder.MqttConnectionProperties;
+import org.ardulink.mqtt.WindowedAggregator.Statistic;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
@@ -52,6 +67,10 @@ public class MqttMain {
 
 	private CamelContext context;
 
+	private final List<Link> links = new ArrayList<>();
+
+	private DirectMqttBridge bridge;
+
 	private MqttBroker standaloneServer;
 
 	private CamelContext createCamelContext(Topics topics) throws Exception {
@@ -64,13 +83,88 @@ public class MqttMain {
 			rb = rb.compact(args.compactStrategy, args.throttleMillis, MILLISECONDS);
 		}
 		String ardulink = appendListenTo(args.connection);
-		MqttConnectionProperties mqtt = appendAuth(
-				new MqttConnectionProperties().name("mqttMain").brokerHost(args.brokerHost).ssl(args.ssl))
-				.brokerPort(args.brokerPort);
-		rb.fromSomethingToMqtt(ardulink, mqtt).andReverse();
+		rb.fromSomethingToMqtt(ardulink, mqttConnectionProperties()).andReverse();
 		return context;
 	}
 
+	private DirectMqttBridge createDirectBridge(Map<String, Topics> boards) throws Exception {
+		DirectMqttBridge.Builder builder = null;
+		for (Entry<String, Topics> board : boards.entrySet()) {
+			Link link = openLink(board.getKey());
+			Topics topics = board.getValue();
+			builder = builder != null ? builder.link(link, topics)
+					: args.inProcess ? DirectMqttBridge.builder(link, topics, standaloneServer)
+							: DirectMqttBridge.builder(link, topics, mqttConnectionProperties());
+		}
+		builder = builder.aggregation(aggregation()).perPinTopics(!args.batchOnly).retained(args.retained);
+		if (args.batchMillis > 0) {
+			builder = builder.batch(args.batchMillis, MILLISECONDS, args.batchFormat);
+		}
+		if (args.snapshotMillis > 0) {
+			builder = builder.snapshot(args.snapshotMillis, MILLISECONDS, args.batchFormat);
+		}
+		return builder.connect();
+	}
+
+	private Link openLink(String connection) throws IOException {
+		Link link = Links.getLink(connection);
+		links.add(link);
+		for (int pin : args.analogs) {
+			link.startListening(analogPin(pin));
+		}
+		for (int pin : args.digitals) {
+			link.startListening(digitalPin(pin));
+		}
+		return link;
+	}
+
+	/**
+	 * Returns the topics per connection URI: the one passed by -connection or
+	 * those passed by -board, each one below its own topic prefix.
+	 */
+	private Map<String, Topics> boards() {
+		Map<String, Topics> boards = new LinkedHashMap<>();
+		if (args.boards.isEmpty()) {
+			boards.put(args.connection, topics(args.brokerTopic));
+		}
+		for (String board : args.boards) {
+			String[] prefixAndUri = board.split("=", 2);
+			checkState(prefixAndUri.length == 2 && !prefixAndUri[0].isEmpty(),
+					"Board %s not in format topicPrefix=connectionUri", board);
+			checkState(boards.put(prefixAndUri[1], topics(args.brokerTopic + prefixAndUri[0] + "/")) == null,
+					"Connection %s passed more than once", prefixAndUri[1]);
+		}
+		return boards;
+	}
+
+	private Topics topics(String brokerTopic) {
+		Topics topics = args.separateTopics ? Topics.withSeparateReadWriteTopics(brokerTopic)
+				: Topics.basedOn(brokerTopic);
+		return args.control ? topics.withControlChannelEnabled() : topics;
+	}
+
+	private WindowedAggregator.Builder aggregation() {
+		if (args.throttleMillis <= 0 || (args.compactStrategy == null && nullOrEmpty(args.statistics))) {
+			return null;
+		}
+		WindowedAggregator.Builder builder = WindowedAggregator.builder().statistics(statistics())
+				.changeOnly(args.changedOnly || args.retained);
+		return args.stepMillis > 0 ? builder.sliding(args.throttleMillis, args.stepMillis, MILLISECONDS)
+				: builder.tumbling(args.throttleMillis, MILLISECONDS);
+	}
+
+	private List<Statistic> statistics() {
+		if (nullOrEmpty(args.statistics)) {
+			return singletonList(args.compactStrategy == USE_LATEST ? LAST : AVERAGE);
+		}
+		return Stream.of(args.statistics.split(",")).map(String::trim).map(Statistic::valueOf).collect(toList());
+	}
+
+	private MqttConnectionProperties mqttConnectionProperties() {
+		return appendAuth(new MqttConnectionProperties().name("mqttMain").brokerHost(args.brokerHost).ssl(args.ssl))
+				.brokerPort(args.brokerPort);
+	}
+
 	private String appendListenTo(String connection) {
 		String listenTo = listenTo();
 		return listenTo.isEmpty() ? connection : connection + separator(connection) + "listenTo=" + listenTo;
@@ -137,10 +231,13 @@ public class MqttMain {
 	}
 
 	public void connectToMqttBroker() throws Exception {
-		Topics topics = args.separateTopics ? Topics.withSeparateReadWriteTopics(args.brokerTopic)
-				: Topics.basedOn(args.brokerTopic);
-		this.context = createCamelContext(args.control ? topics.withControlChannelEnabled() : topics);
-		this.context.start();
+		checkState(!args.inProcess || standaloneServer != null, "In-process bridging requires a standalone server");
+		if (args.direct || args.inProcess || !args.boards.isEmpty()) {
+			this.bridge = createDirectBridge(boards());
+		} else {
+			this.context = createCamelContext(topics(args.brokerTopic));
+			this.context.start();
+		}
 	}
 
 	protected Builder configureBroker(Builder builder) {
@@ -148,6 +245,9 @@ public class MqttMain {
 	}
 
 	public boolean isConnected() {
+		if (bridge != null) {
+			return bridge.isConnected();
+		}
 		RouteController routeController = context.getRouteController();
 		return context.getRoutes().stream() //
 				.map(Route::getId) //
@@ -157,6 +257,12 @@ public class MqttMain {
 
 	public void close() throws IOException {
 		Optional.ofNullable(this.context).ifPresent(CamelContext::stop);
+		if (this.bridge != null) {
+			this.bridge.close();
+		}
+		for (Link link : this.links) {
+			link.close();
+		}
 		Optional.ofNullable(this.standaloneServer).ifPresent(MqttBroker::stop);
 	}
 
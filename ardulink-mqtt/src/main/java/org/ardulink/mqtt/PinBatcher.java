@@ -0,0 +1,257 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.mqtt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Collects the latest value of each pin changed within an interval and hands
+ * all of them as one payload to a publisher once per interval (intervals
+ * without changes are skipped). The payload is a map of the pin names (as in
+ * the topics, e.g. "A3", "D2") to their values plus the key "ts" holding the
+ * time of the batch in milliseconds since the epoch, analog pins first, both
+ * ordered by pin number:
+ *
+ * <ul>
+ * <li>{@link Format#JSON}: <code>{"ts":1700000000000,"A3":512,"D2":true}</code></li>
+ * <li>{@link Format#CBOR}: the same map encoded as CBOR (RFC 8949), text string
+ * keys, integer and boolean values</li>
+ * </ul>
+ *
+ * Started as {@link #snapshots(long, TimeUnit, Format, Consumer, ScheduledExecutorService)
+ * snapshots} each payload contains the latest value of all pins ever changed
+ * instead of those changed within the interval.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class PinBatcher implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(PinBatcher.class);
+
+	public enum Format {
+		JSON, CBOR
+	}
+
+	private final Format format;
+	private final Consumer<byte[]> publisher;
+	private final ScheduledExecutorService executor;
+	private final boolean ownsExecutor;
+	private final ScheduledFuture<?> task;
+	private final boolean snapshots;
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+	private int[] analogValues = new int[0];
+	private boolean[] digitalValues = new boolean[0];
+	private final BitSet analogChanged = new BitSet();
+	private final BitSet digitalChanged = new BitSet();
+
+	public static PinBatcher start(long interval, TimeUnit timeUnit, Format format, Consumer<byte[]> publisher) {
+		return new PinBatcher(interval, timeUnit, format, publisher, null, false);
+	}
+
+	/**
+	 * Same as {@link #start(long, TimeUnit, Format, Consumer)} but flushing on
+	 * the passed (shared) executor, which is not shut down when the batcher is
+	 * closed.
+	 */
+	public static PinBatcher start(long interval, TimeUnit timeUnit, Format format, Consumer<byte[]> publisher,
+			ScheduledExecutorService executor) {
+		return new PinBatcher(interval, timeUnit, format, publisher,
+				checkNotNull(executor, "executor must not be null"), false);
+	}
+
+	/**
+	 * Publishes the latest value of all pins (not only the changed ones) once
+	 * per interval, flushing on the passed (shared) executor.
+	 */
+	public static PinBatcher snapshots(long interval, TimeUnit timeUnit, Format format, Consumer<byte[]> publisher,
+			ScheduledExecutorService executor) {
+		return new PinBatcher(interval, timeUnit, format, publisher,
+				checkNotNull(executor, "executor must not be null"), true);
+	}
+
+	private PinBatcher(long interval, TimeUnit timeUnit, Format format, Consumer<byte[]> publisher,
+			ScheduledExecutorService executor, boolean snapshots) {
+		checkArgument(interval > 0, "interval must be greater than zero but was %s", interval);
+		this.format = checkNotNull(format, "format must not be null");
+		this.publisher = checkNotNull(publisher, "publisher must not be null");
+		this.snapshots = snapshots;
+		long millis = checkNotNull(timeUnit, "timeUnit must not be null").toMillis(interval);
+		this.ownsExecutor = executor == null;
+		this.executor = ownsExecutor ? newSingleThreadScheduledExecutor(newThreadFactory("ardulink-mqtt-batcher"))
+				: executor;
+		this.task = this.executor.scheduleAtFixedRate(this::flush, millis, millis, MILLISECONDS);
+	}
+
+	public synchronized void analog(int pin, int value) {
+		if (pin >= analogValues.length) {
+			analogValues = Arrays.copyOf(analogValues, pin + 1);
+		}
+		analogValues[pin] = value;
+		analogChanged.set(pin);
+	}
+
+	public synchronized void digital(int pin, boolean value) {
+		if (pin >= digitalValues.length) {
+			digitalValues = Arrays.copyOf(digitalValues, pin + 1);
+		}
+		digitalValues[pin] = value;
+		digitalChanged.set(pin);
+	}
+
+	/**
+	 * Publishes the pins changed since the last call (all pins if publishing
+	 * snapshots), called every interval.
+	 */
+	void flush() {
+		byte[] payload;
+		synchronized (this) {
+			int changed = analogChanged.cardinality() + digitalChanged.cardinality();
+			if (changed == 0) {
+				return;
+			}
+			buffer.reset();
+			if (format == Format.JSON) {
+				encodeJson(System.currentTimeMillis());
+			} else {
+				encodeCbor(changed, System.currentTimeMillis());
+			}
+			if (!snapshots) {
+				analogChanged.clear();
+				digitalChanged.clear();
+			}
+			payload = buffer.toByteArray();
+		}
+		try {
+			publisher.accept(payload);
+		} catch (RuntimeException e) {
+			logger.warn("Error publishing batch", e);
+		}
+	}
+
+	private void encodeJson(long timestamp) {
+		ascii("{\"ts\":").ascii(String.valueOf(timestamp));
+		for (int pin = analogChanged.nextSetBit(0); pin >= 0; pin = analogChanged.nextSetBit(pin + 1)) {
+			ascii(",\"A").ascii(String.valueOf(pin)).ascii("\":").ascii(String.valueOf(analogValues[pin]));
+		}
+		for (int pin = digitalChanged.nextSetBit(0); pin >= 0; pin = digitalChanged.nextSetBit(pin + 1)) {
+			ascii(",\"D").ascii(String.valueOf(pin)).ascii("\":").ascii(String.valueOf(digitalValues[pin]));
+		}
+		buffer.write('}');
+	}
+
+	private PinBatcher ascii(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			buffer.write(string.charAt(i));
+		}
+		return this;
+	}
+
+	private void encodeCbor(int changed, long timestamp) {
+		cborHead(5, changed + 1);
+		cborText("ts");
+		cborHead(0, timestamp);
+		for (int pin = analogChanged.nextSetBit(0); pin >= 0; pin = analogChanged.nextSetBit(pin + 1)) {
+			cborText("A" + pin);
+			int value = analogValues[pin];
+			if (value >= 0) {
+				cborHead(0, value);
+			} else {
+				cborHead(1, -1L - value);
+			}
+		}
+		for (int pin = digitalChanged.nextSetBit(0); pin >= 0; pin = digitalChanged.nextSetBit(pin + 1)) {
+			cborText("D" + pin);
+			buffer.write(digitalValues[pin] ? 0xf5 : 0xf4);
+		}
+	}
+
+	private void cborText(String text) {
+		byte[] bytes = text.getBytes(US_ASCII);
+		cborHead(3, bytes.length);
+		buffer.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Writes the initial byte(s) of a CBOR data item of the passed major type
+	 * with the passed (unsigned) argument.
+	 */
+	private void cborHead(int majorType, long argument) {
+		int type = majorType << 5;
+		if (argument < 24) {
+			buffer.write(type | (int) argument);
+		} else if (argument < 0x100) {
+			buffer.write(type | 24);
+			buffer.write((int) argument);
+		} else if (argument < 0x10000) {
+			buffer.write(type | 25);
+			bigEndian(argument, 2);
+		} else if (argument < 0x100000000L) {
+			buffer.write(type | 26);
+			bigEndian(argument, 4);
+		} else {
+			buffer.write(type | 27);
+			bigEndian(argument, 8);
+		}
+	}
+
+	private void bigEndian(long value, int bytes) {
+		for (int i = bytes - 1; i >= 0; i--) {
+			buffer.write((int) (value >>> (8 * i)));
+		}
+	}
+
+	/**
+	 * Stops the batcher publishing the pending changes one last time.
+	 */
+	@Override
+	public void close() {
+		task.cancel(false);
+		if (ownsExecutor) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+
+}
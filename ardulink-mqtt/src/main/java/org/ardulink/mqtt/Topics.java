@@ -17,10 +17,19 @@ limitations under the License.
 package org.ardulink.mqtt;
 
 import static java.lang.String.format;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.Pin.Type.DIGITAL;
+import static org.ardulink.mqtt.Topics.Action.CONTROL;
+import static org.ardulink.mqtt.Topics.Action.WRITE;
+import static org.ardulink.util.Preconditions.checkState;
 import static org.ardulink.util.Regex.regex;
 
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
+import org.ardulink.core.Pin.Type;
+import org.ardulink.core.topic.TopicRouter;
+
 /**
  * [ardulinktitle] [ardulinkversion]
  * 
@@ -31,6 +40,15 @@ import java.util.regex.Pattern;
  */
 public abstract class Topics {
 
+	/**
+	 * What to do with the pin of an inbound topic resolved by {@link #router()}.
+	 */
+	public enum Action {
+		WRITE, CONTROL
+	}
+
+	private static final String PIN_GROUP = "(\\w+)";
+
 	public static class DefaultTopics extends Topics {
 
 		private final String topic;
@@ -173,7 +191,41 @@ public abstract class Topics {
 	}
 
 	private static Pattern write(String format) {
-		return regex(format(format, "(\\w+)"));
+		return regex(format(format, PIN_GROUP));
+	}
+
+	/**
+	 * Returns a router resolving the write (and if enabled the control) topics
+	 * without regex matching. The patterns have to contain the pin number
+	 * group exactly once, everything else is matched literally.
+	 */
+	public TopicRouter<Action> router() {
+		return routes(TopicRouter.<Action>builder(), Function.identity()).build();
+	}
+
+	/**
+	 * Adds the routes of {@link #router()} to the passed builder mapping the
+	 * actions using the passed function, so the topics of several
+	 * {@link Topics} can be resolved by one router.
+	 */
+	public <T> TopicRouter.Builder<T> routes(TopicRouter.Builder<T> builder, Function<Action, T> actions) {
+		route(builder, getTopicPatternAnalogWrite(), ANALOG, actions.apply(WRITE));
+		route(builder, getTopicPatternDigitalWrite(), DIGITAL, actions.apply(WRITE));
+		if (getTopicPatternAnalogControl() != null) {
+			route(builder, getTopicPatternAnalogControl(), ANALOG, actions.apply(CONTROL));
+		}
+		if (getTopicPatternDigitalControl() != null) {
+			route(builder, getTopicPatternDigitalControl(), DIGITAL, actions.apply(CONTROL));
+		}
+		return builder;
+	}
+
+	private static <T> void route(TopicRouter.Builder<T> builder, Pattern pattern, Type type, T action) {
+		String regex = pattern.pattern();
+		int group = regex.indexOf(PIN_GROUP);
+		checkState(group >= 0 && regex.indexOf(PIN_GROUP, group + 1) < 0, "Pattern %s must contain %s exactly once",
+				regex, PIN_GROUP);
+		builder.route(regex.substring(0, group), type, regex.substring(group + PIN_GROUP.length()), action);
 	}
 
 	private static String read(String formatPattern) {
@@ -0,0 +1,326 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.mqtt;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.AVERAGE;
+import static org.ardulink.util.Preconditions.checkArgument;
+import static org.ardulink.util.Preconditions.checkNotNull;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Aggregates int values per key (e.g. the analog pin number) over time windows
+ * and emits the configured {@link Statistic}s of each window to a
+ * {@link Sink}. The accumulators are primitive: adding a value updates
+ * min/max/sum/count/last of the current pane, nothing is allocated.
+ *
+ * Tumbling windows consist of one pane. Sliding windows of length <i>window</i>
+ * emitted every <i>step</i> consist of <i>window / step</i> panes, each pane
+ * summarizing one step, so emitting combines the panes instead of keeping the
+ * values. Windows without values are not emitted. With <i>changeOnly</i>
+ * enabled, a statistic is only emitted if its value differs from the value
+ * emitted last for the key.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class WindowedAggregator implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(WindowedAggregator.class);
+
+	public enum Statistic {
+
+		MIN("min"), MAX("max"), AVERAGE("avg"), LAST("last"), COUNT("count");
+
+		private final String suffix;
+
+		Statistic(String suffix) {
+			this.suffix = suffix;
+		}
+
+		/**
+		 * Returns the topic suffix used when more than one statistic is published.
+		 */
+		public String getSuffix() {
+			return suffix;
+		}
+
+	}
+
+	public interface Sink {
+		void emit(int key, Statistic statistic, long value);
+	}
+
+	public static class Builder {
+
+		private long windowMillis;
+		private long stepMillis;
+		private List<Statistic> statistics = unmodifiableList(asList(AVERAGE));
+		private boolean changeOnly;
+
+		public Builder tumbling(long duration, TimeUnit timeUnit) {
+			return sliding(duration, duration, timeUnit);
+		}
+
+		public Builder sliding(long window, long step, TimeUnit timeUnit) {
+			checkArgument(step > 0, "step must be greater than zero but was %s", step);
+			checkArgument(window >= step && window % step == 0, "window (%s) must be a multiple of step (%s)", window,
+					step);
+			this.windowMillis = checkNotNull(timeUnit, "timeUnit must not be null").toMillis(window);
+			this.stepMillis = timeUnit.toMillis(step);
+			return this;
+		}
+
+		public Builder statistics(Statistic... statistics) {
+			return statistics(asList(statistics));
+		}
+
+		public Builder statistics(List<Statistic> statistics) {
+			checkArgument(!statistics.isEmpty(), "statistics must not be empty");
+			this.statistics = unmodifiableList(new ArrayList<>(statistics));
+			return this;
+		}
+
+		public Builder changeOnly(boolean changeOnly) {
+			this.changeOnly = changeOnly;
+			return this;
+		}
+
+		public List<Statistic> getStatistics() {
+			return statistics;
+		}
+
+		/**
+		 * Starts emitting the windows to the passed sink until the aggregator is
+		 * closed.
+		 */
+		public WindowedAggregator start(Sink sink) {
+			checkArgument(stepMillis > 0, "neither tumbling nor sliding window configured");
+			return new WindowedAggregator(this, sink, null);
+		}
+
+		/**
+		 * Same as {@link #start(Sink)} but emitting on the passed (shared)
+		 * executor, which is not shut down when the aggregator is closed.
+		 */
+		public WindowedAggregator start(Sink sink, ScheduledExecutorService executor) {
+			checkArgument(stepMillis > 0, "neither tumbling nor sliding window configured");
+			return new WindowedAggregator(this, sink, checkNotNull(executor, "executor must not be null"));
+		}
+
+	}
+
+	private final class Accumulator {
+
+		private final int key;
+		private final long[] min = new long[panes];
+		private final long[] max = new long[panes];
+		private final long[] sum = new long[panes];
+		private final long[] last = new long[panes];
+		private final int[] count = new int[panes];
+		private final long[] emitted = new long[statistics.length];
+		private boolean hasEmitted;
+		private int current;
+
+		private Accumulator(int key) {
+			this.key = key;
+		}
+
+		private synchronized void add(int value) {
+			int pane = current;
+			if (count[pane] == 0) {
+				min[pane] = value;
+				max[pane] = value;
+			} else {
+				min[pane] = Math.min(min[pane], value);
+				max[pane] = Math.max(max[pane], value);
+			}
+			sum[pane] += value;
+			last[pane] = value;
+			count[pane]++;
+		}
+
+		/**
+		 * Combines the panes into the passed arrays (one value and emit flag per
+		 * statistic), moves on to the next pane and returns whether anything is to
+		 * be emitted.
+		 */
+		private synchronized boolean roll(long[] values, boolean[] emit) {
+			long wMin = Long.MAX_VALUE;
+			long wMax = Long.MIN_VALUE;
+			long wSum = 0;
+			long wLast = 0;
+			long wCount = 0;
+			for (int i = 1; i <= panes; i++) {
+				int pane = (current + i) % panes;
+				if (count[pane] > 0) {
+					wMin = Math.min(wMin, min[pane]);
+					wMax = Math.max(wMax, max[pane]);
+					wSum += sum[pane];
+					wLast = last[pane];
+					wCount += count[pane];
+				}
+			}
+			current = (current + 1) % panes;
+			sum[current] = 0;
+			count[current] = 0;
+			if (wCount == 0) {
+				return false;
+			}
+			boolean any = false;
+			for (int i = 0; i < statistics.length; i++) {
+				values[i] = value(statistics[i], wMin, wMax, wSum, wLast, wCount);
+				emit[i] = !changeOnly || !hasEmitted || values[i] != emitted[i];
+				emitted[i] = values[i];
+				any |= emit[i];
+			}
+			hasEmitted = true;
+			return any;
+		}
+
+	}
+
+	private final Statistic[] statistics;
+	private final boolean changeOnly;
+	private final int panes;
+	private final Sink sink;
+	private final ScheduledExecutorService executor;
+	private final boolean ownsExecutor;
+	private final ScheduledFuture<?> task;
+	private final Object accumulatorsLock = new Object();
+	private volatile Accumulator[] accumulators = new Accumulator[0];
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	private WindowedAggregator(Builder builder, Sink sink, ScheduledExecutorService executor) {
+		this.statistics = builder.statistics.toArray(new Statistic[0]);
+		this.changeOnly = builder.changeOnly;
+		this.panes = (int) (builder.windowMillis / builder.stepMillis);
+		this.sink = checkNotNull(sink, "sink must not be null");
+		this.ownsExecutor = executor == null;
+		this.executor = ownsExecutor ? newSingleThreadScheduledExecutor(newThreadFactory("ardulink-mqtt-aggregator"))
+				: executor;
+		this.task = this.executor.scheduleAtFixedRate(this::emit, builder.stepMillis, builder.stepMillis, MILLISECONDS);
+	}
+
+	public void add(int key, int value) {
+		accumulator(key).add(value);
+	}
+
+	private Accumulator accumulator(int key) {
+		Accumulator[] accumulators = this.accumulators;
+		if (key >= 0 && key < accumulators.length && accumulators[key] != null) {
+			return accumulators[key];
+		}
+		checkArgument(key >= 0, "key must not be negative but was %s", key);
+		synchronized (accumulatorsLock) {
+			accumulators = this.accumulators;
+			if (key >= accumulators.length) {
+				accumulators = Arrays.copyOf(accumulators, key + 1);
+			} else if (accumulators[key] != null) {
+				return accumulators[key];
+			} else {
+				accumulators = accumulators.clone();
+			}
+			Accumulator accumulator = new Accumulator(key);
+			accumulators[key] = accumulator;
+			this.accumulators = accumulators;
+			return accumulator;
+		}
+	}
+
+	private static long value(Statistic statistic, long min, long max, long sum, long last, long count) {
+		switch (statistic) {
+		case MIN:
+			return min;
+		case MAX:
+			return max;
+		case AVERAGE:
+			return Math.round((double) sum / count);
+		case LAST:
+			return last;
+		case COUNT:
+			return count;
+		default:
+			throw new IllegalStateException("Cannot handle " + statistic);
+		}
+	}
+
+	/**
+	 * Emits the current windows and moves on to the next pane, called every step.
+	 */
+	void emit() {
+		long[] values = new long[statistics.length];
+		boolean[] emit = new boolean[statistics.length];
+		for (Accumulator accumulator : accumulators) {
+			if (accumulator != null && accumulator.roll(values, emit)) {
+				for (int i = 0; i < statistics.length; i++) {
+					if (emit[i]) {
+						emit(accumulator.key, statistics[i], values[i]);
+					}
+				}
+			}
+		}
+	}
+
+	private void emit(int key, Statistic statistic, long value) {
+		try {
+			sink.emit(key, statistic, value);
+		} catch (RuntimeException e) {
+			logger.warn("Error emitting {} of {}", statistic, key, e);
+		}
+	}
+
+	/**
+	 * Stops the aggregator emitting the values of the current windows one last
+	 * time.
+	 */
+	@Override
+	public void close() {
+		task.cancel(false);
+		if (ownsExecutor) {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		emit();
+	}
+
+}
@@ -2,27 +2,22 @@ package org.ardulink.mqtt.camel;
 
 import static org.ardulink.core.Pin.Type.ANALOG;
 import static org.ardulink.core.Pin.Type.DIGITAL;
-import static org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessors.parse;
-import static org.ardulink.util.Iterables.getFirst;
 import static org.ardulink.util.Preconditions.checkNotNull;
 import static org.ardulink.util.Preconditions.checkState;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.Processor;
+import org.ardulink.camel.PinValue;
 import org.ardulink.core.Pin;
-import org.ardulink.core.messages.api.FromDeviceMessage;
-import org.ardulink.core.messages.api.FromDeviceMessagePinStateChanged;
-import org.ardulink.core.proto.impl.ArdulinkProtocol2.ALPByteStreamProcessor;
 import org.ardulink.mqtt.Topics;
 
 /**
- * Translates from protocol into the topic using the patterns from
- * {@link Topics}.
+ * Translates {@link PinValue}s into the topic using the patterns from
+ * {@link Topics}. ALP strings are converted to {@link PinValue}s by camel.
  */
 public final class FromArdulinkProtocol implements Processor {
 
-	private final ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
 	private final Topics topics;
 	private String headerNameForTopic = "topic";
 
@@ -42,14 +37,12 @@ public final class FromArdulinkProtocol implements Processor {
 	@Override
 	public void process(Exchange exchange) throws Exception {
 		Message in = exchange.getIn();
-		FromDeviceMessage deviceMessage = getFirst(
-				parse(byteStreamProcessor, byteStreamProcessor.toBytes(in.getBody(String.class))))
-				.orElseThrow(() -> new IllegalStateException("Cannot handle " + in));
-		checkState(deviceMessage instanceof FromDeviceMessagePinStateChanged, "Cannot handle %s", in);
-		handle(in, (FromDeviceMessagePinStateChanged) deviceMessage);
+		PinValue pinValue = in.getBody(PinValue.class);
+		checkState(pinValue != null, "Cannot handle %s", in);
+		handle(in, pinValue);
 	}
 
-	private void handle(Message in, FromDeviceMessagePinStateChanged event) {
+	private void handle(Message in, PinValue event) {
 		Pin pin = event.getPin();
 		String topic = String.format(patternFor(pin), pin.pinNum());
 		in.setHeader(headerNameForTopic, topic);
@@ -68,8 +61,7 @@ public final class FromArdulinkProtocol implements Processor {
 
 	@Override
 	public String toString() {
-		return "FromArdulinkProtocol [protocol=" + byteStreamProcessor + ", topics=" + topics + ", headerNameForTopic="
-				+ headerNameForTopic + "]";
+		return "FromArdulinkProtocol [topics=" + topics + ", headerNameForTopic=" + headerNameForTopic + "]";
 	}
 
 }
\ No newline at end of file
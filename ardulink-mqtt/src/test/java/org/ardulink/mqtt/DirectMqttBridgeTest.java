@@ -0,0 +1,256 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.mqtt;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.function.UnaryOperator.identity;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.events.DefaultAnalogPinValueChangedEvent.analogPinValueChanged;
+import static org.ardulink.core.events.DefaultDigitalPinValueChangedEvent.digitalPinValueChanged;
+import static org.ardulink.mqtt.PinBatcher.Format.JSON;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.MAX;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.MIN;
+import static org.ardulink.testsupport.mock.TestSupport.fireEvent;
+import static org.ardulink.testsupport.mock.TestSupport.getMock;
+import static org.ardulink.testsupport.mock.TestSupport.uniqueMockUri;
+import static org.ardulink.util.ServerSockets.freePort;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.mqtt.MqttCamelRouteBuilder.MqttConnectionProperties;
+import org.ardulink.mqtt.util.AnotherMqttClient;
+import org.ardulink.mqtt.util.Message;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+@Timeout(value = 30, unit = SECONDS)
+class DirectMqttBridgeTest {
+
+	private static final String TOPIC = "any/topic-" + System.currentTimeMillis() + "/";
+
+	MqttBroker broker;
+	Link link;
+	DirectMqttBridge bridge;
+	AnotherMqttClient mqttClient;
+
+	@BeforeEach
+	void setup() throws IOException {
+		broker = MqttBroker.builder().port(freePort()).startBroker();
+		link = Links.getLink(uniqueMockUri());
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		if (mqttClient != null) {
+			mqttClient.close();
+		}
+		if (bridge != null) {
+			bridge.close();
+		}
+		link.close();
+		broker.close();
+	}
+
+	@Test
+	void publishesPinEventsOnTheReadTopics() throws Exception {
+		bridge(Topics.withSeparateReadWriteTopics(TOPIC));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 123));
+		fireEvent(link, analogPinValueChanged(analogPin(200), 4567));
+		fireEvent(link, digitalPinValueChanged(digitalPin(3), true));
+		mqttClient.awaitMessages(m -> assertThat(m).containsExactly( //
+				new Message(TOPIC + "A2/value/get", "123"), //
+				new Message(TOPIC + "A200/value/get", "4567"), //
+				new Message(TOPIC + "D3/value/get", "true")));
+		assertThat(bridge.getDropped()).isZero();
+	}
+
+	@Test
+	void publishesStatisticsOfAnalogValuesWhenAggregating() throws Exception {
+		bridge(Topics.basedOn(TOPIC),
+				b -> b.aggregation(WindowedAggregator.builder().tumbling(1, HOURS).statistics(MIN, MAX)));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 10));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 30));
+		fireEvent(link, digitalPinValueChanged(digitalPin(3), true));
+		bridge.close();
+		mqttClient.awaitMessages(m -> assertThat(m).containsExactly( //
+				new Message(TOPIC + "D3", "true"), //
+				new Message(TOPIC + "A2/min", "10"), //
+				new Message(TOPIC + "A2/max", "30")));
+	}
+
+	@Test
+	void publishesChangedPinsAsOneBatchMessage() throws Exception {
+		bridge(Topics.basedOn(TOPIC), b -> b.batch(1, HOURS, JSON).perPinTopics(false));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 10));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 30));
+		fireEvent(link, digitalPinValueChanged(digitalPin(3), true));
+		bridge.close();
+		mqttClient.awaitMessages(m -> assertThat(m).singleElement().satisfies(message -> {
+			assertThat(message.getTopic()).isEqualTo(TOPIC + "batch");
+			assertThat(message.getMessage()).matches("\\{\"ts\":\\d+,\"A2\":30,\"D3\":true\\}");
+		}));
+	}
+
+	@Test
+	void publishesChangedValuesRetainedAndSnapshotsOfAllPins() throws Exception {
+		bridge(Topics.basedOn(TOPIC), b -> b.retained(true).snapshot(1, HOURS, JSON));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 10));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 10));
+		fireEvent(link, digitalPinValueChanged(digitalPin(3), true));
+		fireEvent(link, digitalPinValueChanged(digitalPin(3), true));
+		fireEvent(link, analogPinValueChanged(analogPin(2), 11));
+		mqttClient.awaitMessages(m -> assertThat(m).containsExactly( //
+				new Message(TOPIC + "A2", "10"), //
+				new Message(TOPIC + "D3", "true"), //
+				new Message(TOPIC + "A2", "11")));
+		// publishes the last snapshot
+		bridge.close();
+
+		try (AnotherMqttClient lateClient = AnotherMqttClient.builder().host(broker.getHost()).port(broker.getPort())
+				.topic(TOPIC).clientId("lateClient").connect()) {
+			lateClient.awaitMessages(m -> {
+				assertThat(m).extracting(Message::getTopic).containsExactlyInAnyOrder(TOPIC + "A2", TOPIC + "D3",
+						TOPIC + "state");
+				assertThat(m).contains(new Message(TOPIC + "A2", "11"), new Message(TOPIC + "D3", "true"));
+				assertThat(m).filteredOn(message -> message.getTopic().equals(TOPIC + "state"))
+						.extracting(Message::getMessage).singleElement().asString()
+						.matches("\\{\"ts\":\\d+,\"A2\":11,\"D3\":true\\}");
+			});
+		}
+	}
+
+	@Test
+	void switchesPinsReceivedOnTheWriteTopics() throws Exception {
+		bridge(Topics.withSeparateReadWriteTopics(TOPIC));
+		mqttClient.switchPin(analogPin(2), 123);
+		mqttClient.switchPin(analogPin(2), -5);
+		mqttClient.switchPin(digitalPin(3), true);
+		verify(getMock(link), timeout(5_000)).switchAnalogPin(analogPin(2), 123);
+		verify(getMock(link), timeout(5_000)).switchAnalogPin(analogPin(2), -5);
+		verify(getMock(link), timeout(5_000)).switchDigitalPin(digitalPin(3), true);
+	}
+
+	@Test
+	void analogValuesAreParsedLikeIntegerParseInt() {
+		assertThat(DirectMqttBridge.parseInt("0".getBytes())).isZero();
+		assertThat(DirectMqttBridge.parseInt("+5".getBytes())).isEqualTo(5);
+		assertThat(DirectMqttBridge.parseInt("-5".getBytes())).isEqualTo(-5);
+		assertThat(DirectMqttBridge.parseInt("2147483647".getBytes())).isEqualTo(Integer.MAX_VALUE);
+		assertThat(DirectMqttBridge.parseInt("-2147483648".getBytes())).isEqualTo(Integer.MIN_VALUE);
+		for (String invalid : new String[] { "", "-", "+", "--1", "1-", "1.5", " 1", "2147483648", "-2147483649",
+				"99999999999" }) {
+			assertThatThrownBy(() -> DirectMqttBridge.parseInt(invalid.getBytes()))
+					.isInstanceOf(NumberFormatException.class);
+		}
+	}
+
+	@Test
+	void invalidAnalogValuesAreIgnored() throws Exception {
+		bridge(Topics.withSeparateReadWriteTopics(TOPIC));
+		mqttClient.switchPin(analogPin(2), "2147483648");
+		mqttClient.switchPin(analogPin(2), "-");
+		mqttClient.switchPin(analogPin(2), 7);
+		verify(getMock(link), timeout(5_000)).switchAnalogPin(analogPin(2), 7);
+		verify(getMock(link), never()).switchAnalogPin(analogPin(2), Integer.MIN_VALUE);
+		verify(getMock(link), never()).switchAnalogPin(analogPin(2), 0);
+	}
+
+	@Test
+	void startsAndStopsListeningWhenControlChannelIsEnabled() throws Exception {
+		bridge(Topics.basedOn(TOPIC).withControlChannelEnabled());
+		mqttClient.startListenig(digitalPin(5));
+		verify(getMock(link), timeout(5_000)).startListening(digitalPin(5));
+		mqttClient.stopListenig(digitalPin(5));
+		verify(getMock(link), timeout(5_000)).stopListening(digitalPin(5));
+	}
+
+	@Test
+	void bridgesWithinTheProcessToAnEmbeddedBroker() throws Exception {
+		Topics topics = Topics.basedOn(TOPIC);
+		bridge = DirectMqttBridge.builder(link, topics, broker).connect();
+		connectClient(topics);
+		fireEvent(link, analogPinValueChanged(analogPin(2), 123));
+		fireEvent(link, digitalPinValueChanged(digitalPin(3), true));
+		mqttClient.awaitMessages(m -> assertThat(m).containsExactly( //
+				new Message(TOPIC + "A2", "123"), //
+				new Message(TOPIC + "D3", "true")));
+		mqttClient.switchPin(analogPin(4), 56);
+		verify(getMock(link), timeout(5_000)).switchAnalogPin(analogPin(4), 56);
+		assertThat(bridge.isConnected()).isTrue();
+		assertThat(Logger.getLogger("io.moquette.broker.PostOffice").getLevel())
+				.isEqualTo(Level.WARNING);
+	}
+
+	@Test
+	void bridgesSeveralLinksEachOneBelowItsOwnTopic() throws Exception {
+		try (Link link2 = Links.getLink(uniqueMockUri())) {
+			bridge(Topics.basedOn(TOPIC + "board1/"), b -> b.link(link2, Topics.basedOn(TOPIC + "board2/")));
+			fireEvent(link, analogPinValueChanged(analogPin(2), 123));
+			fireEvent(link2, analogPinValueChanged(analogPin(2), 456));
+			mqttClient.awaitMessages(m -> assertThat(m).containsExactly( //
+					new Message(TOPIC + "board1/A2", "123"), //
+					new Message(TOPIC + "board2/A2", "456")));
+
+			try (AnotherMqttClient board2Client = AnotherMqttClient.builder().host(broker.getHost())
+					.port(broker.getPort()).topic(TOPIC + "board2/").clientId("board2Client").connect()) {
+				board2Client.switchPin(digitalPin(3), true);
+			}
+			verify(getMock(link2), timeout(5_000)).switchDigitalPin(digitalPin(3), true);
+			verify(getMock(link), never()).switchDigitalPin(digitalPin(3), true);
+		}
+	}
+
+	private void bridge(Topics topics) throws MqttException, IOException {
+		bridge(topics, identity());
+	}
+
+	private void bridge(Topics topics, UnaryOperator<DirectMqttBridge.Builder> configurer)
+			throws MqttException, IOException {
+		bridge = configurer.apply(DirectMqttBridge.builder(link, topics,
+				new MqttConnectionProperties().brokerHost(broker.getHost()).brokerPort(broker.getPort()))).connect();
+		connectClient(topics);
+	}
+
+	private void connectClient(Topics topics) {
+		mqttClient = AnotherMqttClient.builder().host(broker.getHost()).port(broker.getPort()).topic(TOPIC)
+				.appendValueSet(topics.getTopicPatternAnalogRead().endsWith("/value/get")).connect();
+	}
+
+}
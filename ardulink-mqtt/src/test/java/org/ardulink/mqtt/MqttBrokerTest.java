@@ -0,0 +1,79 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+
+package org.ardulink.mqtt;
+
+import static io.netty.handler.codec.mqtt.MqttMessageType.PUBLISH;
+import static io.netty.handler.codec.mqtt.MqttQoS.AT_MOST_ONCE;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ardulink.mqtt.MqttBroker.PublishInterceptor;
+import org.junit.jupiter.api.Test;
+
+import io.moquette.interception.messages.InterceptPublishMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class MqttBrokerTest {
+
+	@Test
+	void interceptedPayloadsAreReleased() {
+		ByteBuf payload = Unpooled.copiedBuffer("42", US_ASCII);
+		List<String> received = new ArrayList<>();
+		PublishInterceptor interceptor = new PublishInterceptor("test",
+				(topic, bytes) -> received.add(topic + "=" + new String(bytes, US_ASCII)));
+		// the broker passes each interceptor a retained duplicate
+		interceptor.onPublish(interceptPublishMessage("some/topic", payload.retainedDuplicate()));
+		assertThat(received).containsExactly("some/topic=42");
+		assertThat(payload.refCnt()).isEqualTo(1);
+	}
+
+	@Test
+	void interceptedPayloadsAreReleasedIfTheListenerFails() {
+		ByteBuf payload = Unpooled.copiedBuffer("42", US_ASCII);
+		PublishInterceptor interceptor = new PublishInterceptor("test", (topic, bytes) -> {
+			throw new IllegalStateException("listener failed");
+		});
+		assertThatThrownBy(
+				() -> interceptor.onPublish(interceptPublishMessage("some/topic", payload.retainedDuplicate())))
+				.isInstanceOf(IllegalStateException.class);
+		assertThat(payload.refCnt()).isEqualTo(1);
+	}
+
+	private static InterceptPublishMessage interceptPublishMessage(String topic, ByteBuf payload) {
+		return new InterceptPublishMessage(new MqttPublishMessage(
+				new MqttFixedHeader(PUBLISH, false, AT_MOST_ONCE, false, 0), new MqttPublishVariableHeader(topic, 0),
+				payload), "client", "user");
+	}
+
+}
@@ -0,0 +1,115 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.mqtt;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.mqtt.PinBatcher.Format.CBOR;
+import static org.ardulink.mqtt.PinBatcher.Format.JSON;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class PinBatcherTest {
+
+	List<byte[]> published = new CopyOnWriteArrayList<>();
+	PinBatcher sut;
+
+	@AfterEach
+	void tearDown() {
+		sut.close();
+	}
+
+	@Test
+	void jsonContainsTheLatestValueOfEachChangedPin() {
+		// the interval never elapses, batches are flushed manually
+		sut = PinBatcher.start(1, HOURS, JSON, published::add);
+		sut.analog(3, 1);
+		sut.digital(2, false);
+		sut.analog(3, 512);
+		sut.analog(0, -7);
+		sut.digital(2, true);
+		sut.flush();
+		sut.flush();
+		sut.digital(2, false);
+		sut.flush();
+		assertThat(published).hasSize(2);
+		assertThat(new String(published.get(0), US_ASCII)).matches("\\{\"ts\":\\d+,\"A0\":-7,\"A3\":512,\"D2\":true\\}");
+		assertThat(new String(published.get(1), US_ASCII)).matches("\\{\"ts\":\\d+,\"D2\":false\\}");
+	}
+
+	@Test
+	void cborIsAMapOfPinNamesToValues() {
+		sut = PinBatcher.start(1, HOURS, CBOR, published::add);
+		sut.analog(3, 512);
+		sut.analog(1, -7);
+		sut.digital(13, true);
+		sut.flush();
+		byte[] payload = published.get(0);
+		// map(4), "ts", uint64 timestamp
+		assertThat(Arrays.copyOfRange(payload, 0, 5)).containsExactly(0xa4, 0x62, 't', 's', 0x1b);
+		assertThat(Arrays.copyOfRange(payload, 13, payload.length)).containsExactly( //
+				0x62, 'A', '1', 0x26, // "A1": -7
+				0x62, 'A', '3', 0x19, 0x02, 0x00, // "A3": 512
+				0x63, 'D', '1', '3', 0xf5 // "D13": true
+		);
+	}
+
+	@Test
+	void snapshotsContainTheLatestValueOfAllPins() {
+		ScheduledExecutorService executor = newSingleThreadScheduledExecutor();
+		try {
+			sut = PinBatcher.snapshots(1, HOURS, JSON, published::add, executor);
+			sut.flush();
+			sut.analog(3, 1);
+			sut.digital(2, true);
+			sut.flush();
+			sut.analog(3, 2);
+			sut.flush();
+			assertThat(published).hasSize(2);
+			assertThat(new String(published.get(0), US_ASCII)).matches("\\{\"ts\":\\d+,\"A3\":1,\"D2\":true\\}");
+			assertThat(new String(published.get(1), US_ASCII)).matches("\\{\"ts\":\\d+,\"A3\":2,\"D2\":true\\}");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void batchesArePublishedEveryInterval() {
+		sut = PinBatcher.start(20, MILLISECONDS, JSON, published::add);
+		sut.analog(1, 1);
+		await().until(() -> !published.isEmpty());
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+
+ */
+package org.ardulink.mqtt;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.AVERAGE;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.COUNT;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.LAST;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.MAX;
+import static org.ardulink.mqtt.WindowedAggregator.Statistic.MIN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.ardulink.mqtt.WindowedAggregator.Sink;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+class WindowedAggregatorTest {
+
+	List<String> emitted = new CopyOnWriteArrayList<>();
+	Sink sink = (key, statistic, value) -> emitted.add(key + ":" + statistic + "=" + value);
+	WindowedAggregator sut;
+
+	@AfterEach
+	void tearDown() {
+		sut.close();
+	}
+
+	@Test
+	void tumblingWindowEmitsAllStatisticsPerKeyAndResets() {
+		// the window never completes by time, windows are emitted manually
+		sut = WindowedAggregator.builder().tumbling(1, HOURS).statistics(MIN, MAX, AVERAGE, LAST, COUNT).start(sink);
+		sut.add(3, 10);
+		sut.add(3, 30);
+		sut.add(3, 21);
+		sut.add(5, 7);
+		sut.emit();
+		assertThat(emitted).containsExactly("3:MIN=10", "3:MAX=30", "3:AVERAGE=20", "3:LAST=21", "3:COUNT=3",
+				"5:MIN=7", "5:MAX=7", "5:AVERAGE=7", "5:LAST=7", "5:COUNT=1");
+
+		emitted.clear();
+		sut.add(5, 1);
+		sut.emit();
+		assertThat(emitted).containsExactly("5:MIN=1", "5:MAX=1", "5:AVERAGE=1", "5:LAST=1", "5:COUNT=1");
+	}
+
+	@Test
+	void slidingWindowCombinesTheLastPanes() {
+		sut = WindowedAggregator.builder().sliding(3, 1, HOURS).statistics(MIN, MAX, COUNT).start(sink);
+		sut.add(0, 5);
+		sut.emit();
+		sut.add(0, 9);
+		sut.emit();
+		sut.emit();
+		assertThat(emitted).containsExactly("0:MIN=5", "0:MAX=5", "0:COUNT=1", //
+				"0:MIN=5", "0:MAX=9", "0:COUNT=2", //
+				"0:MIN=5", "0:MAX=9", "0:COUNT=2");
+
+		emitted.clear();
+		sut.emit();
+		assertThat(emitted).containsExactly("0:MIN=9", "0:MAX=9", "0:COUNT=1");
+		emitted.clear();
+		sut.emit();
+		assertThat(emitted).isEmpty();
+	}
+
+	@Test
+	void changeOnlyEmitsStatisticsDifferingFromThePreviouslyEmittedValue() {
+		sut = WindowedAggregator.builder().tumbling(1, HOURS).statistics(MAX, LAST).changeOnly(true).start(sink);
+		sut.add(1, 4);
+		sut.emit();
+		sut.add(1, 4);
+		sut.emit();
+		sut.add(1, 2);
+		sut.emit();
+		assertThat(emitted).containsExactly("1:MAX=4", "1:LAST=4", "1:MAX=2", "1:LAST=2");
+	}
+
+	@Test
+	void windowsAreEmittedEveryStep() {
+		sut = WindowedAggregator.builder().tumbling(20, MILLISECONDS).start(sink);
+		sut.add(2, 1);
+		sut.add(2, 2);
+		await().until(() -> emitted.contains("2:AVERAGE=2"));
+	}
+
+}
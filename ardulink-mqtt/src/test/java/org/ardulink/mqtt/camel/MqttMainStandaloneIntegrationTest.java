@@ -67,6 +67,18 @@ class MqttMainStandaloneIntegrationTest {
 		assertDoesNotThrow(this::runMainAndConnectToBroker);
 	}
 
+	@Test
+	void clientCanConnectToNewlyStartedBrokerBridgingDirectly() throws Exception {
+		args.direct = true;
+		assertDoesNotThrow(this::runMainAndConnectToBroker);
+	}
+
+	@Test
+	void clientCanConnectToNewlyStartedBrokerBridgingInProcess() throws Exception {
+		args.inProcess = true;
+		assertDoesNotThrow(this::runMainAndConnectToBroker);
+	}
+
 	@Test
 	void clientCanConnectUsingCredentialsToNewlyStartedBroker() throws Exception {
 		givenBrokerCredentials(someUser, somePassword);
@@ -0,0 +1,115 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.ardulink.connection.proxy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+import org.ardulink.util.UnixDomainSockets;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * What a proxy client is connected by: a TCP {@link Socket} or a Unix domain
+ * socket's {@link SocketChannel}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public interface ClientChannel extends Closeable {
+
+	InputStream getInputStream() throws IOException;
+
+	OutputStream getOutputStream() throws IOException;
+
+	Object getRemoteAddress();
+
+	static ClientChannel of(Socket socket) {
+		return new ClientChannel() {
+
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return socket.getInputStream();
+			}
+
+			@Override
+			public OutputStream getOutputStream() throws IOException {
+				return socket.getOutputStream();
+			}
+
+			@Override
+			public Object getRemoteAddress() {
+				return socket.getRemoteSocketAddress();
+			}
+
+			@Override
+			public void close() throws IOException {
+				socket.close();
+			}
+
+			@Override
+			public String toString() {
+				return socket.toString();
+			}
+
+		};
+	}
+
+	static ClientChannel of(SocketChannel channel) {
+		InputStream inputStream = UnixDomainSockets.inputStream(channel);
+		OutputStream outputStream = UnixDomainSockets.outputStream(channel);
+		return new ClientChannel() {
+
+			@Override
+			public InputStream getInputStream() {
+				return inputStream;
+			}
+
+			@Override
+			public OutputStream getOutputStream() {
+				return outputStream;
+			}
+
+			@Override
+			public Object getRemoteAddress() {
+				try {
+					return channel.getRemoteAddress();
+				} catch (IOException e) {
+					return null;
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				channel.close();
+			}
+
+			@Override
+			public String toString() {
+				return channel.toString();
+			}
+
+		};
+	}
+
+}
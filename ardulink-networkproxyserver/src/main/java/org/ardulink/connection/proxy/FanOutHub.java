@@ -0,0 +1,326 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.connection.proxy;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.Pin.digitalPin;
+import static org.ardulink.core.Pin.Type.ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.CUSTOM_EVENT;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.RPLY;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_DIGITAL;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_ANALOG;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_DIGITAL;
+import static org.ardulink.util.Primitives.tryParseAs;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.Pin;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.CustomEvent;
+import org.ardulink.core.events.CustomListener;
+import org.ardulink.core.events.DigitalPinValueChangedEvent;
+import org.ardulink.core.events.EventListener;
+import org.ardulink.core.events.RplyEvent;
+import org.ardulink.core.events.RplyListener;
+import org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Shares one {@link ConnectionBasedLink} between many proxy clients. The data
+ * coming from the device gets parsed once by the link, the resulting pin events
+ * are encoded once and sent to those clients that did start listening on that
+ * pin. Start/stop listening requests of the clients are reference counted so
+ * the device only gets told to stop listening if no client is interested any
+ * longer. Messages from clients are written to the device as a whole (so they
+ * never interleave), message ids are translated so that replies get routed back
+ * to the client that sent the message.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class FanOutHub {
+
+	private static final Logger logger = LoggerFactory.getLogger(FanOutHub.class);
+
+	private static final String ALP_PREFIX = "alp://";
+	private static final String ID_PARAM = "?id=";
+	private static final String NEWLINE = "\n";
+
+	private static final Map<ConnectionBasedLink, FanOutHub> hubs = new HashMap<>();
+
+	public interface Client {
+		void send(byte[] bytes) throws IOException;
+	}
+
+	private static class PendingReply {
+
+		private final Client client;
+		private final long clientsId;
+
+		private PendingReply(Client client, long clientsId) {
+			this.client = client;
+			this.clientsId = clientsId;
+		}
+
+	}
+
+	private final ConnectionBasedLink link;
+	private final Set<Client> clients = new CopyOnWriteArraySet<>();
+	private final Map<Pin, Set<Client>> subscribers = new ConcurrentHashMap<>();
+	private final Map<Pin, byte[]> lastValues = new ConcurrentHashMap<>();
+	private final Map<Long, PendingReply> pendingReplies = new ConcurrentHashMap<>();
+	private long nextId;
+
+	private final EventListener eventListener = new EventListener() {
+
+		@Override
+		public void stateChanged(AnalogPinValueChangedEvent event) {
+			Pin pin = event.getPin();
+			publish(pin, alpProtocolMessage(ANALOG_PIN_READ).forPin(pin.pinNum()).withValue(event.getValue()));
+		}
+
+		@Override
+		public void stateChanged(DigitalPinValueChangedEvent event) {
+			Pin pin = event.getPin();
+			publish(pin, alpProtocolMessage(DIGITAL_PIN_READ).forPin(pin.pinNum()).withState(event.getValue()));
+		}
+
+	};
+
+	private final RplyListener rplyListener = this::replyReceived;
+
+	private final CustomListener customListener = new CustomListener() {
+		@Override
+		public void customEventReceived(CustomEvent event) {
+			byte[] bytes = toBytes(alpProtocolMessage(CUSTOM_EVENT).withValue(event.getMessage()));
+			clients.forEach(c -> send(c, bytes));
+		}
+	};
+
+	private FanOutHub(ConnectionBasedLink link) throws IOException {
+		this.link = link;
+		link.addListener(eventListener);
+		link.addRplyListener(rplyListener);
+		link.addCustomListener(customListener);
+	}
+
+	/**
+	 * Registers the client at the hub of the passed link. If there is no hub for
+	 * this link yet it gets created.
+	 *
+	 * @param link   the link to share
+	 * @param client the client to register
+	 * @return the hub of the link
+	 * @throws IOException if the hub could not be registered at the link
+	 */
+	public static FanOutHub join(ConnectionBasedLink link, Client client) throws IOException {
+		synchronized (hubs) {
+			FanOutHub hub = hubs.get(link);
+			if (hub == null) {
+				hub = new FanOutHub(link);
+				hubs.put(link, hub);
+			}
+			hub.clients.add(client);
+			return hub;
+		}
+	}
+
+	/**
+	 * Deregisters the client. Pins only this client was listening to get stopped.
+	 * If this was the last client, the hub deregisters from the link.
+	 *
+	 * @param client the client to deregister
+	 * @throws IOException on errors writing to the device
+	 */
+	public void leave(Client client) throws IOException {
+		synchronized (hubs) {
+			clients.remove(client);
+			pendingReplies.values().removeIf(p -> p.client == client);
+			synchronized (this) {
+				for (Entry<Pin, Set<Client>> entry : subscribers.entrySet()) {
+					if (entry.getValue().remove(client) && entry.getValue().isEmpty()) {
+						stopListening(entry.getKey());
+					}
+				}
+			}
+			if (clients.isEmpty()) {
+				link.removeListener(eventListener);
+				link.removeRplyListener(rplyListener);
+				link.removeCustomListener(customListener);
+				hubs.remove(link);
+			}
+		}
+	}
+
+	/**
+	 * Handles a message (without the trailing newline) a client wants to send to
+	 * the device. A message having an id that is no number gets forwarded without
+	 * the id (so the client will not get a reply).
+	 *
+	 * @param client  the client sending the message
+	 * @param message the message
+	 * @throws IOException on errors writing to the device
+	 */
+	public void toDevice(Client client, String message) throws IOException {
+		int idIdx = message.lastIndexOf(ID_PARAM);
+		Long clientsId = idIdx < 0 ? null : clientsId(client, message.substring(idIdx + ID_PARAM.length()));
+		String withoutId = idIdx < 0 ? message : message.substring(0, idIdx);
+
+		ALPProtocolKey key = protocolKey(withoutId).orElse(null);
+		Pin pin = isStartListening(key) || isStopListening(key) ? pin(key, withoutId) : null;
+		synchronized (this) {
+			if (!isAlreadyHandled(client, key, pin)) {
+				forward(client, withoutId, clientsId);
+				return;
+			}
+		}
+		replyLocally(client, clientsId);
+		if (isStartListening(key)) {
+			Optional.ofNullable(lastValues.get(pin)).ifPresent(b -> send(client, b));
+		}
+	}
+
+	private static Long clientsId(Client client, String id) {
+		Long clientsId = tryParseAs(Long.class, id).orElse(null);
+		if (clientsId == null) {
+			logger.warn("Invalid id {} received from client {}, forwarding the message without id", id, client);
+		}
+		return clientsId;
+	}
+
+	private boolean isAlreadyHandled(Client client, ALPProtocolKey key, Pin pin) {
+		if (isStartListening(key)) {
+			Set<Client> subscribers = subscribersOf(pin);
+			boolean alreadyListening = !subscribers.isEmpty();
+			subscribers.add(client);
+			return alreadyListening;
+		}
+		if (isStopListening(key)) {
+			Set<Client> subscribers = subscribersOf(pin);
+			subscribers.remove(client);
+			if (subscribers.isEmpty()) {
+				lastValues.remove(pin);
+				return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private synchronized void forward(Client client, String message, Long clientsId) throws IOException {
+		if (clientsId == null) {
+			write(message);
+		} else {
+			long id = ++nextId;
+			pendingReplies.put(id, new PendingReply(client, clientsId));
+			write(message + ID_PARAM + id);
+		}
+	}
+
+	private synchronized void stopListening(Pin pin) throws IOException {
+		lastValues.remove(pin);
+		ALPProtocolKey key = pin.is(ANALOG) ? STOP_LISTENING_ANALOG : STOP_LISTENING_DIGITAL;
+		write(alpProtocolMessage(key).forPin(pin.pinNum()).withoutValue());
+	}
+
+	private void write(String message) throws IOException {
+		link.getConnection().write(toBytes(message));
+	}
+
+	private void replyLocally(Client client, Long clientsId) {
+		if (clientsId != null) {
+			send(client, toBytes(alpProtocolMessage(RPLY).withValue("ok") + ID_PARAM + clientsId));
+		}
+	}
+
+	private void replyReceived(RplyEvent event) {
+		PendingReply pending = pendingReplies.remove(event.getId());
+		if (pending != null) {
+			StringBuilder sb = new StringBuilder(alpProtocolMessage(RPLY).withValue(event.isOk() ? "ok" : "ko"))
+					.append(ID_PARAM).append(pending.clientsId);
+			event.getParameters().forEach((k, v) -> sb.append('&').append(k).append('=').append(v));
+			send(pending.client, toBytes(sb.toString()));
+		}
+	}
+
+	private void publish(Pin pin, String message) {
+		byte[] bytes = toBytes(message);
+		Set<Client> listening = subscribers.get(pin);
+		if (listening != null && !listening.isEmpty()) {
+			lastValues.put(pin, bytes);
+			listening.forEach(c -> send(c, bytes));
+		}
+	}
+
+	private void send(Client client, byte[] bytes) {
+		try {
+			client.send(bytes);
+		} catch (IOException e) {
+			logger.error("Error sending to client {}", client, e);
+		}
+	}
+
+	private Set<Client> subscribersOf(Pin pin) {
+		return subscribers.computeIfAbsent(pin, p -> new CopyOnWriteArraySet<>());
+	}
+
+	private static Optional<ALPProtocolKey> protocolKey(String message) {
+		if (!message.startsWith(ALP_PREFIX)) {
+			return Optional.empty();
+		}
+		int slashIdx = message.indexOf('/', ALP_PREFIX.length());
+		return slashIdx < 0 ? Optional.empty()
+				: ALPProtocolKey.fromString(message.substring(ALP_PREFIX.length(), slashIdx));
+	}
+
+	private static boolean isStartListening(ALPProtocolKey key) {
+		return key == START_LISTENING_ANALOG || key == START_LISTENING_DIGITAL;
+	}
+
+	private static boolean isStopListening(ALPProtocolKey key) {
+		return key == STOP_LISTENING_ANALOG || key == STOP_LISTENING_DIGITAL;
+	}
+
+	private static Pin pin(ALPProtocolKey key, String message) {
+		int pinNumber = Integer.parseInt(message.substring(message.lastIndexOf('/') + 1));
+		return key == START_LISTENING_ANALOG || key == STOP_LISTENING_ANALOG ? analogPin(pinNumber)
+				: digitalPin(pinNumber);
+	}
+
+	private static byte[] toBytes(String message) {
+		return (message + NEWLINE).getBytes(US_ASCII);
+	}
+
+}
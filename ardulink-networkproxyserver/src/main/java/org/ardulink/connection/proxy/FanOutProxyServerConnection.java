@@ -0,0 +1,121 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.connection.proxy;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.ardulink.connection.proxy.NetworkProxyServerConnection.getRoot;
+import static org.ardulink.util.Preconditions.checkState;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import org.ardulink.connection.proxy.FanOutHub.Client;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.Link;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Proxy connection that does not pipe the raw bytes between the client and the
+ * device but shares the link with all other clients connected to the same link
+ * using a {@link FanOutHub}.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class FanOutProxyServerConnection implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(FanOutProxyServerConnection.class);
+
+	private final ClientChannel channel;
+
+	public FanOutProxyServerConnection(Socket socket) {
+		this(ClientChannel.of(socket));
+	}
+
+	public FanOutProxyServerConnection(ClientChannel channel) {
+		this.channel = channel;
+	}
+
+	@Override
+	public void run() {
+		Link link = null;
+		try {
+			Handshaker handshaker = handshaker(channel.getInputStream(), channel.getOutputStream());
+			link = handshaker.doHandshake();
+			OutputStream osRemote = handshaker.outputStream(channel.getOutputStream());
+			InputStream isRemote = handshaker.inputStream(channel.getInputStream());
+			Link root = getRoot(link);
+			checkState(root instanceof ConnectionBasedLink, "Only %s links supported for now (got %s)",
+					ConnectionBasedLink.class.getName(), root.getClass());
+
+			Client client = bytes -> {
+				synchronized (osRemote) {
+					osRemote.write(bytes);
+					osRemote.flush();
+				}
+			};
+			FanOutHub hub = FanOutHub.join((ConnectionBasedLink) root, client);
+			try {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(isRemote, US_ASCII));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					hub.toDevice(client, line);
+				}
+			} finally {
+				hub.leave(client);
+			}
+		} catch (Exception e) {
+			logger.error("Error while doing proxy", e);
+		} finally {
+			logger.info("{} connection closed.", channel.getRemoteAddress());
+			close(link);
+			close(channel);
+		}
+	}
+
+	protected Handshaker handshaker(InputStream isRemote, OutputStream osRemote) {
+		return new Handshaker(isRemote, osRemote);
+	}
+
+	private void close(ClientChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.error("Error closing {}", channel, e);
+		}
+	}
+
+	private void close(Link link) {
+		if (link != null) {
+			try {
+				link.close();
+			} catch (Exception e) {
+				logger.error("Error disconnecting link {}", link, e);
+			}
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ limitations under the License.
 package org.ardulink.connection.proxy;
 
 import static org.ardulink.connection.proxy.NetworkProxyMessages.CONNECT_CMD;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.CONNECT_FRAMED_CMD;
 import static org.ardulink.connection.proxy.NetworkProxyMessages.GET_PORT_LIST_CMD;
 import static org.ardulink.connection.proxy.NetworkProxyMessages.KO;
 import static org.ardulink.connection.proxy.NetworkProxyMessages.NUMBER_OF_PORTS;
@@ -30,6 +31,8 @@ import java.io.PrintWriter;
 import java.util.Scanner;
 import java.util.regex.Pattern;
 
+import org.ardulink.core.FramedInputStream;
+import org.ardulink.core.FramedOutputStream;
 import org.ardulink.core.Link;
 import org.ardulink.core.convenience.Links;
 import org.ardulink.core.linkmanager.LinkManager.Configurer;
@@ -52,6 +55,9 @@ public class Handshaker {
 	private final Scanner scanner;
 	private final PrintWriter printWriter;
 	private final Configurer configurer;
+	private boolean framed;
+	private boolean deflate;
+	private long coalesceMillis;
 
 	public Handshaker(InputStream inputStream, OutputStream outputStream) {
 		this(inputStream, outputStream, Links.getDefaultConfigurer());
@@ -80,7 +86,7 @@ public class Handshaker {
 				currentThread.interrupt();
 			} else if (GET_PORT_LIST_CMD.equals(input)) {
 				handleGetPortList();
-			} else if (CONNECT_CMD.equals(input)) {
+			} else if (CONNECT_CMD.equals(input) || CONNECT_FRAMED_CMD.equals(input)) {
 				try {
 					// Ardulink-1 only did support Proxy to connect to serial links. So the
 					// handshake contains serial specific attributes. We should deprecate
@@ -90,6 +96,11 @@ public class Handshaker {
 					// ardulink://serial?baudrate=9600)
 					configurer.getAttribute("port").setValue(read());
 					configurer.getAttribute("baudrate").setValue(Integer.valueOf(read()));
+					framed = CONNECT_FRAMED_CMD.equals(input);
+					if (framed) {
+						deflate = Boolean.parseBoolean(read());
+						coalesceMillis = Long.parseLong(read());
+					}
 					Link link = newLink(configurer);
 					write(OK);
 					return link;
@@ -103,6 +114,29 @@ public class Handshaker {
 		throw new IllegalStateException("No more data but no " + CONNECT_CMD + " received");
 	}
 
+	/**
+	 * Returns the stream to read the client's data from after the handshake.
+	 * 
+	 * @param inputStream the socket's InputStream
+	 * @return a {@link FramedInputStream} if the client did request framing,
+	 *         otherwise the passed InputStream
+	 */
+	public InputStream inputStream(InputStream inputStream) {
+		return framed ? new FramedInputStream(inputStream, deflate) : inputStream;
+	}
+
+	/**
+	 * Returns the stream to send data to the client after the handshake. Data
+	 * written should be flushed.
+	 * 
+	 * @param outputStream the socket's OutputStream
+	 * @return a {@link FramedOutputStream} if the client did request framing,
+	 *         otherwise the passed OutputStream
+	 */
+	public OutputStream outputStream(OutputStream outputStream) {
+		return framed ? new FramedOutputStream(outputStream, deflate, coalesceMillis) : outputStream;
+	}
+
 	private void handleGetPortList() throws IOException {
 		Object[] portList = getPortList();
 		if (portList == null) {
@@ -37,5 +37,6 @@ public final class NetworkProxyMessages {
 	public static final String STOP_SERVER_CMD = PREFIX + "stop_server";
 	public static final String GET_PORT_LIST_CMD = PREFIX + "get_port_list";
 	public static final String CONNECT_CMD = PREFIX + "connect";
+	public static final String CONNECT_FRAMED_CMD = PREFIX + "connect_framed";
 
 }
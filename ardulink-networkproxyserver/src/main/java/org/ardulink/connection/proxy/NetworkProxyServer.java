@@ -15,15 +15,24 @@ limitations under the License.
 */
 package org.ardulink.connection.proxy;
 
+import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.ardulink.connection.proxy.NetworkProxyMessages.STOP_SERVER_CMD;
+import static org.ardulink.util.Preconditions.checkState;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadFactory;
 
+import org.ardulink.util.UnixDomainSockets;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -56,10 +65,11 @@ public class NetworkProxyServer {
 		@Override
 		public void execute(int portNumber) throws IOException {
 			ServerSocket serverSocket = new ServerSocket(portNumber);
+			ThreadFactory threadFactory = newThreadFactory("ardulink-proxyconnection");
 			try {
 				serverIsUp(portNumber);
 				while (true) {
-					new Thread(newConnection(serverSocket)).start();
+					threadFactory.newThread(newConnection(serverSocket)).start();
 				}
 			} finally {
 				logger.info(NAME + " stops");
@@ -71,12 +81,80 @@ public class NetworkProxyServer {
 			logger.info(NAME + " listening on port {}", portNumber);
 		}
 
-		protected NetworkProxyServerConnection newConnection(ServerSocket serverSocket) throws IOException {
+		protected Runnable newConnection(ServerSocket serverSocket) throws IOException {
 			return new NetworkProxyServerConnection(serverSocket.accept());
 		}
 
 	}
 
+	public static class FanOutStartCommand extends StartCommand {
+
+		@Override
+		protected Runnable newConnection(ServerSocket serverSocket) throws IOException {
+			return new FanOutProxyServerConnection(serverSocket.accept());
+		}
+
+	}
+
+	/**
+	 * Serves the clients on the same machine via a Unix domain socket (needs Java
+	 * 16 or later) instead of TCP. A (stale) socket file left by a previous run
+	 * gets replaced, the server refuses to start if there is anything else at the
+	 * path.
+	 */
+	public static class UnixSocketStartCommand implements Command {
+
+		private final String path;
+		private final boolean fanout;
+
+		public UnixSocketStartCommand(String path, boolean fanout) {
+			this.path = path;
+			this.fanout = fanout;
+		}
+
+		@Override
+		public void execute(int portNumber) throws IOException {
+			Path socketFile = Paths.get(path);
+			if (Files.exists(socketFile, NOFOLLOW_LINKS)) {
+				checkState(UnixDomainSockets.isSocket(socketFile), "%s exists and is no socket, refusing to replace it",
+						socketFile);
+				Files.delete(socketFile);
+			}
+			ThreadFactory threadFactory = newThreadFactory("ardulink-proxyconnection");
+			try (ServerSocketChannel serverChannel = UnixDomainSockets.bind(path)) {
+				serverIsUp(path);
+				while (true) {
+					threadFactory.newThread(newConnection(ClientChannel.of(serverChannel.accept()))).start();
+				}
+			} finally {
+				logger.info(NAME + " stops");
+				if (Files.exists(socketFile, NOFOLLOW_LINKS) && UnixDomainSockets.isSocket(socketFile)) {
+					Files.delete(socketFile);
+				}
+			}
+		}
+
+		protected void serverIsUp(String path) {
+			logger.info(NAME + " listening on {}", path);
+		}
+
+		protected Runnable newConnection(ClientChannel channel) {
+			return fanout ? new FanOutProxyServerConnection(channel) : new NetworkProxyServerConnection(channel);
+		}
+
+	}
+
+	public static class NioStartCommand implements Command {
+
+		@Override
+		public void execute(int portNumber) throws IOException {
+			try (NioNetworkProxyServer server = new NioNetworkProxyServer(portNumber)) {
+				server.run();
+			}
+		}
+
+	}
+
 	public static class StopCommand implements Command {
 
 		@Override
@@ -103,6 +181,16 @@ public class NetworkProxyServer {
 	@Option(name = "-p", aliases = "--port", usage = "Local port to bind to")
 	private int portNumber = DEFAULT_LISTENING_PORT;
 
+	@Option(name = "-nio", aliases = "--nio", forbids = { "-fanout",
+			"-unixsocket" }, usage = "Serve all clients non-blocking by one single thread, cannot be combined with -fanout or -unixsocket (start command only)")
+	private boolean nio;
+
+	@Option(name = "-fanout", aliases = "--fanout", usage = "Share one link between all clients connecting to the same port (start command only)")
+	private boolean fanout;
+
+	@Option(name = "-unixsocket", aliases = "--unixsocket", usage = "Listen on the Unix domain socket at this path instead of the TCP port, for clients on the same machine (start command only, Java 16+)")
+	private String unixSocket;
+
 	public static void main(String[] args) throws Exception {
 		new NetworkProxyServer().doMain(args);
 	}
@@ -116,7 +204,22 @@ public class NetworkProxyServer {
 			cmdLineParser.printUsage(System.err);
 			return;
 		}
-		command.execute(portNumber);
+		commandToExecute().execute(portNumber);
+	}
+
+	private Command commandToExecute() {
+		if (command instanceof StartCommand) {
+			if (unixSocket != null) {
+				return new UnixSocketStartCommand(unixSocket, fanout);
+			}
+			if (fanout) {
+				return new FanOutStartCommand();
+			}
+			if (nio) {
+				return new NioStartCommand();
+			}
+		}
+		return command;
 	}
 
 }
@@ -42,21 +42,25 @@ public class NetworkProxyServerConnection implements Runnable {
 
 	private static final Logger logger = LoggerFactory.getLogger(NetworkProxyServerConnection.class);
 
-	private final Socket socket;
+	private final ClientChannel channel;
 
 	private Link link;
 
 	public NetworkProxyServerConnection(Socket socket) {
-		this.socket = socket;
+		this(ClientChannel.of(socket));
+	}
+
+	public NetworkProxyServerConnection(ClientChannel channel) {
+		this.channel = channel;
 	}
 
 	@Override
 	public void run() {
 		try {
-			OutputStream osRemote = socket.getOutputStream();
-			InputStream isRemote = socket.getInputStream();
-
-			Link link = getRoot(handshaker(isRemote, osRemote).doHandshake());
+			Handshaker handshaker = handshaker(channel.getInputStream(), channel.getOutputStream());
+			Link link = getRoot(handshaker.doHandshake());
+			OutputStream osRemote = handshaker.outputStream(channel.getOutputStream());
+			InputStream isRemote = handshaker.inputStream(channel.getInputStream());
 			checkState(link instanceof ConnectionBasedLink, "Only %s links supported for now (got %s)",
 					ConnectionBasedLink.class.getName(), link.getClass());
 
@@ -65,6 +69,7 @@ public class NetworkProxyServerConnection implements Runnable {
 				@Override
 				public void received(byte[] bytes) throws IOException {
 					osRemote.write(bytes);
+					osRemote.flush();
 				}
 			});
 
@@ -82,9 +87,9 @@ public class NetworkProxyServerConnection implements Runnable {
 		} catch (Exception e) {
 			logger.error("Error while doing proxy", e);
 		} finally {
-			logger.info("{} connection closed.", socket.getRemoteSocketAddress());
+			logger.info("{} connection closed.", channel.getRemoteAddress());
 			close(link);
-			close(socket);
+			close(channel);
 		}
 	}
 
@@ -92,18 +97,18 @@ public class NetworkProxyServerConnection implements Runnable {
 		return new Handshaker(isRemote, osRemote);
 	}
 
-	private Link getRoot(Link link) {
+	static Link getRoot(Link link) {
 		while (link instanceof LinkDelegate) {
 			link = ((LinkDelegate) link).getDelegate();
 		}
 		return link;
 	}
 
-	private void close(Socket socket) {
+	private void close(ClientChannel channel) {
 		try {
-			socket.close();
+			channel.close();
 		} catch (IOException e) {
-			logger.error("Error closing socket {}", socket, e);
+			logger.error("Error closing {}", channel, e);
 		}
 	}
 
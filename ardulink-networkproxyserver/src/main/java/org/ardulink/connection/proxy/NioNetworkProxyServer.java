@@ -0,0 +1,498 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.ardulink.connection.proxy;
+
+import static java.nio.channels.SelectionKey.OP_ACCEPT;
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.ardulink.connection.proxy.Handshaker.PROXY_CONNECTION_SEPARATOR;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.CONNECT_CMD;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.CONNECT_FRAMED_CMD;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.GET_PORT_LIST_CMD;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.KO;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.NUMBER_OF_PORTS;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.OK;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.STOP_SERVER_CMD;
+import static org.ardulink.connection.proxy.NetworkProxyServerConnection.getRoot;
+import static org.ardulink.util.ThreadFactories.newThreadFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ardulink.core.Connection;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.core.linkmanager.LinkManager.Configurer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Single threaded, non-blocking variant of the network proxy server. All
+ * clients are served by one selector thread using direct buffers for reading
+ * and gathering writes for sending. Each client has its own bounded outbound
+ * queue, clients not consuming their data fast enough get disconnected.
+ * Opening links (which may block e.g. while waiting for the Arduino to boot) and
+ * writing to the devices is done in separate threads so other clients are not
+ * affected. A client whose device does not consume the data fast enough is not
+ * read until the device caught up.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+public class NioNetworkProxyServer implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(NioNetworkProxyServer.class);
+
+	private static final int READ_BUFFER_SIZE = 4096;
+	private static final int MAX_PENDING_OUTBOUND_BYTES = 64 * 1024;
+	private static final int MAX_PENDING_DEVICE_BYTES = 64 * 1024;
+	private static final int MAX_LINE_LENGTH = 1024;
+
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final ThreadFactory linkOpeners = newThreadFactory("ardulink-proxylinkopener");
+	private final ExecutorService deviceWriters = newCachedThreadPool(newThreadFactory("ardulink-proxydevicewriter"));
+	private volatile boolean running = true;
+
+	public NioNetworkProxyServer(int portNumber) throws IOException {
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(new InetSocketAddress(portNumber));
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.register(selector, OP_ACCEPT);
+	}
+
+	public int getLocalPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public void run() throws IOException {
+		serverIsUp(getLocalPort());
+		try {
+			while (running) {
+				selector.select();
+				runTasks();
+				for (Iterator<SelectionKey> iterator = selector.selectedKeys().iterator(); iterator.hasNext();) {
+					SelectionKey key = iterator.next();
+					iterator.remove();
+					handle(key);
+				}
+			}
+		} finally {
+			logger.info(NetworkProxyServer.NAME + " stops");
+			closeAll();
+		}
+	}
+
+	private void handle(SelectionKey key) {
+		if (!key.isValid()) {
+			return;
+		}
+		if (key.isAcceptable()) {
+			accept();
+			return;
+		}
+		Client client = (Client) key.attachment();
+		try {
+			if (key.isReadable()) {
+				client.read();
+			}
+			if (key.isValid() && key.isWritable()) {
+				client.flush();
+			}
+		} catch (IOException e) {
+			logger.error("Error while doing proxy", e);
+			client.close();
+		}
+	}
+
+	private void accept() {
+		try {
+			SocketChannel channel = serverChannel.accept();
+			if (channel != null) {
+				channel.configureBlocking(false);
+				Client client = new Client(channel);
+				client.key = channel.register(selector, OP_READ, client);
+			}
+		} catch (IOException e) {
+			logger.error("Error accepting connection", e);
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	private void runOnSelectorThread(Runnable runnable) {
+		tasks.add(runnable);
+		selector.wakeup();
+	}
+
+	protected void serverIsUp(int portNumber) {
+		logger.info(NetworkProxyServer.NAME + " (nio) listening on port {}", portNumber);
+	}
+
+	protected Configurer configurer() {
+		return Links.getDefaultConfigurer();
+	}
+
+	protected Link newLink(Configurer configurer) {
+		return Links.getLink(configurer);
+	}
+
+	private enum State {
+		COMMAND, PORT, BAUDRATE, CONNECTING, CONNECTED;
+	}
+
+	private class Client implements Closeable {
+
+		private final SocketChannel channel;
+		private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+		private int pendingBytes;
+		private SelectionKey key;
+
+		private State state = State.COMMAND;
+		private byte[] line = new byte[64];
+		private int lineLength;
+		private String port;
+		private byte[] receivedWhileConnecting;
+
+		private Link link;
+		private volatile Connection connection;
+		private final Queue<byte[]> toDevice = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger toDeviceBytes = new AtomicInteger();
+		private final AtomicBoolean writingToDevice = new AtomicBoolean();
+		private final AtomicBoolean readingPaused = new AtomicBoolean();
+		private final Connection.Listener listener = new Connection.ListenerAdapter() {
+			@Override
+			public void received(byte[] bytes) {
+				enqueue(ByteBuffer.wrap(bytes));
+			}
+		};
+
+		private Client(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		private void read() throws IOException {
+			if (state == State.CONNECTING) {
+				return;
+			}
+			readBuffer.clear();
+			int read = channel.read(readBuffer);
+			if (read < 0) {
+				close();
+				return;
+			}
+			readBuffer.flip();
+			if (state == State.CONNECTED) {
+				forward(readBuffer);
+			} else {
+				handshake(readBuffer);
+			}
+		}
+
+		private void handshake(ByteBuffer buffer) {
+			while (buffer.hasRemaining() && state != State.CONNECTING) {
+				byte b = buffer.get();
+				if (b == PROXY_CONNECTION_SEPARATOR.charAt(0)) {
+					handleLine(new String(line, 0, lineLength, US_ASCII));
+					lineLength = 0;
+				} else if (lineLength == MAX_LINE_LENGTH) {
+					logger.warn("{} sent a line exceeding {} bytes, disconnecting", remoteAddress(), MAX_LINE_LENGTH);
+					close();
+					return;
+				} else {
+					if (lineLength == line.length) {
+						line = Arrays.copyOf(line, line.length * 2);
+					}
+					line[lineLength++] = b;
+				}
+			}
+			if (buffer.hasRemaining()) {
+				receivedWhileConnecting = new byte[buffer.remaining()];
+				buffer.get(receivedWhileConnecting);
+			}
+		}
+
+		private void handleLine(String input) {
+			switch (state) {
+			case COMMAND:
+				if (STOP_SERVER_CMD.equals(input)) {
+					running = false;
+				} else if (GET_PORT_LIST_CMD.equals(input)) {
+					sendPortList();
+				} else if (CONNECT_CMD.equals(input)) {
+					state = State.PORT;
+				} else if (CONNECT_FRAMED_CMD.equals(input)) {
+					// framing is only supported by the thread per client servers
+					send(KO);
+				}
+				break;
+			case PORT:
+				port = input;
+				state = State.BAUDRATE;
+				break;
+			case BAUDRATE:
+				state = State.CONNECTING;
+				key.interestOps(key.interestOps() & ~OP_READ);
+				openLink(port, input);
+				break;
+			default:
+				throw new IllegalStateException("Unexpected state " + state);
+			}
+		}
+
+		private void sendPortList() {
+			Object[] portList = configurer().getAttribute("port").getChoiceValues();
+			if (portList == null) {
+				portList = new Object[0];
+			}
+			send(NUMBER_OF_PORTS + portList.length);
+			for (Object p : portList) {
+				send(String.valueOf(p));
+			}
+		}
+
+		private void openLink(String port, String baudrate) {
+			linkOpeners.newThread(() -> {
+				try {
+					Configurer configurer = configurer();
+					configurer.getAttribute("port").setValue(port);
+					configurer.getAttribute("baudrate").setValue(Integer.valueOf(baudrate));
+					Link link = newLink(configurer);
+					runOnSelectorThread(() -> connected(link));
+				} catch (Exception e) {
+					logger.error("Error during connecting", e);
+					runOnSelectorThread(this::connectFailed);
+				}
+			}).start();
+		}
+
+		private void connected(Link link) {
+			this.link = link;
+			if (!channel.isOpen()) {
+				closeLink();
+				return;
+			}
+			Link root = getRoot(link);
+			if (!(root instanceof ConnectionBasedLink)) {
+				logger.error("Only {} links supported for now (got {})", ConnectionBasedLink.class.getName(),
+						root.getClass());
+				connectFailed();
+				return;
+			}
+			this.connection = ((ConnectionBasedLink) root).getConnection();
+			send(OK);
+			this.connection.addListener(listener);
+			this.state = State.CONNECTED;
+			key.interestOps(key.interestOps() | OP_READ);
+			if (receivedWhileConnecting != null) {
+				forward(ByteBuffer.wrap(receivedWhileConnecting));
+				receivedWhileConnecting = null;
+			}
+		}
+
+		private void connectFailed() {
+			closeLink();
+			send(KO);
+			state = State.COMMAND;
+			if (key.isValid()) {
+				key.interestOps(key.interestOps() | OP_READ);
+			}
+			if (receivedWhileConnecting != null) {
+				byte[] pending = receivedWhileConnecting;
+				receivedWhileConnecting = null;
+				handshake(ByteBuffer.wrap(pending));
+			}
+		}
+
+		/**
+		 * Queues the bytes to be written to the device by a device writer thread,
+		 * stops reading from the client if too many bytes are queued.
+		 */
+		private void forward(ByteBuffer buffer) {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			toDevice.add(bytes);
+			if (toDeviceBytes.addAndGet(bytes.length) > MAX_PENDING_DEVICE_BYTES
+					&& readingPaused.compareAndSet(false, true)) {
+				key.interestOps(key.interestOps() & ~OP_READ);
+			}
+			scheduleDeviceWrite();
+		}
+
+		private void scheduleDeviceWrite() {
+			if (writingToDevice.compareAndSet(false, true)) {
+				deviceWriters.execute(this::writeToDevice);
+			}
+		}
+
+		private void writeToDevice() {
+			try {
+				for (byte[] bytes; (bytes = toDevice.poll()) != null;) {
+					toDeviceBytes.addAndGet(-bytes.length);
+					Connection connection = this.connection;
+					if (connection != null) {
+						connection.write(bytes);
+					}
+				}
+			} catch (IOException e) {
+				logger.error("Error while doing proxy", e);
+				toDevice.clear();
+				runOnSelectorThread(this::close);
+			} finally {
+				writingToDevice.set(false);
+			}
+			if (readingPaused.compareAndSet(true, false)) {
+				runOnSelectorThread(this::resumeReading);
+			}
+			// bytes queued after the last poll but before the flag was reset
+			if (!toDevice.isEmpty()) {
+				scheduleDeviceWrite();
+			}
+		}
+
+		private void resumeReading() {
+			if (key.isValid() && state == State.CONNECTED) {
+				key.interestOps(key.interestOps() | OP_READ);
+			}
+		}
+
+		private void send(String message) {
+			enqueue(ByteBuffer.wrap((message + PROXY_CONNECTION_SEPARATOR).getBytes(US_ASCII)));
+		}
+
+		private void enqueue(ByteBuffer buffer) {
+			synchronized (outbound) {
+				if (pendingBytes + buffer.remaining() > MAX_PENDING_OUTBOUND_BYTES) {
+					logger.warn("{} does not consume its data, disconnecting", remoteAddress());
+					runOnSelectorThread(this::close);
+					return;
+				}
+				outbound.add(buffer);
+				pendingBytes += buffer.remaining();
+			}
+			runOnSelectorThread(() -> {
+				if (key.isValid()) {
+					key.interestOps(key.interestOps() | OP_WRITE);
+				}
+			});
+		}
+
+		private void flush() throws IOException {
+			synchronized (outbound) {
+				ByteBuffer[] buffers = outbound.toArray(new ByteBuffer[outbound.size()]);
+				pendingBytes -= (int) channel.write(buffers);
+				while (!outbound.isEmpty() && !outbound.peek().hasRemaining()) {
+					outbound.poll();
+				}
+				if (outbound.isEmpty()) {
+					key.interestOps(key.interestOps() & ~OP_WRITE);
+				}
+			}
+		}
+
+		private Object remoteAddress() {
+			try {
+				return channel.getRemoteAddress();
+			} catch (IOException e) {
+				return channel;
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!channel.isOpen()) {
+				return;
+			}
+			logger.info("{} connection closed.", remoteAddress());
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.error("Error closing channel {}", channel, e);
+			}
+			if (state != State.CONNECTING) {
+				closeLink();
+			}
+		}
+
+		private void closeLink() {
+			if (connection != null) {
+				connection.removeListener(listener);
+				connection = null;
+			}
+			if (link != null) {
+				try {
+					link.close();
+				} catch (Exception e) {
+					logger.error("Error disconnecting link {}", link, e);
+				}
+				link = null;
+			}
+		}
+
+	}
+
+	private void closeAll() throws IOException {
+		for (SelectionKey key : new ArrayList<>(selector.keys())) {
+			if (key.attachment() instanceof Client) {
+				((Client) key.attachment()).close();
+			}
+		}
+		serverChannel.close();
+		selector.close();
+		deviceWriters.shutdown();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		selector.wakeup();
+	}
+
+}
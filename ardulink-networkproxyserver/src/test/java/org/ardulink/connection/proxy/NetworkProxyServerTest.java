@@ -62,11 +62,12 @@ class NetworkProxyServerTest {
 
 	};
 
+	private int serverPort;
 	private ConnectionBasedLink clientSideLink;
 
 	@BeforeEach
 	void setup() throws InterruptedException, IOException {
-		int serverPort = freePort();
+		serverPort = freePort();
 		startServerInBackground(serverPort);
 		this.clientSideLink = clientLinkToServer("localhost", serverPort);
 	}
@@ -81,6 +82,23 @@ class NetworkProxyServerTest {
 		assertReceived(expected);
 	}
 
+	@Test
+	void proxyServerDoesReceiveMessagesSentByFramedClient() throws Exception {
+		ProxyLinkFactory linkFactory = new ProxyLinkFactory();
+		ProxyLinkConfig linkConfig = configure(linkFactory.newLinkConfig(), "localhost", serverPort);
+		linkConfig.framed = true;
+		linkConfig.deflate = true;
+		linkConfig.coalesceMillis = 10;
+		try (ConnectionBasedLink framedLink = linkFactory.newLink(linkConfig)) {
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < 3; i++) {
+				framedLink.switchAnalogPin(analogPin(1), i);
+				expected.append(alpProtocolMessage(POWER_PIN_INTENSITY).forPin(1).withValue(i) + "\n");
+			}
+			assertReceived(expected);
+		}
+	}
+
 	private void assertReceived(StringBuilder expected) {
 		assertReceived(expected.toString());
 	}
@@ -119,7 +137,14 @@ class NetworkProxyServerTest {
 							return new NetworkProxyServerConnection(serverSocket.accept()) {
 								@Override
 								protected Handshaker handshaker(InputStream isRemote, OutputStream osRemote) {
-									return new Handshaker(isRemote, osRemote, configurer());
+									return new Handshaker(isRemote, osRemote, configurer()) {
+										@Override
+										protected Link newLink(Configurer configurer) {
+											// do not use the (cached) links of Links since each test has its own
+											// proxySideConnection
+											return configurer.newLink();
+										}
+									};
 								}
 
 								private Configurer configurer() {
@@ -0,0 +1,215 @@
+package org.ardulink.connection.proxy;
+
+import static java.time.Duration.ofMillis;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.connection.proxy.Handshaker.PROXY_CONNECTION_SEPARATOR;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.GET_PORT_LIST_CMD;
+import static org.ardulink.connection.proxy.NetworkProxyMessages.NUMBER_OF_PORTS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.proto.api.Protocols.protoByName;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
+import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.POWER_PIN_INTENSITY;
+import static org.ardulink.util.ServerSockets.freePort;
+import static org.ardulink.util.Throwables.propagate;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.Connection.Listener;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.Link;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.linkmanager.LinkManager.ConfigAttribute;
+import org.ardulink.core.linkmanager.LinkManager.Configurer;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.ardulink.core.proxy.ProxyLinkConfig;
+import org.ardulink.core.proxy.ProxyLinkFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+@Timeout(value = 5, unit = SECONDS)
+class NioNetworkProxyServerTest {
+
+	private final StringBuilder proxySideReceived = new StringBuilder();
+	private volatile CountDownLatch deviceWritable = new CountDownLatch(0);
+	private final AbstractConnection proxySideConnection = new AbstractConnection() {
+
+		@Override
+		public void write(byte[] bytes) throws IOException {
+			try {
+				deviceWritable.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (proxySideReceived) {
+				proxySideReceived.append(new String(bytes));
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			// noop
+		}
+
+	};
+
+	private int serverPort;
+	private NioNetworkProxyServer server;
+	private ConnectionBasedLink clientSideLink;
+
+	@BeforeEach
+	void setup() throws InterruptedException, IOException {
+		serverPort = freePort();
+		startServerInBackground(serverPort);
+		this.clientSideLink = clientLinkToServer("localhost", serverPort);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		this.clientSideLink.close();
+		this.server.close();
+	}
+
+	@Test
+	void proxyServerDoesReceiveMessagesSentByClient() throws Exception {
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 3; i++) {
+			this.clientSideLink.switchAnalogPin(analogPin(1), 2);
+			expected.append(alpProtocolMessage(POWER_PIN_INTENSITY).forPin(1).withValue(2) + "\n");
+		}
+		await().forever().pollInterval(ofMillis(50)).until(this::proxySideReceived, expected.toString()::equals);
+	}
+
+	@Test
+	void clientDoesReceiveMessagesSentByDevice() throws IOException {
+		List<AnalogPinValueChangedEvent> events = new CopyOnWriteArrayList<>();
+		this.clientSideLink.addListener(new EventListenerAdapter() {
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				events.add(event);
+			}
+		});
+		String message = alpProtocolMessage(ANALOG_PIN_READ).forPin(3).withValue(42) + "\n";
+		for (Listener listener : proxySideConnection.getListeners()) {
+			listener.received(message.getBytes());
+		}
+		await().untilAsserted(() -> assertThat(events).singleElement()
+				.satisfies(e -> assertThat(e.getValue()).isEqualTo(42)));
+	}
+
+	@Test
+	void blockingDeviceDoesNotBlockOtherClients() throws Exception {
+		deviceWritable = new CountDownLatch(1);
+		try {
+			this.clientSideLink.switchAnalogPin(analogPin(1), 2);
+			try (Socket socket = new Socket("localhost", serverPort)) {
+				socket.getOutputStream().write((GET_PORT_LIST_CMD + PROXY_CONNECTION_SEPARATOR).getBytes());
+				assertThat(new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine())
+						.isEqualTo(NUMBER_OF_PORTS + 0);
+			}
+		} finally {
+			deviceWritable.countDown();
+		}
+		await().until(() -> !proxySideReceived().isEmpty());
+	}
+
+	@Test
+	void clientSendingAnEndlessLineGetsDisconnected() throws Exception {
+		try (Socket socket = new Socket("localhost", serverPort)) {
+			byte[] bytes = new byte[4096];
+			Arrays.fill(bytes, (byte) 'x');
+			socket.getOutputStream().write(bytes);
+			assertThat(socket.getInputStream().read()).isEqualTo(-1);
+		}
+	}
+
+	private String proxySideReceived() {
+		synchronized (proxySideReceived) {
+			return proxySideReceived.toString();
+		}
+	}
+
+	private ConnectionBasedLink clientLinkToServer(String hostname, int port) throws IOException {
+		ProxyLinkFactory linkFactory = new ProxyLinkFactory();
+		ProxyLinkConfig linkConfig = linkFactory.newLinkConfig();
+		linkConfig.tcphost = hostname;
+		linkConfig.tcpport = port;
+		linkConfig.port = "anything non-null";
+		return linkFactory.newLink(linkConfig);
+	}
+
+	private void startServerInBackground(int freePort) throws InterruptedException, IOException {
+		Semaphore waitUntilServerIsUp = new Semaphore(0);
+		this.server = new NioNetworkProxyServer(freePort) {
+
+			@Override
+			protected void serverIsUp(int portNumber) {
+				super.serverIsUp(portNumber);
+				waitUntilServerIsUp.release();
+			}
+
+			@Override
+			protected Configurer configurer() {
+				return new Configurer() {
+
+					@Override
+					public Object uniqueIdentifier() {
+						return "";
+					}
+
+					@Override
+					public Collection<String> getAttributes() {
+						return singletonList("port");
+					}
+
+					@Override
+					public ConfigAttribute getAttribute(String key) {
+						ConfigAttribute attribute = mock(ConfigAttribute.class);
+						when(attribute.getName()).thenReturn(key);
+						return attribute;
+					}
+
+					@Override
+					public Link newLink() {
+						return new ConnectionBasedLink(proxySideConnection,
+								protoByName(ArdulinkProtocol2.NAME).newByteStreamProcessor());
+					}
+
+				};
+			}
+
+			@Override
+			protected Link newLink(Configurer configurer) {
+				return configurer.newLink();
+			}
+
+		};
+		new Thread(() -> {
+			try {
+				server.run();
+			} catch (IOException e) {
+				propagate(e);
+			}
+		}).start();
+		waitUntilServerIsUp.acquire();
+	}
+
+}
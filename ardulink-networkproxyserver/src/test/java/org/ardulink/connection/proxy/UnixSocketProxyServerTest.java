@@ -0,0 +1,201 @@
+package org.ardulink.connection.proxy;
+
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.ardulink.core.Pin.analogPin;
+import static org.ardulink.core.proto.api.Protocols.protoByName;
+import static org.ardulink.util.Throwables.propagate;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+
+import org.ardulink.connection.proxy.NetworkProxyServer.UnixSocketStartCommand;
+import org.ardulink.core.AbstractConnection;
+import org.ardulink.core.ConnectionBasedLink;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.LinkDelegate;
+import org.ardulink.core.events.AnalogPinValueChangedEvent;
+import org.ardulink.core.events.EventListenerAdapter;
+import org.ardulink.core.linkmanager.LinkManager.ConfigAttribute;
+import org.ardulink.core.linkmanager.LinkManager.Configurer;
+import org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessor;
+import org.ardulink.core.proto.impl.ArdulinkProtocol2;
+import org.ardulink.core.proxy.ProxyLinkConfig;
+import org.ardulink.core.proxy.ProxyLinkFactory;
+import org.ardulink.util.UnixDomainSockets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+@Timeout(value = 5, unit = SECONDS)
+class UnixSocketProxyServerTest {
+
+	@TempDir
+	Path tempDir;
+
+	private final List<String> deviceReceived = new CopyOnWriteArrayList<>();
+	private final AbstractConnection deviceConnection = new AbstractConnection() {
+
+		@Override
+		public void write(byte[] bytes) throws IOException {
+			deviceReceived.add(new String(bytes));
+		}
+
+		@Override
+		public void close() throws IOException {
+			// noop
+		}
+
+	};
+
+	private final ByteStreamProcessor byteStreamProcessor = protoByName(ArdulinkProtocol2.NAME)
+			.newByteStreamProcessor();
+	private final ConnectionBasedLink sharedLink = new ConnectionBasedLink(deviceConnection, byteStreamProcessor);
+
+	private String socketPath;
+
+	@BeforeEach
+	void setup() throws InterruptedException {
+		assumeTrue(UnixDomainSockets.available());
+		socketPath = tempDir.resolve("proxy.sock").toString();
+		startServerInBackground(socketPath);
+	}
+
+	@Test
+	void clientsOnTheSameMachineShareTheLinkViaUnixDomainSocket() throws Exception {
+		try (ConnectionBasedLink client1 = clientLinkToServer(); ConnectionBasedLink client2 = clientLinkToServer()) {
+			List<AnalogPinValueChangedEvent> events1 = eventsOf(client1);
+			List<AnalogPinValueChangedEvent> events2 = eventsOf(client2);
+
+			client1.startListening(analogPin(3));
+			await().until(() -> deviceReceived.size() == 1);
+			client2.startListening(analogPin(3));
+			client2.switchAnalogPin(analogPin(4), 5);
+			await().until(() -> deviceReceived.size() == 2);
+
+			byteStreamProcessor.process("alp://ared/3/42\n".getBytes());
+			await().until(() -> events1.size() == 1 && events2.size() == 1);
+			assertThat(events2.get(0).getValue()).isEqualTo(42);
+			assertThat(deviceReceived).containsExactly("alp://srla/3\n", "alp://ppin/4/5\n");
+		}
+	}
+
+	@Test
+	void staleSocketFileGetsReplaced() throws Exception {
+		String stalePath = tempDir.resolve("stale.sock").toString();
+		UnixDomainSockets.bind(stalePath).close();
+		assertThat(UnixDomainSockets.isSocket(Paths.get(stalePath))).isTrue();
+		startServerInBackground(stalePath);
+		socketPath = stalePath;
+		try (ConnectionBasedLink client = clientLinkToServer()) {
+			client.switchAnalogPin(analogPin(4), 5);
+			await().until(() -> deviceReceived.size() == 1);
+		}
+	}
+
+	@Test
+	void refusesToReplaceAnythingButASocket() throws IOException {
+		Path file = Files.write(tempDir.resolve("no.sock"), "keep me".getBytes());
+		assertThatThrownBy(() -> new UnixSocketStartCommand(file.toString(), true).execute(0))
+				.isInstanceOf(IllegalStateException.class).hasMessageContaining("is no socket");
+		assertThat(file).hasContent("keep me");
+	}
+
+	private static List<AnalogPinValueChangedEvent> eventsOf(Link link) throws IOException {
+		List<AnalogPinValueChangedEvent> events = new CopyOnWriteArrayList<>();
+		link.addListener(new EventListenerAdapter() {
+			@Override
+			public void stateChanged(AnalogPinValueChangedEvent event) {
+				events.add(event);
+			}
+		});
+		return events;
+	}
+
+	private ConnectionBasedLink clientLinkToServer() throws IOException {
+		ProxyLinkFactory linkFactory = new ProxyLinkFactory();
+		ProxyLinkConfig linkConfig = linkFactory.newLinkConfig();
+		linkConfig.socketpath = socketPath;
+		linkConfig.port = "anything non-null";
+		return linkFactory.newLink(linkConfig);
+	}
+
+	private void startServerInBackground(String path) throws InterruptedException {
+		Semaphore waitUntilServerIsUp = new Semaphore(0);
+		new Thread(() -> {
+			try {
+				new UnixSocketStartCommand(path, true) {
+
+					@Override
+					protected void serverIsUp(String path) {
+						super.serverIsUp(path);
+						waitUntilServerIsUp.release();
+					}
+
+					@Override
+					protected Runnable newConnection(ClientChannel channel) {
+						return new FanOutProxyServerConnection(channel) {
+							@Override
+							protected Handshaker handshaker(InputStream isRemote, OutputStream osRemote) {
+								return new Handshaker(isRemote, osRemote, configurer());
+							}
+						};
+					}
+
+				}.execute(0);
+			} catch (IOException e) {
+				propagate(e);
+			}
+		}).start();
+		waitUntilServerIsUp.acquire();
+	}
+
+	private Configurer configurer() {
+		return new Configurer() {
+
+			@Override
+			public Object uniqueIdentifier() {
+				return "";
+			}
+
+			@Override
+			public Collection<String> getAttributes() {
+				return singletonList("port");
+			}
+
+			@Override
+			public ConfigAttribute getAttribute(String key) {
+				ConfigAttribute attribute = mock(ConfigAttribute.class);
+				when(attribute.getName()).thenReturn(key);
+				return attribute;
+			}
+
+			@Override
+			public Link newLink() {
+				return new LinkDelegate(sharedLink) {
+					@Override
+					public void close() {
+						// shared, so do not close
+					}
+				};
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,158 @@
+/**
+Copyright 2013 project Ardulink http://www.ardulink.org/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.ardulink.rest;
+
+import static org.ardulink.util.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.ardulink.core.Pin;
+
+/**
+ * [ardulinktitle] [ardulinkversion]
+ *
+ * Holds the last value received for each pin of a link. Each update gets a new
+ * entity tag so clients can ask whether their value is still current and wait
+ * for a newer one without blocking a thread: the waiting consumers are called
+ * by the thread updating the value or (on timeout) by the timer.
+ *
+ * project Ardulink http://www.ardulink.org/
+ *
+ * [adsense]
+ *
+ */
+final class PinStateCache {
+
+	static final class State {
+
+		private final Object value;
+		private final long timestamp;
+		private final String etag;
+
+		private State(Object value, long timestamp, String etag) {
+			this.value = value;
+			this.timestamp = timestamp;
+			this.etag = etag;
+		}
+
+		Object getValue() {
+			return value;
+		}
+
+		/**
+		 * Returns the time the value was received in milliseconds since the epoch.
+		 */
+		long getTimestamp() {
+			return timestamp;
+		}
+
+		String getETag() {
+			return etag;
+		}
+
+	}
+
+	private static final class Waiter {
+
+		private final AtomicBoolean done = new AtomicBoolean();
+		private final Consumer<State> consumer;
+		private ScheduledFuture<?> timeout;
+
+		private Waiter(Consumer<State> consumer) {
+			this.consumer = consumer;
+		}
+
+		private void complete(State state) {
+			if (done.compareAndSet(false, true)) {
+				consumer.accept(state);
+			}
+		}
+
+	}
+
+	// entity tags of a restarted server must not match those handed out before
+	private final String generation = Long.toString(System.currentTimeMillis(), 36);
+	private final ScheduledExecutorService timer;
+	private final Map<Pin, State> states = new HashMap<>();
+	private final Map<Pin, List<Waiter>> waiters = new HashMap<>();
+	private long version;
+
+	PinStateCache(ScheduledExecutorService timer) {
+		this.timer = checkNotNull(timer, "timer must not be null");
+	}
+
+	void update(Pin pin, Object value) {
+		State state;
+		List<Waiter> waiting;
+		synchronized (this) {
+			state = new State(value, System.currentTimeMillis(), '"' + generation + '-' + ++version + '"');
+			states.put(pin, state);
+			waiting = waiters.remove(pin);
+		}
+		if (waiting != null) {
+			for (Waiter waiter : waiting) {
+				waiter.timeout.cancel(false);
+				waiter.complete(state);
+			}
+		}
+	}
+
+	/**
+	 * Returns the last value of the pin or <code>null</code> if none has been
+	 * received yet.
+	 */
+	synchronized State get(Pin pin) {
+		return states.get(pin);
+	}
+
+	/**
+	 * Passes the state of the pin to the consumer as soon as its entity tag
+	 * differs from the passed one (immediately if it does already) or
+	 * <code>null</code> if that does not happen within the timeout.
+	 */
+	void awaitChange(Pin pin, String etag, long timeout, TimeUnit unit, Consumer<State> consumer) {
+		Waiter waiter = new Waiter(consumer);
+		State state;
+		synchronized (this) {
+			state = states.get(pin);
+			if (state == null || state.etag.equals(etag)) {
+				waiters.computeIfAbsent(pin, p -> new ArrayList<>()).add(waiter);
+				waiter.timeout = timer.schedule(() -> expire(pin, waiter), timeout, unit);
+				return;
+			}
+		}
+		waiter.complete(state);
+	}
+
+	private void expire(Pin pin, Waiter waiter) {
+		synchronized (this) {
+			List<Waiter> waiting = waiters.get(pin);
+			if (waiting != null && waiting.remove(waiter) && waiting.isEmpty()) {
+				waiters.remove(pin);
+			}
+		}
+		waiter.complete(null);
+	}
+
+}
@@ -3,48 +3,42 @@ package org.ardulink.rest;
 import static java.lang.Boolean.parseBoolean;
 import static java.lang.System.identityHashCode;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.regex.Matcher.quoteReplacement;
 import static java.util.stream.Collectors.joining;
 import static org.apache.camel.Exchange.HTTP_RESPONSE_CODE;
+import static org.ardulink.camel.ListeningState.listeningState;
+import static org.ardulink.camel.PinValue.analogPinValue;
+import static org.ardulink.camel.PinValue.digitalPinValue;
 import static org.ardulink.core.Pin.analogPin;
 import static org.ardulink.core.Pin.digitalPin;
 import static org.ardulink.core.Pin.Type.ANALOG;
 import static org.ardulink.core.Pin.Type.DIGITAL;
-import static org.ardulink.core.proto.api.bytestreamproccesors.ByteStreamProcessors.parse;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.alpProtocolMessage;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.ANALOG_PIN_READ;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.DIGITAL_PIN_READ;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_ANALOG;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.START_LISTENING_DIGITAL;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_ANALOG;
-import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LISTENING_DIGITAL;
-import static org.ardulink.util.Iterables.getFirst;
 import static org.ardulink.util.Preconditions.checkNotNull;
 import static org.ardulink.util.Preconditions.checkState;
 import static org.ardulink.util.Primitives.tryParseAs;
-import static org.ardulink.util.StopWatch.Countdown.createStarted;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.Predicate;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.support.AsyncProcessorSupport;
+import org.ardulink.camel.PinValue;
 import org.ardulink.core.Pin;
 import org.ardulink.core.Pin.Type;
-import org.ardulink.core.messages.api.FromDeviceMessage;
-import org.ardulink.core.messages.api.FromDeviceMessagePinStateChanged;
-import org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey;
-import org.ardulink.core.proto.impl.ArdulinkProtocol2.ALPByteStreamProcessor;
-import org.ardulink.util.StopWatch.Countdown;
+import org.ardulink.rest.PinStateCache.State;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.util.resource.EmptyResource;
 import org.eclipse.jetty.util.resource.Resource;
@@ -62,20 +56,47 @@ public class RestRouteBuilder extends RouteBuilder {
 	public static final String VAR_HOST = "from.host";
 	public static final String VAR_BIND = "from.bind";
 	public static final String VAR_PORT = "from.port";
+	// optional, for tests
+	static final String VAR_MAX_WAIT = "wait.max";
+	static final String VAR_CONTINUATION_TIMEOUT = "wait.continuationtimeout";
 
 	private static final String target = fromPlaceholder(VAR_TARGET);
 
 	private static final String HEADER_PIN = "Pin";
+	private static final String IF_NONE_MATCH = "If-None-Match";
+	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+	private static final String AGE = "Age";
 	private static final String HEADER_TYPE = "Type";
 
+	/**
+	 * Query parameter of the pin reads: if the client's value (passed as
+	 * If-None-Match) is still current wait up to this many milliseconds for a
+	 * newer one.
+	 */
+	public static final String PARAM_WAIT = "wait";
+
+	// below the idle timeout of common proxies (60 seconds)
+	private static final long MAX_WAIT_MILLIS = SECONDS.toMillis(40);
+	// suspended requests expiring before the wait are answered with 503, so do not
+	// depend on the default of camel-jetty/jetty
+	private static final long CONTINUATION_TIMEOUT_MARGIN_MILLIS = SECONDS.toMillis(5);
+	private static final long FIRST_VALUE_TIMEOUT_MILLIS = SECONDS.toMillis(1);
+
 	private static String fromPlaceholder(String varName) {
 		return "{{" + varName + "}}";
 	}
 
 	@Override
 	public void configure() throws Exception {
-		AtomicReference<FromDeviceMessagePinStateChanged> messageRef = new AtomicReference<>();
-		CountDownLatch latch = new CountDownLatch(1);
+		long maxWaitMillis = longProperty(VAR_MAX_WAIT, MAX_WAIT_MILLIS);
+		long continuationTimeoutMillis = longProperty(VAR_CONTINUATION_TIMEOUT,
+				maxWaitMillis + CONTINUATION_TIMEOUT_MARGIN_MILLIS);
+		checkState(continuationTimeoutMillis > maxWaitMillis,
+				"Continuation timeout (%s ms) must be greater than the maximum wait (%s ms)", continuationTimeoutMillis,
+				maxWaitMillis);
+		PinStateCache cache = new PinStateCache(getContext().getExecutorServiceManager()
+				.newSingleThreadScheduledExecutor(this, "ardulink-rest-wait"));
 
 		String patchAnalog = "direct:patchAnalog-" + identityHashCode(this);
 		String patchDigital = "direct:patchDigital-" + identityHashCode(this);
@@ -90,6 +111,7 @@ public class RestRouteBuilder extends RouteBuilder {
 //				.bindingMode(RestBindingMode.json) //
 				.host(fromPlaceholder(VAR_BIND)) //
 				.port(fromPlaceholder(VAR_PORT)) //
+				.endpointProperty("continuationTimeout", String.valueOf(continuationTimeoutMillis)) //
 //				.contextPath("/") //
 //				.setEnableCORS(true) //
 		;
@@ -107,13 +129,18 @@ public class RestRouteBuilder extends RouteBuilder {
 		;
 		from(patchAnalog).process(exchange -> patchAnalog(exchange)).to(target);
 		from(patchDigital).process(exchange -> patchDigital(exchange)).to(target);
-		from(readAnalog).process(exchange -> readAnalog(exchange))
-				.process(exchange -> readQueue(exchange, messageRef, latch));
-		from(readDigital).process(exchange -> readDigital(exchange))
-				.process(exchange -> readQueue(exchange, messageRef, latch));
+		from(readAnalog).process(exchange -> readAnalog(exchange)).process(readCache(cache, maxWaitMillis));
+		from(readDigital).process(exchange -> readDigital(exchange)).process(readCache(cache, maxWaitMillis));
 		from(switchAnalog).process(exchange -> switchAnalog(exchange)).to(target);
 		from(switchDigital).process(exchange -> switchDigital(exchange)).to(target);
-		writeArduinoMessagesTo(target, messageRef, latch);
+		writeArduinoMessagesTo(target, cache);
+	}
+
+	private long longProperty(String key, long defaultValue) {
+		return getContext().getPropertiesComponent().resolveProperty(key)
+				.map(v -> tryParseAs(Long.class, v).orElseThrow(
+						() -> new IllegalStateException(String.format("%s %s not parseable", key, v))))
+				.orElse(defaultValue);
 	}
 
 	private void swagger(String apidocs) {
@@ -182,32 +209,77 @@ public class RestRouteBuilder extends RouteBuilder {
 		message.setHeader("location", location);
 	}
 	
-	private static void readQueue(Exchange exchange, AtomicReference<FromDeviceMessagePinStateChanged> messageRef,
-			CountDownLatch latch) throws InterruptedException {
-		Message message = exchange.getMessage();
-		Pin pinOfMessage = extractPin(message);
-
-		for (Countdown countdown = createStarted(1, SECONDS); !countdown.finished();) {
-			if (latch.await(countdown.remaining(MILLISECONDS), MILLISECONDS)) {
-				FromDeviceMessagePinStateChanged polled = messageRef.get();
-				if (pinOfMessage.equals(polled.getPin())) {
-					message.setBody(polled.getValue(), String.class);
-					return;
+	/**
+	 * Answers from the cache without blocking: if there is no value yet or the
+	 * client's value is current and it asked to wait, the exchange is continued
+	 * asynchronously (the jetty consumer suspends the request) once a value
+	 * arrives or the wait times out.
+	 */
+	private static AsyncProcessor readCache(PinStateCache cache, long maxWaitMillis) {
+		return new AsyncProcessorSupport() {
+			@Override
+			public boolean process(Exchange exchange, AsyncCallback callback) {
+				Message message = exchange.getMessage();
+				Pin pin = extractPin(message);
+				String etag = message.getHeader(IF_NONE_MATCH, String.class);
+				long waitMillis = waitMillis(message, maxWaitMillis);
+				message.removeHeader(IF_NONE_MATCH);
+				message.removeHeader(PARAM_WAIT);
+
+				State state = cache.get(pin);
+				if (state != null && (waitMillis == 0 || !state.getETag().equals(etag))) {
+					respond(message, state, etag);
+					callback.done(true);
+					return true;
 				}
+				long timeout = state == null ? Math.max(waitMillis, FIRST_VALUE_TIMEOUT_MILLIS) : waitMillis;
+				cache.awaitChange(pin, etag, timeout, MILLISECONDS, changed -> {
+					State current = changed == null ? cache.get(pin) : changed;
+					if (current == null) {
+						exchange.setException(new IllegalStateException("Timeout retrieving message from arduino"));
+					} else {
+						respond(message, current, etag);
+					}
+					callback.done(false);
+				});
+				return false;
 			}
+		};
+	}
+
+	private static long waitMillis(Message message, long maxWaitMillis) {
+		String rawValue = message.getHeader(PARAM_WAIT, String.class);
+		if (rawValue == null) {
+			return 0;
+		}
+		long waitMillis = tryParseAs(Long.class, rawValue)
+				.orElseThrow(() -> new IllegalStateException(String.format("Wait %s not parseable", rawValue)));
+		checkState(waitMillis >= 0, "Wait must not be negative but was %s", waitMillis);
+		return Math.min(waitMillis, maxWaitMillis);
+	}
+
+	private static void respond(Message message, State state, String etag) {
+		message.setHeader(ETAG, state.getETag());
+		long timestamp = state.getTimestamp();
+		message.setHeader(LAST_MODIFIED, RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(timestamp).atZone(UTC)));
+		message.setHeader(AGE, MILLISECONDS.toSeconds(Math.max(0, System.currentTimeMillis() - timestamp)));
+		if (state.getETag().equals(etag)) {
+			message.setHeader(HTTP_RESPONSE_CODE, 304);
+			message.setBody(null);
+		} else {
+			message.setBody(state.getValue(), String.class);
 		}
-		throw new IllegalStateException("Timeout retrieving message from arduino");
 	}
 
 	private static void patchDigital(Exchange exchange) {
-		patch(exchange, START_LISTENING_DIGITAL, STOP_LISTENING_DIGITAL);
+		patch(exchange, DIGITAL);
 	}
 
 	private static void patchAnalog(Exchange exchange) {
-		patch(exchange, START_LISTENING_ANALOG, STOP_LISTENING_ANALOG);
+		patch(exchange, ANALOG);
 	}
 
-	private static void patch(Exchange exchange, ALPProtocolKey startKey, ALPProtocolKey stopKey) {
+	private static void patch(Exchange exchange, Type type) {
 		Message message = exchange.getMessage();
 		String stateRaw = message.getBody(String.class);
 
@@ -217,7 +289,7 @@ public class RestRouteBuilder extends RouteBuilder {
 
 		int pin = extractPinNumber(message);
 		boolean state = parseBoolean(split[1]);
-		message.setBody(alpProtocolMessage(state ? startKey : stopKey).forPin(pin).withoutValue());
+		message.setBody(listeningState(createPin(type, pin), state));
 	}
 
 	private static Pin extractPin(Message message) {
@@ -262,16 +334,11 @@ public class RestRouteBuilder extends RouteBuilder {
 		return message;
 	}
 
-	private void writeArduinoMessagesTo(String arduino, AtomicReference<FromDeviceMessagePinStateChanged> messageRef,
-			CountDownLatch latch) {
-		ALPByteStreamProcessor byteStreamProcessor = new ALPByteStreamProcessor();
+	private void writeArduinoMessagesTo(String arduino, PinStateCache cache) {
 		from(arduino).process(exchange -> {
-			String body = exchange.getMessage().getBody(String.class);
-			FromDeviceMessage fromDevice = getFirst(parse(byteStreamProcessor, byteStreamProcessor.toBytes(body)))
-					.orElseThrow(() -> new IllegalStateException("Cannot handle " + body));
-			if (fromDevice instanceof FromDeviceMessagePinStateChanged) {
-				messageRef.set((FromDeviceMessagePinStateChanged) fromDevice);
-				latch.countDown();
+			PinValue pinValue = exchange.getMessage().getBody(PinValue.class);
+			if (pinValue != null) {
+				cache.update(pinValue.getPin(), pinValue.getValue());
 			}
 		});
 	}
@@ -279,7 +346,7 @@ public class RestRouteBuilder extends RouteBuilder {
 	private static void switchDigital(Exchange exchange) {
 		Message message = exchange.getMessage();
 		boolean state = parseBoolean(message.getBody(String.class));
-		message.setBody(alpProtocolMessage(DIGITAL_PIN_READ).forPin(extractPinNumber(message)).withState(state));
+		message.setBody(digitalPinValue(extractPinNumber(message), state));
 	}
 
 	private static void switchAnalog(Exchange exchange) {
@@ -287,7 +354,7 @@ public class RestRouteBuilder extends RouteBuilder {
 		String rawValue = message.getBody(String.class);
 		int value = tryParseAs(Integer.class, rawValue)
 				.orElseThrow(() -> new IllegalStateException(String.format("Value %s not parseable", rawValue)));
-		message.setBody(alpProtocolMessage(ANALOG_PIN_READ).forPin(extractPinNumber(message)).withValue(value));
+		message.setBody(analogPinValue(extractPinNumber(message), value));
 	}
 
 }
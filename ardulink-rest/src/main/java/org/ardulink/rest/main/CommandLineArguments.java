@@ -2,6 +2,9 @@ package org.ardulink.rest.main;
 
 import static org.ardulink.core.convenience.Links.DEFAULT_URI;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.kohsuke.args4j.Option;
 
 public class CommandLineArguments {
@@ -15,4 +18,10 @@ public class CommandLineArguments {
 	@Option(name = "-port", usage = "Port to bind to")
 	public int port = 8080;
 
+	@Option(name = "-wsport", usage = "Port to serve pin events and writes via WebSocket on, 0 to disable")
+	public int wsport;
+
+	@Option(name = "-wsorigin", usage = "Origin (e.g. http://dashboard.example.com) of pages allowed to use the WebSocket besides those of the same host, may be repeated, * allows any")
+	public List<String> wsorigins = new ArrayList<>();
+
 }
@@ -5,10 +5,15 @@ import static org.ardulink.rest.RestRouteBuilder.VAR_PORT;
 import static org.ardulink.rest.RestRouteBuilder.VAR_TARGET;
 import static org.ardulink.util.MapBuilder.newMapBuilder;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.Optional;
 import java.util.Properties;
 
 import org.apache.camel.main.Main;
+import org.ardulink.core.Link;
+import org.ardulink.core.convenience.Links;
+import org.ardulink.core.websocket.WebSocketLinkServer;
 import org.ardulink.rest.RestRouteBuilder;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -16,9 +21,14 @@ import org.kohsuke.args4j.CmdLineParser;
 public class RestMain implements AutoCloseable {
 
 	private final Main main;
+	private Link webSocketLink;
+	private WebSocketLinkServer webSocketServer;
 
-	public static void main(String... args) {
-		tryParse(args).ifPresent(RestMain::new);
+	public static void main(String... args) throws IOException {
+		Optional<CommandLineArguments> cmdLineArgs = tryParse(args);
+		if (cmdLineArgs.isPresent()) {
+			new RestMain(cmdLineArgs.get());
+		}
 	}
 
 	static Optional<CommandLineArguments> tryParse(String... args) {
@@ -34,8 +44,13 @@ public class RestMain implements AutoCloseable {
 		}
 	}
 
-	public RestMain(CommandLineArguments args) {
+	public RestMain(CommandLineArguments args) throws IOException {
 		this(toCamelProperties(args));
+		if (args.wsport > 0) {
+			webSocketLink = Links.getLink(args.connection);
+			webSocketServer = new WebSocketLinkServer(webSocketLink, new InetSocketAddress(args.bind, args.wsport),
+					args.wsorigins);
+		}
 	}
 
 	public RestMain(Properties properties) {
@@ -51,7 +66,11 @@ public class RestMain implements AutoCloseable {
 	}
 
 	@Override
-	public void close() {
+	public void close() throws IOException {
+		if (webSocketServer != null) {
+			webSocketServer.close();
+			webSocketLink.close();
+		}
 		main.stop();
 	}
 
@@ -17,6 +17,9 @@ limitations under the License.
 package org.ardulink.rest;
 
 import static io.restassured.RestAssured.given;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.IntStream.range;
 import static java.util.stream.IntStream.rangeClosed;
 import static org.ardulink.core.Pin.analogPin;
@@ -33,11 +36,15 @@ import static org.ardulink.core.proto.impl.ALProtoBuilder.ALPProtocolKey.STOP_LI
 import static org.ardulink.testsupport.mock.TestSupport.fireEvent;
 import static org.ardulink.testsupport.mock.TestSupport.getMock;
 import static org.ardulink.testsupport.mock.TestSupport.uniqueMockUri;
+import static org.ardulink.util.MapBuilder.newMapBuilder;
 import static org.ardulink.util.ServerSockets.freePort;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.mockito.Mockito.verify;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 
@@ -52,6 +59,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import io.restassured.RestAssured;
+import io.restassured.response.ValidatableResponse;
 
 /**
  * [ardulinktitle] [ardulinkversion]
@@ -154,6 +162,68 @@ class ArdulinkRestTest {
 		}
 	}
 
+	@Test
+	void readsCarryTheETagAndAreNotModifiedWhileTheValueIsCurrent() throws Exception {
+		AnalogPin pin = analogPin(7);
+		try (Link link = Links.getLink(mockUri); RestMain main = runRestComponent(mockUri)) {
+			fireEvent(link, analogPinValueChanged(pin, 456));
+			String etag = given().get("/pin/analog/{pin}", pin.pinNum()).then().statusCode(200)
+					.header("Last-Modified", notNullValue()).header("Age", notNullValue()).extract().header("ETag");
+			given().header("If-None-Match", etag).get("/pin/analog/{pin}", pin.pinNum()).then().statusCode(304);
+
+			fireEvent(link, analogPinValueChanged(pin, 457));
+			given().header("If-None-Match", etag).get("/pin/analog/{pin}", pin.pinNum()).then().statusCode(200)
+					.header("ETag", not(etag)).body(is("457"));
+		}
+	}
+
+	@Test
+	void waitingReadIsAnsweredByTheNextValue() throws Exception {
+		DigitalPin pin = digitalPin(3);
+		try (Link link = Links.getLink(mockUri); RestMain main = runRestComponent(mockUri)) {
+			fireEvent(link, digitalPinValueChanged(pin, false));
+			String etag = given().get("/pin/digital/{pin}", pin.pinNum()).then().extract().header("ETag");
+			CompletableFuture<ValidatableResponse> response = supplyAsync(() -> given()
+					.header("If-None-Match", etag).queryParam("wait", 10_000).get("/pin/digital/{pin}", pin.pinNum())
+					.then());
+			MILLISECONDS.sleep(500);
+			fireEvent(link, digitalPinValueChanged(pin, true));
+			response.get(5, SECONDS).statusCode(200).body(is("true"));
+		}
+	}
+
+	@Test
+	void waitingReadIsNotModifiedIfThereIsNoNewerValue() throws Exception {
+		DigitalPin pin = digitalPin(3);
+		try (Link link = Links.getLink(mockUri); RestMain main = runRestComponent(mockUri)) {
+			fireEvent(link, digitalPinValueChanged(pin, true));
+			String etag = given().get("/pin/digital/{pin}", pin.pinNum()).then().extract().header("ETag");
+			given().header("If-None-Match", etag).queryParam("wait", 200).get("/pin/digital/{pin}", pin.pinNum())
+					.then().statusCode(304);
+		}
+	}
+
+	@Test
+	void waitingCloseToTheMaximumIsNotCutOffByTheServer() throws Exception {
+		DigitalPin pin = digitalPin(3);
+		long maxWaitMillis = 300;
+		try (Link link = Links.getLink(mockUri);
+				RestMain main = new RestMain(newMapBuilder().put(RestRouteBuilder.VAR_TARGET, mockUri) //
+						.put(RestRouteBuilder.VAR_BIND, "localhost") //
+						.put(RestRouteBuilder.VAR_PORT, RestAssured.port) //
+						.put(RestRouteBuilder.VAR_MAX_WAIT, maxWaitMillis) //
+						.put(RestRouteBuilder.VAR_CONTINUATION_TIMEOUT, maxWaitMillis + 200) //
+						.asProperties())) {
+			fireEvent(link, digitalPinValueChanged(pin, true));
+			String etag = given().get("/pin/digital/{pin}", pin.pinNum()).then().extract().header("ETag");
+			given().header("If-None-Match", etag).queryParam("wait", maxWaitMillis - 50)
+					.get("/pin/digital/{pin}", pin.pinNum()).then().statusCode(304);
+			// waits above the maximum are cut to the maximum, not by the continuation
+			given().header("If-None-Match", etag).queryParam("wait", maxWaitMillis * 10)
+					.get("/pin/digital/{pin}", pin.pinNum()).then().statusCode(304);
+		}
+	}
+
 	@Test
 	void canEnableAndDisableListeningDigitalPin() throws Exception {
 		DigitalPin pin = digitalPin(5);
@@ -23,12 +23,15 @@ import static org.ardulink.testsupport.mock.TestSupport.getMock;
 import static org.ardulink.testsupport.mock.TestSupport.uniqueMockUri;
 import static org.ardulink.util.ServerSockets.freePort;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 
 import org.ardulink.core.Link;
 import org.ardulink.core.convenience.Links;
+import org.ardulink.core.websocket.WebSocketLink;
+import org.ardulink.core.websocket.WebSocketLinkConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.kohsuke.args4j.CmdLineException;
@@ -68,6 +71,22 @@ class ArdulinkRestMainTest {
 		}
 	}
 
+	@Test
+	void canServeLinkViaWebSocket() throws IOException {
+		CommandLineArguments args = args();
+		args.wsport = freePort();
+		try (Link link = Links.getLink(args.connection); RestMain restMain = new RestMain(args)) {
+			WebSocketLinkConfig config = new WebSocketLinkConfig();
+			config.port = args.wsport;
+			try (WebSocketLink webSocketLink = new WebSocketLink(config)) {
+				int pin = 5;
+				boolean state = true;
+				webSocketLink.switchDigitalPin(digitalPin(pin), state);
+				verify(getMock(link), timeout(5_000)).switchDigitalPin(digitalPin(pin), state);
+			}
+		}
+	}
+
 	private CommandLineArguments args() {
 		CommandLineArguments args = new CommandLineArguments();
 		args.connection = uniqueMockUri();
@@ -0,0 +1,184 @@
+-- Copyright 2013 project Ardulink http://www.ardulink.org/
+ 
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+ 
+--     http://www.apache.org/licenses/LICENSE-2.0
+ 
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- This init.lua can be used to start a NodeMCU ready to receive/send
+-- Ardulink messages as UDP datagrams.
+-- Use udp link with host=192.168.10.1 and the default port 4480
+-- (sequencenumbers=false since this script does not handle them)
+
+-- The script needs a NodeMCU firmware with the following modules
+-- modules: file,gpio,net,node,pwm,tmr,uart,wifi
+
+-- Actually this script sets an access point, however you can decomment
+-- the following lines and comment the lines about access point, in order
+-- to connect NomeMCU to an existent access point
+
+--- WIFI AS CLIENT
+-----------------------------------------------
+--- Set Variables ---
+-----------------------------------------------
+--- WIFI CONFIGURATION ---
+-- WIFI_CONFIG={}
+-- WIFI_CONFIG.ssid = "joker"
+-- WIFI_CONFIG.pwd = "avengers"
+-- WIFI_SIGNAL_MODE = wifi.PHYMODE_N
+
+
+--- IP CONFIG (Leave blank to use DHCP) ---
+-- ESP8266_IP=""
+-- ESP8266_NETMASK=""
+-- ESP8266_GATEWAY=""
+-----------------------------------------------
+
+--- Connect to the wifi network ---
+-- wifi.setmode(wifi.STATION) 
+-- wifi.setphymode(WIFI_SIGNAL_MODE)
+-- wifi.sta.config(WIFI_CONFIG) 
+-- wifi.sta.connect()
+
+-- if ESP8266_IP ~= "" then
+--     wifi.sta.setip({ip=ESP8266_IP,netmask=ESP8266_NETMASK,gateway=ESP8266_GATEWAY})
+-- end
+
+-----------------------------------------------
+
+--- Check the IP Address ---
+-- print(wifi.sta.getip())
+--- WIFI AS CLIENT END
+
+
+-- WIFI AS ACCESS POINT
+---------------------------------------
+--- Set Variables ---
+---------------------------------------
+--- Set AP Configuration Variables ---
+AP_CFG={}
+--- SSID: 1-32 chars (set it as you wish)
+AP_CFG.ssid="Ardulink"
+--- Password: 8-64 chars. Minimum 8 Chars (set it as you wish)
+AP_CFG.pwd="ardulink"
+--- Authentication: AUTH_OPEN, AUTH_WPA_PSK, AUTH_WPA2_PSK, AUTH_WPA_WPA2_PSK
+AP_CFG.auth=AUTH_OPEN
+--- Channel: Range 1-14
+AP_CFG.channel = 6
+--- Hidden Network? True: 1, False: 0
+AP_CFG.hidden = 0
+--- Max Connections: Range 1-4
+AP_CFG.max=4
+--- WiFi Beacon: Range 100-60000
+AP_CFG.beacon=100
+
+--- Set AP IP Configuration Variables ---
+AP_IP_CFG={}
+AP_IP_CFG.ip="192.168.10.1"
+AP_IP_CFG.netmask="255.255.255.0"
+AP_IP_CFG.gateway="192.168.10.1"
+
+--- Set AP DHCP Configuration Variables ---
+--- There is no support for defining last DHCP IP ---
+AP_DHCP_CFG={}
+AP_DHCP_CFG.start="192.168.10.2"
+---------------------------------------
+
+--- Configure ESP8266 into AP Mode ---
+wifi.setmode(wifi.SOFTAP)
+--- Configure 802.11n Standard ---
+wifi.setphymode(wifi.PHYMODE_N)
+
+--- Configure WiFi Network Settings ---
+wifi.ap.config(AP_CFG)
+--- Configure AP IP Address ---
+wifi.ap.setip(AP_IP_CFG)
+
+--- Configure DHCP Service ---
+wifi.ap.dhcp.config(AP_DHCP_CFG)
+--- Start DHCP Service ---
+wifi.ap.dhcp.start()
+---------------------------------------
+-- WIFI AS ACCESS POINT END
+
+-- UDP
+-- The link's address is taken from the datagrams received, so the first
+-- message sent by the link (e.g. a ready probe using pingprobe=true) makes
+-- the NodeMCU answer to it.
+UDP_PORT=4480
+peer = {}
+
+local function send(message)
+    if(peer.port ~= nil) then
+        udp:send(peer.port, peer.ip, message .. "\n")
+    end
+end
+
+local function reply(id)
+    if(id ~= nil) then
+        send("alp://rply/ok?id=" .. id)
+    end
+end
+
+local function handle(message)
+    print("Message received: " .. message)
+    local command, rest = string.match(message, "^alp://(%a%a%a%a)/?([^?]*)")
+    local id = string.match(message, "%?id=(%d+)")
+    if(command == nil) then
+        print("Message unknown")
+        return
+    end
+    local pin, value = string.match(rest, "^(%d+)/?(%d*)")
+    if(command == "ppsw") then
+        pwm.close(pin)
+        gpio.mode(pin,gpio.OUTPUT)
+        if(value == "1") then gpio.write(pin,gpio.HIGH) else gpio.write(pin,gpio.LOW) end
+    elseif(command == "ppin") then
+        pwm.setup(pin,1000,1023) pwm.start(pin) pwm.setduty(pin,value)
+    elseif(command == "srld") then
+        local function pinCb(level)
+            if(level == gpio.HIGH) then
+                send(string.format("alp://dred/%s/1", pin))
+            else
+                send(string.format("alp://dred/%s/0", pin))
+            end
+        end
+        gpio.mode(pin,gpio.INT)
+        gpio.trig(pin,"both",pinCb)
+    elseif(command == "spld") then
+        gpio.mode(pin,gpio.OUTPUT)
+    end
+    -- everything else (e.g. notn used by pingprobe) just gets confirmed
+    reply(id)
+end
+
+udp = net.createUDPSocket()
+udp:on("receive", function(socket, data, port, ip)
+    peer.ip = ip
+    peer.port = port
+    for message in string.gmatch(data, "[^\n]+") do
+        handle(message)
+    end
+end)
+udp:listen(UDP_PORT)
+
+-- set all PINs to LOW
+gpio.write(0, gpio.LOW);
+gpio.write(1, gpio.LOW);
+gpio.write(2, gpio.LOW);
+gpio.write(3, gpio.LOW);
+gpio.write(4, gpio.LOW);
+gpio.write(5, gpio.LOW);
+gpio.write(6, gpio.LOW);
+gpio.write(7, gpio.LOW);
+gpio.write(8, gpio.LOW);
+gpio.write(9, gpio.LOW);
+gpio.write(10, gpio.LOW);
+print("Ardulink - NodeMCU init done.");